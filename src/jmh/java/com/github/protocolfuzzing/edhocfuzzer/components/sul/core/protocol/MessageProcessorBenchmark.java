@@ -0,0 +1,225 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
+
+import com.beust.jcommander.JCommander;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.ClientMapperState;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.EdhocMapperState;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.ServerMapperState;
+import com.github.protocolfuzzing.protocolstatefuzzer.utils.CleanupTasks;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Measures the write and read functions of the EDHOC messages, by running a
+ * handshake between an Initiator and a Responder mapper state in-process.
+ * Before each invocation both states are reset and the handshake is replayed
+ * up to the measured function, so that only that function is measured.
+ *
+ * The keys are taken from the test vectors in experiments/authentication/test_vectors,
+ * which cover the authentication methods 0 (SIG-SIG) and 3 (STAT-STAT) for
+ * the curves of cipher suites 0, 1 (Ed25519/X25519) and 2, 3 (P-256).
+ *
+ * Build with: mvn -Pbenchmark verify
+ * Run from the root directory with:
+ *   java -cp target/edhoc-fuzzer-1.0.0-jar-with-dependencies.jar org.openjdk.jmh.Main \
+ *   MessageProcessorBenchmark -prof gc
+ * The gc profiler reports the allocation rate (gc.alloc.rate.norm) along with the throughput.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageProcessorBenchmark {
+
+    // the functions of the handshake in order, named as the benchmark methods
+    protected static final List<String> HANDSHAKE_STEPS = List.of(
+            "writeMessage1", "readMessage1", "writeMessage2", "readMessage2",
+            "writeMessage3", "readMessage3", "writeMessage4", "readMessage4");
+
+    @Param({"0", "1", "2", "3"})
+    public int cipherSuite;
+
+    @Param({"0", "3"})
+    public int authMethod;
+
+    // the level of the edhocfuzzer loggers, in order to compare the cost of the debug dumps
+    @Param({"INFO", "DEBUG"})
+    public String logLevel;
+
+    @Param({"experiments/authentication/test_vectors"})
+    public String testVectorDir;
+
+    protected CleanupTasks cleanupTasks;
+    protected EdhocMapperState initiatorState;
+    protected EdhocMapperState responderState;
+    protected MessageProcessorPersistent initiator;
+    protected MessageProcessorPersistent responder;
+
+    // the message to be read by the measured read function
+    protected byte[] message;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        Configurator.setLevel("com.github.protocolfuzzing.edhocfuzzer", org.apache.logging.log4j.Level.valueOf(logLevel));
+
+        cleanupTasks = new CleanupTasks();
+        initiatorState = new ClientMapperState(buildConfig("Initiator", "36"), cleanupTasks);
+        responderState = new ServerMapperState(buildConfig("Responder", "37"), cleanupTasks);
+        initiator = new MessageProcessorPersistent(initiatorState);
+        responder = new MessageProcessorPersistent(responderState);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        cleanupTasks.execute();
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation(BenchmarkParams benchmarkParams) {
+        String benchmark = benchmarkParams.getBenchmark();
+        int measuredStep = HANDSHAKE_STEPS.indexOf(benchmark.substring(benchmark.lastIndexOf('.') + 1));
+
+        resetState(initiatorState);
+        resetState(responderState);
+
+        message = null;
+        for (int step = 0; step < measuredStep; step++) {
+            message = runStep(step, message);
+        }
+    }
+
+    @Benchmark
+    public byte[] writeMessage1() {
+        return initiator.writeMessage1();
+    }
+
+    @Benchmark
+    public boolean readMessage1() {
+        return responder.readMessage1(message);
+    }
+
+    @Benchmark
+    public byte[] writeMessage2() {
+        return responder.writeMessage2();
+    }
+
+    @Benchmark
+    public boolean readMessage2() {
+        return initiator.readMessage2(message);
+    }
+
+    @Benchmark
+    public byte[] writeMessage3() {
+        return initiator.writeMessage3();
+    }
+
+    @Benchmark
+    public boolean readMessage3() {
+        return responder.readMessage3(message);
+    }
+
+    @Benchmark
+    public byte[] writeMessage4() {
+        return responder.writeMessage4();
+    }
+
+    @Benchmark
+    public boolean readMessage4() {
+        return initiator.readMessage4(message);
+    }
+
+    /** Runs the given step of the handshake and returns the message to be read next */
+    protected byte[] runStep(int step, byte[] message) {
+        byte[] nextMessage = switch (step) {
+            case 0 -> initiator.writeMessage1();
+            case 1 -> responder.readMessage1(message) ? message : null;
+            case 2 -> responder.writeMessage2();
+            case 3 -> initiator.readMessage2(message) ? message : null;
+            case 4 -> initiator.writeMessage3();
+            case 5 -> responder.readMessage3(message) ? message : null;
+            case 6 -> responder.writeMessage4();
+            default -> throw new IllegalStateException("Invalid handshake step: " + step);
+        };
+
+        if (nextMessage == null) {
+            throw new IllegalStateException("Handshake failed at " + HANDSHAKE_STEPS.get(step) + " for cipher suite "
+                    + cipherSuite + " and authentication method " + authMethod);
+        }
+
+        return nextMessage;
+    }
+
+    protected void resetState(EdhocMapperState edhocMapperState) {
+        // the test vectors list the even cipher suites only, so the odd ones,
+        // which use the same curves, are set here
+        List<Integer> supportedCipherSuites = edhocMapperState.getEdhocEndpointInfoPersistent().getSupportedCipherSuites();
+        supportedCipherSuites.clear();
+        supportedCipherSuites.add(cipherSuite);
+
+        edhocMapperState.resetToInitial();
+    }
+
+    protected EdhocMapperConfig buildConfig(String edhocRole, String ownConnectionId) {
+        EdhocMapperConfig edhocMapperConfig = new EdhocMapperConfig();
+        JCommander.newBuilder().addObject(edhocMapperConfig).build().parse(testVectorArgs(
+                "-protocolVersion", "v23",
+                "-edhocRole", edhocRole,
+                "-ownConnectionId", ownConnectionId,
+                "-disableOwnConnectionIdGeneration"));
+        edhocMapperConfig.initializeHost("localhost:5683");
+        return edhocMapperConfig;
+    }
+
+    /** Returns the given arguments followed by the authentication arguments of the test vector to be used */
+    protected String[] testVectorArgs(String... args) {
+        boolean isP256 = cipherSuite == 2 || cipherSuite == 3;
+        boolean isStat = authMethod == 3;
+
+        String[] vectorArgs;
+        if (!isP256) {
+            vectorArgs = new String[] {
+                "-mapCredType", "X509", "-mapIdCredType", "X5T",
+                "-testVectorJson", testVectorDir + "/test_vectors_rise.json",
+                "-testVectorJsonKey", isStat ? "test_vector_x25519" : "test_vector_ed25519",
+                "-testVectorPeerKeyCurve", isStat ? "X25519" : "Ed25519"
+            };
+        } else if (!isStat) {
+            vectorArgs = new String[] {
+                "-mapCredType", "X509", "-mapIdCredType", "X5T",
+                "-testVectorJson", testVectorDir + "/test_vectors_v16_p256.json",
+                "-testVectorJsonKey", "test_vector_1",
+                "-testVectorPeerKeyCurve", "P256"
+            };
+        } else {
+            vectorArgs = new String[] {
+                "-mapCredType", "CCS", "-mapIdCredType", "KID",
+                "-testVectorJson", testVectorDir + "/test_vectors_lakers.json",
+                "-testVectorJsonKey", "test_vector_p256",
+                "-testVectorPeerKeyCurve", "P256"
+            };
+        }
+
+        String[] allArgs = new String[args.length + vectorArgs.length];
+        System.arraycopy(args, 0, allArgs, 0, args.length);
+        System.arraycopy(vectorArgs, 0, allArgs, args.length, vectorArgs.length);
+        return allArgs;
+    }
+}
@@ -5,15 +5,14 @@ import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.EdhocSulBuilde
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.config.EdhocSulClientConfig;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.config.EdhocSulServerConfig;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
-import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.EdhocExecutionContext;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.symbols.inputs.EdhocInput;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.symbols.outputs.EdhocOutput;
 import com.github.protocolfuzzing.protocolstatefuzzer.components.learner.alphabet.AlphabetBuilder;
 import com.github.protocolfuzzing.protocolstatefuzzer.components.learner.alphabet.AlphabetBuilderStandard;
+import com.github.protocolfuzzing.protocolstatefuzzer.components.learner.alphabet.AlphabetOptionProvider;
 import com.github.protocolfuzzing.protocolstatefuzzer.components.learner.alphabet.xml.AlphabetSerializerXml;
 import com.github.protocolfuzzing.protocolstatefuzzer.components.learner.config.LearnerConfigStandard;
 import com.github.protocolfuzzing.protocolstatefuzzer.components.learner.statistics.MealyMachineWrapper;
-import com.github.protocolfuzzing.protocolstatefuzzer.components.sul.core.SULBuilder;
 import com.github.protocolfuzzing.protocolstatefuzzer.statefuzzer.core.StateFuzzer;
 import com.github.protocolfuzzing.protocolstatefuzzer.statefuzzer.core.StateFuzzerBuilder;
 import com.github.protocolfuzzing.protocolstatefuzzer.statefuzzer.core.StateFuzzerComposerStandard;
@@ -35,6 +34,10 @@ import com.github.protocolfuzzing.protocolstatefuzzer.statefuzzer.testrunner.tim
 import com.github.protocolfuzzing.protocolstatefuzzer.statefuzzer.testrunner.timingprobe.config.TimingProbeConfigStandard;
 import com.github.protocolfuzzing.protocolstatefuzzer.statefuzzer.testrunner.timingprobe.config.TimingProbeEnabler;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
 public class MultiBuilder implements
     StateFuzzerConfigBuilder,
     StateFuzzerBuilder<MealyMachineWrapper<EdhocInput, EdhocOutput>>,
@@ -45,7 +48,7 @@ public class MultiBuilder implements
         new AlphabetSerializerXml<EdhocInput, EdhocAlphabetPojoXml>(EdhocInput.class, EdhocAlphabetPojoXml.class)
     );
 
-    protected SULBuilder<EdhocInput, EdhocOutput, EdhocExecutionContext> sulBuilder = new EdhocSulBuilder();
+    protected EdhocSulBuilder sulBuilder = new EdhocSulBuilder();
 
     @Override
     public StateFuzzerClientConfig buildClientConfig() {
@@ -69,6 +72,7 @@ public class MultiBuilder implements
 
     @Override
     public StateFuzzer<MealyMachineWrapper<EdhocInput, EdhocOutput>> build(StateFuzzerEnabler stateFuzzerEnabler) {
+        describeAlphabet(stateFuzzerEnabler.getLearnerConfig());
         return new StateFuzzerStandard<>(
             new StateFuzzerComposerStandard<>(stateFuzzerEnabler, alphabetBuilder, sulBuilder).initialize()
         );
@@ -76,11 +80,22 @@ public class MultiBuilder implements
 
     @Override
     public TestRunner build(TestRunnerEnabler testRunnerEnabler) {
+        describeAlphabet(testRunnerEnabler.getLearnerConfig());
         return new TestRunnerStandard<>(testRunnerEnabler, alphabetBuilder, sulBuilder).initialize();
     }
 
     @Override
     public TimingProbe build(TimingProbeEnabler timingProbeEnabler) {
+        describeAlphabet(timingProbeEnabler.getLearnerConfig());
         return new TimingProbeStandard<>(timingProbeEnabler, alphabetBuilder, sulBuilder).initialize();
     }
+
+    // passes the contents of the alphabet to the built SULs, since the outputs of their queries depend on it
+    protected void describeAlphabet(AlphabetOptionProvider alphabetOptionProvider) {
+        try (InputStream inputStream = alphabetBuilder.getAlphabetFileInputStream(alphabetOptionProvider)) {
+            sulBuilder.setAlphabetDescription(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read the alphabet", e);
+        }
+    }
 }
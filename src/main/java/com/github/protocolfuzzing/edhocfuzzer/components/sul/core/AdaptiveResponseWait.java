@@ -0,0 +1,140 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+ * Learns the response latency of the SUL for each (prefix, input) pair
+ * and shortens the response wait of the pairs, for which the SUL has
+ * always answered quickly or, if enabled, never answered. The pairs are
+ * the nodes of a trie of the executed prefixes, so that their statistics
+ * are kept in arrays indexed by node, up to a maximum number of pairs.
+ */
+public class AdaptiveResponseWait {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // the maximum number of learned pairs, after which the new pairs use the ceiling wait
+    protected static final int MAX_PAIRS = 1 << 20;
+
+    protected static final int INITIAL_CAPACITY = 1024;
+
+    // the configured response wait, which is the ceiling of any adaptive wait
+    protected long ceilingWait;
+    protected long minWait;
+    protected double waitFactor;
+    protected int minSamples;
+
+    // shorten also the wait of the pairs never answered, instead of using the ceiling wait
+    protected boolean shortenUnanswered;
+
+    // the trie of the executed prefixes, whose nodes are the pairs of their last input and its prefix
+    protected QueryTrie prefixTrie = new QueryTrie(false);
+
+    // the statistics of the pairs, indexed by node
+    protected int[] responses = new int[INITIAL_CAPACITY];
+    protected int[] timeouts = new int[INITIAL_CAPACITY];
+    protected long[] maxLatencies = new long[INITIAL_CAPACITY];
+    protected BitSet nondeterministic = new BitSet();
+
+    // the maximum latency of any response, used as the wait of the pairs never answered
+    protected long maxResponseLatency = 0;
+
+    // statistics of the adaptive wait
+    protected long learnedPairs = 0;
+    protected long savedTime = 0;
+    protected long shortenedWaits = 0;
+    protected long nondeterministicPairs = 0;
+
+    public AdaptiveResponseWait(long ceilingWait, long minWait, double waitFactor, int minSamples,
+                                boolean shortenUnanswered) {
+        this.ceilingWait = ceilingWait;
+        this.minWait = minWait;
+        this.waitFactor = waitFactor;
+        this.minSamples = minSamples;
+        this.shortenUnanswered = shortenUnanswered;
+    }
+
+    /**
+     * Returns the pair of the given input after the prefix of the given pair, which is also the prefix
+     * of the next input, or QueryTrie.NONE if too many pairs are learned. The empty prefix is QueryTrie.ROOT
+     */
+    public int pairOf(int prefixPair, String input) {
+        if (prefixPair == QueryTrie.NONE) {
+            return QueryTrie.NONE;
+        }
+
+        int pair = prefixTrie.child(prefixPair, input);
+        if (pair != QueryTrie.NONE || prefixTrie.size() >= MAX_PAIRS) {
+            return pair;
+        }
+
+        pair = prefixTrie.add(prefixPair, input);
+        if (pair == responses.length) {
+            int capacity = 2 * pair;
+            responses = Arrays.copyOf(responses, capacity);
+            timeouts = Arrays.copyOf(timeouts, capacity);
+            maxLatencies = Arrays.copyOf(maxLatencies, capacity);
+        }
+        return pair;
+    }
+
+    /** Returns the response wait in milliseconds to be used for the given pair */
+    public long getWait(int pair) {
+        if (pair == QueryTrie.NONE || nondeterministic.get(pair) || responses[pair] + timeouts[pair] < minSamples) {
+            return ceilingWait;
+        }
+
+        long latency;
+        if (timeouts[pair] == 0) {
+            latency = maxLatencies[pair];
+        } else if (shortenUnanswered && maxResponseLatency > 0) {
+            latency = maxResponseLatency;
+        } else {
+            return ceilingWait;
+        }
+
+        return Math.min(ceilingWait, Math.max(minWait, (long) Math.ceil(latency * waitFactor)));
+    }
+
+    /**
+     * Records the outcome of waiting for the response to the input of the given pair with the given wait.
+     * A pair found both answered and unanswered is regarded as nondeterministic and uses the ceiling wait
+     * from then on.
+     */
+    public void record(int pair, long wait, long latency, boolean timeout) {
+        if (pair == QueryTrie.NONE) {
+            return;
+        }
+
+        if (responses[pair] + timeouts[pair] == 0) {
+            learnedPairs++;
+        }
+
+        if (timeout) {
+            timeouts[pair]++;
+            if (wait < ceilingWait) {
+                savedTime += ceilingWait - wait;
+                shortenedWaits++;
+            }
+        } else {
+            responses[pair]++;
+            maxLatencies[pair] = Math.max(maxLatencies[pair], latency);
+            maxResponseLatency = Math.max(maxResponseLatency, latency);
+        }
+
+        if (!nondeterministic.get(pair) && responses[pair] > 0 && timeouts[pair] > 0) {
+            LOGGER.debug("Nondeterministic response wait for input {} of pair {}, using {} ms from now on",
+                    prefixTrie.getInput(pair), pair, ceilingWait);
+            nondeterministic.set(pair);
+            nondeterministicPairs++;
+        }
+    }
+
+    public void logStatistics() {
+        LOGGER.info("Adaptive response wait: {} pairs learned, {} nondeterministic, {} shortened timeouts, "
+                + "saving {} ms in total", learnedPairs, nondeterministicPairs, shortenedWaits, savedTime);
+    }
+}
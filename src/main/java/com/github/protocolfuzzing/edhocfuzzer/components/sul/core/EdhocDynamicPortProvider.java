@@ -0,0 +1,26 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import com.github.protocolfuzzing.protocolstatefuzzer.components.sul.core.sulwrappers.DynamicPortProvider;
+
+/*
+ * Provides the port of a SUL instance, when several instances
+ * are used in turn, each one listening on its own port
+ */
+public class EdhocDynamicPortProvider implements DynamicPortProvider {
+    protected int instance;
+    protected int port;
+
+    public EdhocDynamicPortProvider(int instance, int basePort, int portStride) {
+        this.instance = instance;
+        this.port = basePort + instance * portStride;
+    }
+
+    public int getInstance() {
+        return instance;
+    }
+
+    @Override
+    public Integer getSULPort() {
+        return port;
+    }
+}
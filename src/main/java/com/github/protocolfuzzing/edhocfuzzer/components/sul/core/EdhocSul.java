@@ -1,8 +1,15 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
 
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.config.EdhocSulClientConfig;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.config.EdhocSulConfig;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.jfr.QueryEvent;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.jfr.StepEvent;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.metrics.MetricsRegistry;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.Concretizer;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EphemeralKeyPool;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConnectionConfig;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.ClientDemultiplexer;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.ClientMapperConnector;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.EdhocMapperConnector;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.ServerMapperConnector;
@@ -27,12 +34,24 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.californium.core.config.CoapConfig;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
 
 public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecutionContext> {
     private static final Logger LOGGER = LogManager.getLogger();
 
+    // the number of queries between the sampled builds of a reused mapper state
+    protected static final long MAPPER_STATE_BUILD_SAMPLING = 100;
+
     protected SULConfig sulConfig;
     protected CleanupTasks cleanupTasks;
     protected EdhocMapperConfig edhocMapperConfig;
@@ -43,14 +62,169 @@ public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecu
     protected EdhocMapperConnector edhocMapperConnector;
     protected boolean serverWaitForInitialMessageDone;
 
+    // statistics of mapper state reuse, times in nanoseconds; the first, cold build is not comparable
+    // to the resets, so the saving of a reset is measured against the warm builds sampled among them
+    protected long mapperStateFirstBuildTime = 0;
+    protected long mapperStateBuildTime = 0;
+    protected long mapperStateBuildCount = 0;
+    protected long mapperStateResetTime = 0;
+    protected long mapperStateReuseCount = 0;
+    protected long mapperStateQueries = 0;
+
+    // provides the port of this SUL instance, null for the first instance
+    protected DynamicPortProvider dynamicPortProvider = null;
+
+    // the next instance to be forked, shared among all the forked instances
+    protected AtomicInteger nextInstance;
+
+    // adaptive response wait, null if it is not enabled
+    protected AdaptiveResponseWait adaptiveResponseWait = null;
+
+    // the pair of the last executed input of the current query in the adaptive response wait
+    protected int adaptivePrefixPair = QueryTrie.ROOT;
+
+    // the inputs executed so far in the current query
+    protected StringBuilder queryPrefix = new StringBuilder();
+
+    // concretizers of sent and received messages, null if concretization is disabled
+    protected Concretizer sendConcretizer = null;
+    protected Concretizer recvConcretizer = null;
+
+    // pool of pre-generated ephemeral keys, null if it is not enabled
+    protected EphemeralKeyPool ephemeralKeyPool = null;
+
+    // query cache, shared among all the forked instances, null if it is not enabled
+    protected QueryCache queryCache = null;
+
+    // the description of the alphabet, which is part of the fingerprint of the persistent query cache
+    protected String alphabetDescription = "";
+
+    // the current query, which is executed on the SUL only from its first input that is not cached,
+    // along with the cache symbols of its inputs, its outputs and the cache node of its cached prefix
+    protected boolean queryStarted = false;
+    protected List<EdhocInput> queryInputs = new ArrayList<>();
+    protected List<String> queryCacheInputs = new ArrayList<>();
+    protected List<EdhocOutput> queryOutputs = new ArrayList<>();
+    protected int queryCacheNode = QueryTrie.ROOT;
+
+    // index of the prefixes leading to a sink state, shared among all the forked instances, null if it is not enabled
+    protected SinkPrefixIndex sinkPrefixIndex = null;
+
+    // the node of the prefix of the current query in the sink prefix index
+    // and the index of the input of the query that reached a sink state, or -1
+    protected int sinkPrefixNode = QueryTrie.ROOT;
+    protected int sinkReachedAt = -1;
+
+    protected MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+
+    // demultiplexer of the client SULs, shared among all the forked instances, null if it is not enabled
+    protected ClientDemultiplexer clientDemultiplexer = null;
+
+    // the launcher of the server SUL processes with a hot standby, null if it is not used
+    protected StandbySulLauncher standbySulLauncher = null;
+
+    // the soft reset of the server SUL between queries, null if it is not used,
+    // and whether the SUL process of the previous query is kept to be soft reset
+    protected SoftReset softReset = null;
+    protected boolean softResetPending = false;
+
+    // the command and the directory of the SUL process of this instance, null if the process is not launched
+    // by the instance, and the process of the current or the next query, null if it has not been launched
+    protected String[] sulCommand = null;
+    protected File sulProcessDir = null;
+    protected SulProcess sulProcess = null;
+
+    // the flight recorder event of the current query and its number of inputs
+    protected QueryEvent queryEvent = null;
+    protected int querySteps = 0;
+
     public EdhocSul(SULConfig sulConfig, CleanupTasks cleanupTasks) {
+        this(sulConfig, cleanupTasks, new AtomicInteger(1));
+    }
+
+    /** Sets the description of the alphabet of the learner, before this SUL is initialized */
+    public EdhocSul withAlphabetDescription(String alphabetDescription) {
+        this.alphabetDescription = alphabetDescription;
+        return this;
+    }
+
+    protected EdhocSul(SULConfig sulConfig, CleanupTasks cleanupTasks, AtomicInteger nextInstance) {
         this.sulConfig = sulConfig;
         this.cleanupTasks = cleanupTasks;
         this.edhocMapperConfig = (EdhocMapperConfig) sulConfig.getMapperConfig();
         this.originalTimeout = sulConfig.getResponseWait();
+        this.nextInstance = nextInstance;
     }
 
     public EdhocSul initialize() {
+        // The concretization files would be overwritten by the other instances
+        if (edhocMapperConfig.getSulInstances() > 1 && edhocMapperConfig.getConcretizeDir() != null) {
+            throw new RuntimeException("Argument -concretizeDir cannot be used with more than one -sulInstances");
+        }
+
+        // The loopback SUL replaces the single SUL process
+        if (edhocMapperConfig.getLoopbackSul() != null) {
+            if (getSulCommand() != null) {
+                throw new RuntimeException("Argument -loopbackSul cannot be used along with -cmd");
+            }
+
+            if (edhocMapperConfig.getLoopbackSulClasspath() == null) {
+                throw new RuntimeException("Argument -loopbackSul requires also -loopbackSulClasspath");
+            }
+
+            if (edhocMapperConfig.getSulInstances() > 1) {
+                throw new RuntimeException("Argument -loopbackSul cannot be used with more than one -sulInstances");
+            }
+        }
+
+        // The standby SUL replaces the single SUL process and its port changes on each query,
+        // so the mapper state, which keeps the URIs of the SUL, cannot be reused
+        if (edhocMapperConfig.getStandbySulCmd() != null) {
+            if (sulConfig.isFuzzingClient()) {
+                throw new RuntimeException("Argument -standbySulCmd can be used only with server SULs");
+            }
+
+            if (getSulCommand() != null || edhocMapperConfig.getLoopbackSul() != null) {
+                throw new RuntimeException("Argument -standbySulCmd cannot be used along with -cmd or -loopbackSul");
+            }
+
+            if (edhocMapperConfig.getSulInstances() > 1) {
+                throw new RuntimeException("Argument -standbySulCmd cannot be used with more than one -sulInstances");
+            }
+
+            if (edhocMapperConfig.reuseMapperState()) {
+                throw new RuntimeException("Argument -standbySulCmd cannot be used along with -reuseMapperState");
+            }
+        }
+
+        // Only the mapper client is connected to its single server
+        if (edhocMapperConfig.useConnectedSocket() && sulConfig.isFuzzingClient()) {
+            throw new RuntimeException("Argument -connectedSocket can be used only with server SULs");
+        }
+
+        // The SUL that cannot be soft reset is restarted by the mapper, either by switching to its standby process
+        // or by relaunching its process, and each query uses a rotated own connection id, which the mapper state
+        // would neither keep when reused nor use when generating its own connection id as Responder
+        if (edhocMapperConfig.useSoftReset()) {
+            if (sulConfig.isFuzzingClient()) {
+                throw new RuntimeException("Argument -softReset can be used only with server SULs");
+            }
+
+            if (getSulCommand() == null && edhocMapperConfig.getLoopbackSul() == null
+                    && edhocMapperConfig.getStandbySulCmd() == null) {
+                throw new RuntimeException("Argument -softReset requires also -cmd, -loopbackSul or -standbySulCmd");
+            }
+
+            if (edhocMapperConfig.reuseMapperState()) {
+                throw new RuntimeException("Argument -softReset cannot be used along with -reuseMapperState");
+            }
+
+            if (!edhocMapperConfig.isInitiator() && edhocMapperConfig.generateOwnConnectionId()) {
+                throw new RuntimeException("Argument -softReset requires also -disableOwnConnectionIdGeneration "
+                        + "when the mapper is the Responder");
+            }
+        }
+
         try {
             // Adds also the californium standard configuration
             EdhocMapperConnectionConfig mapperConnectionConfig = new EdhocMapperConnectionConfig(
@@ -72,14 +246,42 @@ public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecu
             throw new RuntimeException(e);
         }
 
+        // The endpoint keeps the OSCORE context database of the mapper state,
+        // so it can be reused only along with the mapper state
+        if (edhocMapperConfig.reuseMapperEndpoint() && !edhocMapperConfig.reuseMapperState()) {
+            throw new RuntimeException("Argument -reuseMapperEndpoint requires also -reuseMapperState");
+        }
+
+        // The multiplexed clients share the OSCORE context database, which is purged on a mapper state reset,
+        // and need distinct recipient ids in it
+        if (edhocMapperConfig.multiplexClients()) {
+            if (!sulConfig.isFuzzingClient()) {
+                throw new RuntimeException("Argument -multiplexClients can be used only with client SULs");
+            }
+
+            if (edhocMapperConfig.reuseMapperState()) {
+                throw new RuntimeException("Argument -multiplexClients cannot be used along with -reuseMapperState");
+            }
+
+            if (edhocMapperConfig.getForceOscoreRecipientId() != null) {
+                throw new RuntimeException("Argument -multiplexClients cannot be used along with -forceOscoreRecipientId");
+            }
+
+            if (clientDemultiplexer == null) {
+                clientDemultiplexer = new ClientDemultiplexer();
+                cleanupTasks.submit(clientDemultiplexer::close);
+            }
+        }
+
         // The connector uses the californium standard configuration
         if (sulConfig.isFuzzingClient()){
             this.edhocMapperConnector = new ServerMapperConnector(edhocMapperConfig.getHostCoapUri(),
                     edhocMapperConfig.getEdhocCoapResource(), edhocMapperConfig.getAppCoapResource(),
-                    originalTimeout);
+                    originalTimeout, edhocMapperConfig.reuseMapperEndpoint(), clientDemultiplexer);
         } else {
             this.edhocMapperConnector = new ClientMapperConnector(edhocMapperConfig.getEdhocCoapUri(),
-                    edhocMapperConfig.getAppCoapUri(), this.originalTimeout);
+                    edhocMapperConfig.getAppCoapUri(), this.originalTimeout, edhocMapperConfig.reuseMapperEndpoint(),
+                    edhocMapperConfig.useConnectedSocket());
         }
 
         this.edhocMapperComposer = new EdhocMapperComposer (
@@ -87,6 +289,83 @@ public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecu
             new EdhocOutputMapper(edhocMapperConfig, new EdhocOutputBuilder(), new EdhocOutputChecker(), edhocMapperConnector)
         );
 
+        if (edhocMapperConfig.reuseMapperState()) {
+            cleanupTasks.submit(this::logMapperStateReuse);
+        }
+
+        String concretizeDir = edhocMapperConfig.getConcretizeDir();
+        if (concretizeDir != null) {
+            sendConcretizer = new Concretizer(concretizeDir, "send");
+            recvConcretizer = new Concretizer(concretizeDir, "recv");
+            cleanupTasks.submit(sendConcretizer::close);
+            cleanupTasks.submit(recvConcretizer::close);
+        }
+
+        if (edhocMapperConfig.useAdaptiveResponseWait()) {
+            adaptiveResponseWait = new AdaptiveResponseWait(originalTimeout, edhocMapperConfig.getAdaptiveMinWait(),
+                    edhocMapperConfig.getAdaptiveWaitFactor(), edhocMapperConfig.getAdaptiveMinSamples(),
+                    edhocMapperConfig.adaptiveShortenUnanswered());
+            cleanupTasks.submit(adaptiveResponseWait::logStatistics);
+        }
+
+        if (edhocMapperConfig.getEphemeralKeyPoolSize() > 0) {
+            ephemeralKeyPool = new EphemeralKeyPool(edhocMapperConfig.getEphemeralKeyPoolSize());
+            cleanupTasks.submit(ephemeralKeyPool::shutdown);
+        }
+
+        if (edhocMapperConfig.useQueryCache() && queryCache == null) {
+            queryCache = edhocMapperConfig.getQueryCacheDir() == null ?
+                    new QueryCache(edhocMapperConfig.queryCacheMessages()) :
+                    new QueryCache(edhocMapperConfig.queryCacheMessages(), edhocMapperConfig.getQueryCacheDir(),
+                            queryCacheFingerprint());
+            cleanupTasks.submit(queryCache::close);
+        }
+
+        if (edhocMapperConfig.getMetricsDir() != null) {
+            metricsRegistry.enable(edhocMapperConfig.getMetricsDir(), edhocMapperConfig.getMetricsInterval(), cleanupTasks);
+        }
+
+        if (edhocMapperConfig.useSinkPrefixOracle() && sinkPrefixIndex == null) {
+            sinkPrefixIndex = new SinkPrefixIndex();
+            cleanupTasks.submit(sinkPrefixIndex::logStatistics);
+        }
+
+        // the peer is run in a child JVM, which is restarted on each query as a -cmd process is
+        if (edhocMapperConfig.getLoopbackSul() != null && sulCommand == null) {
+            LoopbackSul loopbackSul = new LoopbackSul(edhocMapperConfig.getLoopbackSul(),
+                    edhocMapperConfig.getLoopbackSulClasspath());
+            sulCommand = loopbackSul.getProcessCommand();
+            sulProcessDir = new File(".");
+            cleanupTasks.submit(this::destroySulProcess);
+        }
+
+        if (edhocMapperConfig.getStandbySulCmd() != null) {
+            // the readiness of a probed SUL is checked on each query instead
+            long standbyStartWait = edhocMapperConfig.useReadinessProbe() ? 0 : sulConfig.getStartWait();
+            standbySulLauncher = new StandbySulLauncher(edhocMapperConfig.getStandbySulCmd(),
+                    edhocMapperConfig.getStandbySulDir(), edhocMapperConfig.getHostPort(),
+                    edhocMapperConfig.getStandbySulPort(), standbyStartWait);
+            cleanupTasks.submit(standbySulLauncher::close);
+        }
+
+        // The SUL instances launch their own processes, each one with the port of its instance,
+        // so that neither a query answered by the cache or the sink prefix index nor a soft reset restarts the SUL
+        if (edhocMapperConfig.launchSulPerInstance() && getSulCommand() != null) {
+            int basePort = ((EdhocMapperConfig) sulConfig.getMapperConfig()).getHostPort();
+            sulCommand = replacePort(getSulCommand(), basePort, SulProcess.PORT_PLACEHOLDER).trim().split("\\s+", -1);
+            String processDir = sulConfig.getProcessDir() == null ? "." : sulConfig.getProcessDir();
+            String instancePort = String.valueOf(edhocMapperConfig.getHostPort());
+            sulProcessDir = new File(replacePort(processDir, basePort, instancePort));
+            cleanupTasks.submit(this::destroySulProcess);
+        }
+
+        if (edhocMapperConfig.useSoftReset()) {
+            softReset = new SoftReset(edhocMapperConfig, cleanupTasks, ephemeralKeyPool,
+                    (ClientMapperConnector) edhocMapperConnector, edhocMapperConfig.getSoftResetAbortWait(),
+                    originalTimeout);
+            cleanupTasks.submit(softReset::logStatistics);
+        }
+
         return this;
     }
 
@@ -107,12 +386,54 @@ public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecu
 
     @Override
     public void setDynamicPortProvider(DynamicPortProvider dynamicPortProvider) {
-        throw new RuntimeException("No dynamic port provider available");
+        if (edhocMapperConnector != null) {
+            throw new RuntimeException("Dynamic port provider should be set before the initialization of the SUL");
+        }
+
+        this.dynamicPortProvider = dynamicPortProvider;
+        this.edhocMapperConfig = ((EdhocMapperConfig) sulConfig.getMapperConfig()).withHostPort(
+                dynamicPortProvider.getSULPort());
     }
 
     @Override
     public DynamicPortProvider getDynamicPortProvider() {
-        throw new RuntimeException("No dynamic port provider available");
+        if (dynamicPortProvider == null) {
+            throw new RuntimeException("No dynamic port provider available");
+        }
+        return dynamicPortProvider;
+    }
+
+    @Override
+    public boolean canFork() {
+        return nextInstance.get() < edhocMapperConfig.getSulInstances();
+    }
+
+    /**
+     * Creates a new SUL instance, using the port of the next instance, which can
+     * restart its SUL while this one answers a query
+     */
+    @Override
+    public EdhocSul fork() {
+        int instance = nextInstance.getAndIncrement();
+        if (instance >= edhocMapperConfig.getSulInstances()) {
+            throw new IllegalStateException("All " + edhocMapperConfig.getSulInstances() + " SUL instances are in use");
+        }
+
+        // the client instances sharing the port of the first one are told apart by their connection ids
+        EdhocMapperConfig firstInstanceConfig = (EdhocMapperConfig) sulConfig.getMapperConfig();
+        EdhocSul forkedSul = new EdhocSul(sulConfig, cleanupTasks, nextInstance);
+        forkedSul.setDynamicPortProvider(new EdhocDynamicPortProvider(instance, firstInstanceConfig.getHostPort(),
+                firstInstanceConfig.shareSulPort() ? 0 : firstInstanceConfig.getSulPortStride()));
+        forkedSul.queryCache = queryCache;
+        forkedSul.sinkPrefixIndex = sinkPrefixIndex;
+        forkedSul.clientDemultiplexer = clientDemultiplexer;
+
+        if (firstInstanceConfig.shareSulPort()) {
+            forkedSul.edhocMapperConfig = forkedSul.edhocMapperConfig.withInstanceConnectionId(instance);
+        }
+
+        LOGGER.info("Forked SUL instance {} using port {}", instance, forkedSul.getDynamicPortProvider().getSULPort());
+        return forkedSul.initialize();
     }
 
     @Override
@@ -122,18 +443,49 @@ public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecu
 
     @Override
     public void pre() {
+        queryEvent = new QueryEvent();
+        queryEvent.begin();
+        querySteps = 0;
+
+        if (queryCache == null && sinkPrefixIndex == null) {
+            startQuery();
+            return;
+        }
+
+        // the query is started on the SUL only when an input is not answered by the cache or the sink prefix index
+        queryStarted = false;
+        queryPrefix.setLength(0);
+        queryInputs.clear();
+        queryCacheInputs.clear();
+        queryOutputs.clear();
+        queryCacheNode = queryCache == null ? QueryTrie.NONE : QueryTrie.ROOT;
+        sinkPrefixNode = sinkPrefixIndex == null ? QueryTrie.NONE : QueryTrie.ROOT;
+        sinkReachedAt = -1;
+    }
+
+    protected void startQuery() {
         LOGGER.debug("SUL 'pre' start");
+        long start = metricsRegistry.start();
+        queryStarted = true;
 
         if (sulConfig.isFuzzingClient()) {
             ServerMapperConnector serverMapperConnector = (ServerMapperConnector) edhocMapperConnector;
-            edhocMapperState = new ServerMapperState(edhocMapperConfig, cleanupTasks).initialize(serverMapperConnector);
+            edhocMapperState = buildOrResetMapperState();
+            beginConcretizedQuery(edhocMapperState);
+            edhocMapperState.initialize(serverMapperConnector);
 
             serverWaitForInitialMessageDone = false;
             cleanupTasks.submit(serverMapperConnector::shutdown);
 
+            // the client SUL is launched once the mapper server can receive its initial message
+            if (sulCommand != null) {
+                destroySulProcess();
+                sulProcess = SulProcess.launch(sulCommand, sulProcessDir, edhocMapperConfig.getHostPort());
+            }
+
             EdhocSulClientConfig edhocSulClientConfig = (EdhocSulClientConfig) sulConfig;
             long clientWait = edhocSulClientConfig.getClientWait();
-            if (clientWait > 0) {
+            if (clientWait > 0 && !edhocMapperConfig.useReadinessProbe()) {
                 try {
                     Thread.sleep(clientWait);
                 } catch (InterruptedException e) {
@@ -142,13 +494,53 @@ public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecu
             }
         } else {
             ClientMapperConnector clientMapperConnector = (ClientMapperConnector) edhocMapperConnector;
-            edhocMapperState = new ClientMapperState(edhocMapperConfig, cleanupTasks).initialize(clientMapperConnector);
+            prepare();
+
+            // switch to the warm standby SUL, whose start wait has elapsed in the background,
+            // unless the current SUL still answers after a soft reset
+            if (standbySulLauncher != null && (softReset == null || !standbySulLauncher.isActive()
+                    || !softReset.probe(edhocMapperConfig))) {
+                edhocMapperConfig = edhocMapperConfig.withHostPort(standbySulLauncher.activate());
+                clientMapperConnector.setUris(edhocMapperConfig.getEdhocCoapUri(), edhocMapperConfig.getAppCoapUri());
+            }
+
+            // relaunch the SUL process kept from the previous query, unless it still answers after a soft reset
+            if (softResetPending && !softReset.probe(edhocMapperConfig)) {
+                destroySulProcess();
+                prepare();
+            }
+            softResetPending = false;
+
+            // a new own connection id keeps the SUL from resuming a session of a previous query
+            if (softReset != null) {
+                edhocMapperConfig = softReset.rotate(edhocMapperConfig);
+            }
+
+            edhocMapperState = buildOrResetMapperState();
+            beginConcretizedQuery(edhocMapperState);
+            edhocMapperState.initialize(clientMapperConnector);
         }
 
         this.edhocExecutionContext = new EdhocExecutionContext(edhocMapperState);
+        queryPrefix.setLength(0);
+        adaptivePrefixPair = QueryTrie.ROOT;
+
+        // client SULs are probed when waiting for their initial message
+        if (edhocMapperConfig.useReadinessProbe()) {
+            if (!sulConfig.isFuzzingClient()) {
+                serverWaitForReadiness();
+            }
+            metricsRegistry.record("sul.pre", MetricsRegistry.NO_TAG, start);
+            LOGGER.debug("SUL 'pre' end");
+            return;
+        }
 
-        long startWait = sulConfig.getStartWait();
-        if (startWait > 0) {
+        // the start wait of the standby SUL has already elapsed, as well as part of the one of a SUL process
+        // launched ahead of the query
+        long startWait = standbySulLauncher == null ? sulConfig.getStartWait() : 0;
+        if (sulProcess != null) {
+            sulProcess.awaitStart(startWait);
+        } else if (startWait > 0) {
             try {
                 Thread.sleep(startWait);
             } catch (InterruptedException e) {
@@ -156,17 +548,154 @@ public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecu
             }
         }
 
+        metricsRegistry.record("sul.pre", MetricsRegistry.NO_TAG, start);
         LOGGER.debug("SUL 'pre' end");
     }
 
     @Override
     public void post() {
         LOGGER.debug("SUL 'post' start");
+
+        queryEvent.end(querySteps, queryPrefix, queryStarted);
+
+        if (softReset != null && queryStarted && edhocMapperState != null) {
+            softReset.abort(edhocMapperState);
+        }
+
+        // the SUL process is restarted on each query, as the process wrapper of a single SUL does,
+        // unless it is soft reset before the next query
+        if (queryStarted) {
+            if (softReset != null && sulProcess != null) {
+                softResetPending = true;
+            } else {
+                destroySulProcess();
+            }
+        }
+
+        if (!queryInputs.isEmpty()) {
+            if (queryStarted) {
+                recordQuery();
+            } else if (sinkReachedAt >= 0) {
+                sinkPrefixIndex.absorbed(queryInputs.size() - sinkReachedAt - 1);
+            } else if (queryCache != null) {
+                queryCache.answered();
+            }
+        }
+
         LOGGER.debug("SUL 'post' end");
     }
 
     @Override
     public EdhocOutput step(EdhocInput abstractInput) {
+        querySteps++;
+
+        if (queryCache == null && sinkPrefixIndex == null) {
+            return executeStep(abstractInput);
+        }
+
+        String inputSymbol = QueryCache.symbolOf(abstractInput);
+        queryInputs.add(abstractInput);
+        queryCacheInputs.add(inputSymbol);
+
+        if (queryStarted) {
+            EdhocOutput abstractOutput = executeStep(abstractInput);
+            queryOutputs.add(abstractOutput);
+            return abstractOutput;
+        }
+
+        EdhocOutput abstractOutput = lookupOutput(inputSymbol);
+        if (abstractOutput != null) {
+            queryOutputs.add(abstractOutput);
+            return abstractOutput;
+        }
+
+        startQuery();
+        return replayQuery();
+    }
+
+    /**
+     * Returns the output of the given input after the prefix of the current query from the cache or from
+     * the sink prefix index, or null if neither of them can answer it
+     */
+    protected EdhocOutput lookupOutput(String inputSymbol) {
+        if (sinkReachedAt >= 0) {
+            return edhocMapperComposer.getOutputMapper().disabled();
+        }
+
+        if (queryCacheNode != QueryTrie.NONE) {
+            queryCacheNode = queryCache.lookup(queryCacheNode, inputSymbol);
+        }
+
+        if (sinkPrefixNode != QueryTrie.NONE) {
+            sinkPrefixNode = sinkPrefixIndex.lookup(sinkPrefixNode, inputSymbol);
+            if (sinkPrefixNode != QueryTrie.NONE && sinkPrefixIndex.isSink(sinkPrefixNode)) {
+                sinkReachedAt = queryInputs.size() - 1;
+            }
+        }
+
+        if (queryCacheNode != QueryTrie.NONE) {
+            return queryCache.getOutput(queryCacheNode);
+        }
+
+        if (sinkPrefixNode != QueryTrie.NONE) {
+            return new EdhocOutput(sinkPrefixIndex.getOutput(sinkPrefixNode));
+        }
+
+        return null;
+    }
+
+    /** Records the executed query in the cache and its prefix that leads to a sink state, if any, in the index */
+    protected void recordQuery() {
+        if (queryCache != null) {
+            queryCache.record(queryCacheInputs, queryOutputs);
+        }
+
+        if (sinkPrefixIndex != null) {
+            for (int i = 0; i < queryOutputs.size(); i++) {
+                if (isSinkOutput(queryOutputs.get(i))) {
+                    List<String> outputNames = new ArrayList<>(i + 1);
+                    queryOutputs.subList(0, i + 1).forEach(output -> outputNames.add(output.getName()));
+                    sinkPrefixIndex.addSinkPrefix(queryCacheInputs.subList(0, i + 1), outputNames);
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Returns true if the output leads to a sink state, after which all outputs are DISABLED */
+    protected boolean isSinkOutput(EdhocOutput abstractOutput) {
+        EdhocOutputChecker edhocOutputChecker = edhocMapperComposer.getOutputChecker();
+        return edhocOutputChecker.isDisabled(abstractOutput) ||
+                (edhocMapperConfig.socketClosedAsSink() && edhocOutputChecker.isSocketClosed(abstractOutput));
+    }
+
+    /**
+     * Executes on the SUL the inputs of the current query, whose prefix has been answered without the SUL,
+     * and returns the output of the last input
+     */
+    protected EdhocOutput replayQuery() {
+        EdhocOutput abstractOutput = null;
+
+        for (int i = 0; i < queryInputs.size(); i++) {
+            abstractOutput = executeStep(queryInputs.get(i));
+
+            if (i == queryOutputs.size()) {
+                queryOutputs.add(abstractOutput);
+            } else {
+                if (!queryOutputs.get(i).getName().equals(abstractOutput.getName())) {
+                    // the latest output is recorded, but the cached one has already been answered
+                    LOGGER.warn("Non-determinism in query {}: input {} answered {} instead of the cached {}",
+                            queryCacheInputs, queryCacheInputs.get(i), abstractOutput.getName(),
+                            queryOutputs.get(i).getName());
+                }
+                queryOutputs.set(i, abstractOutput);
+            }
+        }
+
+        return abstractOutput;
+    }
+
+    protected EdhocOutput executeStep(EdhocInput abstractInput) {
         // In case of server mapper, wait for initial message from client
         serverWaitForInitialMessage();
 
@@ -178,9 +707,14 @@ public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecu
             return edhocMapperComposer.getOutputMapper().disabled();
         }
 
+        long start = metricsRegistry.start();
         EdhocOutput abstractOutput = executeInput(abstractInput);
+        if (metricsRegistry.isEnabled()) {
+            metricsRegistry.record("sul.step", abstractInput.getName() + " -> " + abstractOutput.getName(), start);
+        }
+        queryPrefix.append(abstractInput.getName()).append(',');
 
-        if (edhocMapperComposer.getOutputChecker().isDisabled(abstractOutput) || !edhocExecutionContext.isExecutionEnabled()) {
+        if (isSinkOutput(abstractOutput) || !edhocExecutionContext.isExecutionEnabled()) {
             // this should lead to a disabled sink state
             edhocExecutionContext.disableExecution();
         }
@@ -190,20 +724,185 @@ public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecu
         return abstractOutput;
     }
 
+    /**
+     * Launches the server SUL process of the next query of this instance, if it has not been launched,
+     * so that it can start while other instances answer queries
+     */
+    public void prepare() {
+        if (sulCommand != null && !sulConfig.isFuzzingClient() && sulProcess == null) {
+            sulProcess = SulProcess.launch(sulCommand, sulProcessDir, edhocMapperConfig.getHostPort());
+        }
+    }
+
+    /**
+     * Returns this instance to its state before a query, after its 'post' or 'prepare' has failed,
+     * by killing its SUL process and dropping its mapper state, which is rebuilt on the next query
+     */
+    public void recover() {
+        destroySulProcess();
+        edhocMapperState = null;
+        prepare();
+    }
+
+    protected void destroySulProcess() {
+        softResetPending = false;
+
+        if (sulProcess != null) {
+            sulProcess.destroy();
+            sulProcess = null;
+        }
+    }
+
+    /** Returns the command of the SUL, whether it is launched by the process wrapper or by the SUL instances */
+    protected String getSulCommand() {
+        return ((EdhocSulConfig) sulConfig).getInstanceCommand();
+    }
+
+    // replaces the given port, where it is not part of a longer number, with the given replacement
+    protected static String replacePort(String string, int port, String replacement) {
+        return string.replaceAll("(?<![0-9])" + port + "(?![0-9])", Matcher.quoteReplacement(replacement));
+    }
+
+    /**
+     * Returns the fingerprint of the inputs of the run that affect the outputs, i.e. the parameters of the mapper
+     * and its credentials, the contents of the credential files, the alphabet and the command, directory and URI
+     * of the SUL
+     */
+    protected String queryCacheFingerprint() {
+        StringWriter stringWriter = new StringWriter();
+        try (PrintWriter printWriter = new PrintWriter(stringWriter)) {
+            edhocMapperConfig.printOutputDescription(printWriter);
+
+            for (String filename : edhocMapperConfig.getAuthenticationConfig().getSourceFilenames()) {
+                printWriter.println(filename + ": " + QueryCache.fingerprint(Files.readAllBytes(Paths.get(filename))));
+            }
+
+            printWriter.println("SUL command: " + getSulCommand());
+            printWriter.println("SUL directory: " + sulConfig.getProcessDir());
+            printWriter.println("SUL URI: " + edhocMapperConfig.getEdhocCoapUri());
+            printWriter.println("Alphabet: " + alphabetDescription);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read the credential files of the query cache fingerprint", e);
+        }
+        return QueryCache.fingerprint(stringWriter.toString());
+    }
+
+    protected void beginConcretizedQuery(EdhocMapperState mapperState) {
+        mapperState.setConcretizers(sendConcretizer, recvConcretizer);
+
+        if (sendConcretizer != null) {
+            sendConcretizer.beginQuery();
+            recvConcretizer.beginQuery();
+        }
+    }
+
+    protected EdhocMapperState buildOrResetMapperState() {
+        long start = System.nanoTime();
+        mapperStateQueries++;
+
+        // a reused mapper state is rebuilt every so many queries, to sample the time of a warm build,
+        // unless the reused endpoint keeps the OSCORE contexts of the state
+        boolean sampleBuild = edhocMapperConfig.reuseMapperState() && !edhocMapperConfig.reuseMapperEndpoint()
+                && mapperStateQueries % MAPPER_STATE_BUILD_SAMPLING == 0;
+
+        if (!edhocMapperConfig.reuseMapperState() || edhocMapperState == null || sampleBuild) {
+            EdhocMapperState newMapperState;
+            if (clientDemultiplexer != null) {
+                newMapperState = new ServerMapperState(edhocMapperConfig, cleanupTasks, ephemeralKeyPool,
+                        clientDemultiplexer.getOscoreDb(), clientDemultiplexer.getUsedConnectionIds());
+            } else {
+                newMapperState = sulConfig.isFuzzingClient() ?
+                        new ServerMapperState(edhocMapperConfig, cleanupTasks, ephemeralKeyPool) :
+                        new ClientMapperState(edhocMapperConfig, cleanupTasks, ephemeralKeyPool);
+            }
+
+            long buildTime = System.nanoTime() - start;
+            if (edhocMapperState == null) {
+                mapperStateFirstBuildTime = buildTime;
+            } else {
+                mapperStateBuildTime += buildTime;
+                mapperStateBuildCount++;
+            }
+            metricsRegistry.record("mapper.state", "build", start);
+            return newMapperState;
+        }
+
+        edhocMapperState.resetToInitial();
+
+        long resetTime = System.nanoTime() - start;
+        mapperStateResetTime += resetTime;
+        mapperStateReuseCount++;
+        metricsRegistry.record("mapper.state", "reset", start);
+
+        LOGGER.debug("Mapper state reset in {} us", TimeUnit.NANOSECONDS.toMicros(resetTime));
+
+        return edhocMapperState;
+    }
+
+    protected void logMapperStateReuse() {
+        if (mapperStateReuseCount == 0) {
+            return;
+        }
+
+        long resetTimePerQuery = mapperStateResetTime / mapperStateReuseCount;
+        LOGGER.info("Mapper state reused in {} queries, reset in {} ms in total and {} us per query, "
+                + "after a first build in {} us", mapperStateReuseCount,
+                TimeUnit.NANOSECONDS.toMillis(mapperStateResetTime),
+                TimeUnit.NANOSECONDS.toMicros(resetTimePerQuery),
+                TimeUnit.NANOSECONDS.toMicros(mapperStateFirstBuildTime));
+
+        if (mapperStateBuildCount > 0) {
+            long buildTimePerQuery = mapperStateBuildTime / mapperStateBuildCount;
+            LOGGER.info("Mapper state built in {} us per query in {} sampled queries, saving {} us per reused query",
+                    TimeUnit.NANOSECONDS.toMicros(buildTimePerQuery), mapperStateBuildCount,
+                    TimeUnit.NANOSECONDS.toMicros(buildTimePerQuery - resetTimePerQuery));
+        }
+    }
+
     protected EdhocOutput executeInput(EdhocInput abstractInput) {
         boolean timeoutChanged = false;
+        boolean adaptiveWait = false;
+        long wait = originalTimeout;
+
+        // the pair of the input is also the prefix of the next input
+        int pair = QueryTrie.NONE;
+        if (adaptiveResponseWait != null) {
+            pair = adaptiveResponseWait.pairOf(adaptivePrefixPair, abstractInput.getName());
+            adaptivePrefixPair = pair;
+        }
 
         // handle timeout from extendedWait and from inputResponse
+        // and otherwise from the adaptive response wait
         if (abstractInput.getExtendedWait() != null) {
-            edhocMapperConnector.setTimeout(originalTimeout + abstractInput.getExtendedWait());
+            wait = originalTimeout + abstractInput.getExtendedWait();
+            edhocMapperConnector.setTimeout(wait);
             timeoutChanged = true;
         } else if (sulConfig.getInputResponseTimeout() != null &&
                 sulConfig.getInputResponseTimeout().containsKey(abstractInput.getName())) {
-            edhocMapperConnector.setTimeout(sulConfig.getInputResponseTimeout().get(abstractInput.getName()));
+            wait = sulConfig.getInputResponseTimeout().get(abstractInput.getName());
+            edhocMapperConnector.setTimeout(wait);
             timeoutChanged = true;
+        } else if (adaptiveResponseWait != null) {
+            adaptiveWait = true;
+            wait = adaptiveResponseWait.getWait(pair);
+            if (wait != originalTimeout) {
+                edhocMapperConnector.setTimeout(wait);
+                timeoutChanged = true;
+            }
         }
 
+        StepEvent stepEvent = new StepEvent();
+        stepEvent.begin();
+
         EdhocOutput abstractOutput = edhocMapperComposer.execute(abstractInput, edhocExecutionContext);
+        stepEvent.end(abstractInput.getName(), abstractOutput.getName(), wait);
+
+        // only the wait for the response is recorded, not the building and the processing of the messages
+        if (adaptiveWait) {
+            adaptiveResponseWait.record(pair, wait,
+                    TimeUnit.NANOSECONDS.toMillis(edhocMapperConnector.getResponseWaitTime()),
+                    edhocMapperComposer.getOutputChecker().isTimeout(abstractOutput));
+        }
 
         // reset timeout
         if (timeoutChanged) {
@@ -212,6 +911,18 @@ public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecu
         return abstractOutput;
     }
 
+    protected void serverWaitForReadiness() {
+        ClientMapperConnector clientMapperConnector = (ClientMapperConnector) edhocMapperConnector;
+        long start = System.currentTimeMillis();
+
+        if (clientMapperConnector.waitForServerReadiness(edhocMapperConfig.getReadinessTimeout(),
+                edhocMapperConfig.getReadinessProbeInterval())) {
+            LOGGER.debug("Server ready after {} ms", System.currentTimeMillis() - start);
+        } else {
+            LOGGER.warn("Server not ready within {} ms", edhocMapperConfig.getReadinessTimeout());
+        }
+    }
+
     protected void serverWaitForInitialMessage() {
         boolean isServer = !edhocMapperState.isCoapClient();
         boolean isResponder = !edhocMapperState.getEdhocSessionPersistent().isInitiator();
@@ -226,7 +937,11 @@ public class EdhocSul implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecu
         ServerMapperConnector serverMapperConnector = (ServerMapperConnector) edhocMapperConnector;
         EdhocOutputChecker edhocOutputChecker = edhocMapperComposer.getOutputChecker();
 
-        serverMapperConnector.waitForClientMessage();
+        if (!edhocMapperConfig.useReadinessProbe()) {
+            serverMapperConnector.waitForClientMessage();
+        } else if (!serverMapperConnector.waitForClientMessage(edhocMapperConfig.getReadinessTimeout())) {
+            LOGGER.warn("No message received from client within {} ms", edhocMapperConfig.getReadinessTimeout());
+        }
         EdhocOutput abstractOutput = edhocMapperComposer.getOutputMapper().receiveOutput(edhocExecutionContext);
         boolean isExpectedMessage = edhocOutputChecker.isMessage(abstractOutput, expectedMessageType);
 
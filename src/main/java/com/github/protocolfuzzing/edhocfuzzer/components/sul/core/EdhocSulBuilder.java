@@ -11,10 +11,23 @@ import com.github.protocolfuzzing.protocolstatefuzzer.components.sul.core.config
 import com.github.protocolfuzzing.protocolstatefuzzer.utils.CleanupTasks;
 
 public class EdhocSulBuilder implements SULBuilder<EdhocInput, EdhocOutput, EdhocExecutionContext>{
+
+    // the description of the alphabet of the built SULs
+    protected String alphabetDescription = "";
+
+    public void setAlphabetDescription(String alphabetDescription) {
+        this.alphabetDescription = alphabetDescription;
+    }
+
     @Override
     public AbstractSUL<EdhocInput, EdhocOutput, EdhocExecutionContext>
     buildSUL(SULConfig sulConfig, CleanupTasks cleanupTasks) {
-        return new EdhocSul(sulConfig, cleanupTasks).initialize();
+        EdhocSul edhocSul = new EdhocSul(sulConfig, cleanupTasks)
+                .withAlphabetDescription(alphabetDescription)
+                .initialize();
+
+        // the learner uses a pool of SUL instances when more than one instance is configured
+        return edhocSul.canFork() ? new EdhocSulPool(edhocSul) : edhocSul;
     }
 
     @Override
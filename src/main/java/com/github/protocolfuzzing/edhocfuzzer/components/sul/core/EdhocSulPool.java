@@ -0,0 +1,152 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.EdhocExecutionContext;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.mappers.EdhocMapperComposer;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.symbols.inputs.EdhocInput;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.symbols.outputs.EdhocOutput;
+import com.github.protocolfuzzing.protocolstatefuzzer.components.sul.core.AbstractSUL;
+import com.github.protocolfuzzing.protocolstatefuzzer.components.sul.core.SULAdapter;
+import com.github.protocolfuzzing.protocolstatefuzzer.components.sul.core.config.SULConfig;
+import com.github.protocolfuzzing.protocolstatefuzzer.components.sul.core.sulwrappers.DynamicPortProvider;
+import com.github.protocolfuzzing.protocolstatefuzzer.utils.CleanupTasks;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * A pool of SUL instances, forked from a first one, which is used by the learner
+ * in place of a single SUL. The learner asks one query at a time, so the queries
+ * are not answered in parallel. Each query is answered by the next idle instance,
+ * while the instances that answered the previous queries finish them and launch
+ * the SUL process of their next query in the background, so that the restarts and
+ * the start waits of the SUL instances overlap with the queries of the other ones.
+ * An instance that fails to finish its query is recovered before its next query.
+ */
+public class EdhocSulPool implements AbstractSUL<EdhocInput, EdhocOutput, EdhocExecutionContext> {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    protected List<EdhocSul> edhocSuls = new ArrayList<>();
+    protected BlockingQueue<EdhocSul> idleEdhocSuls;
+
+    // the failures of the instances that could not finish their query in the background
+    protected Map<EdhocSul, RuntimeException> failures = new ConcurrentHashMap<>();
+
+    // finishes the queries of the instances in the background
+    protected ExecutorService executorService;
+
+    // the instance answering the current query
+    protected EdhocSul currentEdhocSul = null;
+
+    public EdhocSulPool(EdhocSul firstEdhocSul) {
+        edhocSuls.add(firstEdhocSul);
+        while (firstEdhocSul.canFork()) {
+            edhocSuls.add(firstEdhocSul.fork());
+        }
+
+        idleEdhocSuls = new ArrayBlockingQueue<>(edhocSuls.size(), false, edhocSuls);
+        executorService = Executors.newFixedThreadPool(edhocSuls.size(), runnable -> {
+            Thread thread = new Thread(runnable, "sul-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        firstEdhocSul.getCleanupTasks().submit(executorService::shutdownNow);
+
+        // the SUL processes of the first queries are launched at once
+        edhocSuls.forEach(EdhocSul::prepare);
+
+        LOGGER.info("Created pool of {} SUL instances", edhocSuls.size());
+    }
+
+    public int size() {
+        return edhocSuls.size();
+    }
+
+    @Override
+    public SULConfig getSULConfig() {
+        return edhocSuls.get(0).getSULConfig();
+    }
+
+    @Override
+    public CleanupTasks getCleanupTasks() {
+        return edhocSuls.get(0).getCleanupTasks();
+    }
+
+    @Override
+    public EdhocMapperComposer getMapper() {
+        return edhocSuls.get(0).getMapper();
+    }
+
+    @Override
+    public void setDynamicPortProvider(DynamicPortProvider dynamicPortProvider) {
+        throw new RuntimeException("Dynamic port provider cannot be set on a pool of SUL instances");
+    }
+
+    @Override
+    public DynamicPortProvider getDynamicPortProvider() {
+        return edhocSuls.get(0).getDynamicPortProvider();
+    }
+
+    @Override
+    public SULAdapter getSULAdapter() {
+        throw new RuntimeException("No sul adapter available");
+    }
+
+    @Override
+    public void pre() {
+        try {
+            currentEdhocSul = idleEdhocSuls.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an idle SUL instance", e);
+        }
+
+        // an instance that failed to finish its previous query is recovered before its next one,
+        // and the failure is reported to the learner if it cannot be recovered
+        RuntimeException failure = failures.remove(currentEdhocSul);
+        if (failure != null) {
+            LOGGER.warn("Recovering SUL instance after its failure: {}", failure.getMessage());
+            try {
+                currentEdhocSul.recover();
+            } catch (RuntimeException e) {
+                e.addSuppressed(failure);
+                failures.put(currentEdhocSul, e);
+                idleEdhocSuls.add(currentEdhocSul);
+                currentEdhocSul = null;
+                throw new RuntimeException("Cannot recover SUL instance", e);
+            }
+        }
+
+        currentEdhocSul.pre();
+    }
+
+    @Override
+    public EdhocOutput step(EdhocInput abstractInput) {
+        return currentEdhocSul.step(abstractInput);
+    }
+
+    @Override
+    public void post() {
+        EdhocSul edhocSul = currentEdhocSul;
+        currentEdhocSul = null;
+
+        executorService.submit(() -> {
+            try {
+                edhocSul.post();
+                edhocSul.prepare();
+            } catch (RuntimeException e) {
+                LOGGER.error("Cannot finish the query of a SUL instance: {}", e.getMessage());
+                failures.put(edhocSul, e);
+            } finally {
+                idleEdhocSuls.add(edhocSul);
+            }
+        });
+    }
+}
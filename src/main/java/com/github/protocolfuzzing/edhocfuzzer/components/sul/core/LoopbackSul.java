@@ -0,0 +1,51 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * A stock cf-edhoc peer, such as the EdhocServer or the EdhocClient of cf-edhoc,
+ * run on loopback in place of the SUL process launched by -cmd. The peer is run in
+ * a child JVM with its own class path, isolated from the patched cf-edhoc and the
+ * Californium of the fuzzer, which is restarted on each query as a -cmd process is,
+ * since neither the endpoints nor the threads of a peer can be stopped within a JVM.
+ */
+public class LoopbackSul {
+    protected String mainClassName;
+    protected String[] args;
+    protected String classpath;
+
+    /**
+     * Creates the peer, whose command is its main class followed by its arguments,
+     * run from the given class path entries, separated by the path separator
+     */
+    public LoopbackSul(String command, String classpath) {
+        String[] tokens = command.trim().split("\\s+", -1);
+        this.mainClassName = tokens[0];
+        this.args = Arrays.copyOfRange(tokens, 1, tokens.length);
+        this.classpath = classpath;
+
+        for (String entry : classpath.split(File.pathSeparator, -1)) {
+            Path path = Paths.get(entry);
+            if (!Files.exists(path)) {
+                throw new RuntimeException("Class path entry of loopback SUL not found: " + path.toAbsolutePath());
+            }
+        }
+    }
+
+    /** Returns the command running the peer in a child JVM, with the JVM and the class path of the peer */
+    public String[] getProcessCommand() {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(classpath);
+        command.add(mainClassName);
+        command.addAll(Arrays.asList(args));
+        return command.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,291 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.messages.EdhocProtocolMessage;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.symbols.inputs.EdhocInput;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.symbols.outputs.EdhocOutput;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/*
+ * A cache of the outputs of the executed queries, kept in a QueryTrie, so that
+ * repeated queries are answered without the SUL. If a cache directory is given,
+ * the cache is also backed by a file, so that a new run with the same fingerprint,
+ * e.g. a restarted learning or a testing run, answers the queries already executed.
+ *
+ * The queries are appended to the file <fingerprint>.queries, one line per query:
+ *   crc32 <TAB> n <TAB> input_1 ... input_n <TAB> output_1 ... output_n
+ * where the crc32 is computed over the rest of the line, so that a partially
+ * written line after a crash is detected and skipped on load. A query answered
+ * differently than a previous one overrides it.
+ *
+ * The file can be compacted, keeping only the queries that are not prefixes of
+ * other queries, by running this class with the cache file as argument.
+ */
+public class QueryCache {
+    private static final Logger LOGGER = LogManager.getLogger();
+    protected static final String SEPARATOR = "\t";
+
+    // the number of executed queries after which the memory footprint of the cache is logged
+    protected static final long FOOTPRINT_REPORT_INTERVAL = 10000;
+
+    // the file of the cache and its writer, null if the cache is kept only in memory
+    protected Path cacheFile = null;
+    protected BufferedWriter cacheWriter = null;
+
+    protected QueryTrie queryTrie;
+
+    // statistics of the current run
+    protected long answeredQueries = 0;
+    protected long recordedQueries = 0;
+
+    public QueryCache(boolean keepMessages) {
+        this.queryTrie = new QueryTrie(keepMessages);
+    }
+
+    public QueryCache(boolean keepMessages, String cacheDir, String fingerprint) {
+        this(keepMessages);
+        this.cacheFile = Paths.get(cacheDir, fingerprint + ".queries");
+
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            if (Files.exists(cacheFile)) {
+                load();
+                terminateLastLine();
+            }
+            cacheWriter = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot open query cache " + cacheFile, e);
+        }
+    }
+
+    /** Returns the fingerprint of the given description of the configuration that affects the outputs */
+    public static String fingerprint(String description) {
+        return fingerprint(description.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns the fingerprint of the given contents, such as the contents of a file the outputs depend on */
+    public static String fingerprint(byte[] contents) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(messageDigest.digest(contents));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Returns the cache symbol of the input, which includes the input's own wait, since it can affect the output */
+    public static String symbolOf(EdhocInput input) {
+        return input.getExtendedWait() == null ? input.getName() : input.getName() + "@" + input.getExtendedWait();
+    }
+
+    /**
+     * Returns the node of the prefix that extends the prefix of the given node with the given input,
+     * or QueryTrie.NONE if it is not cached. The node of the empty prefix is QueryTrie.ROOT
+     */
+    public synchronized int lookup(int node, String input) {
+        return queryTrie.child(node, input);
+    }
+
+    /** Returns the cached output of the last input of the prefix of the given node */
+    public synchronized EdhocOutput getOutput(int node) {
+        List<EdhocProtocolMessage> messages = queryTrie.getMessages(node);
+        return messages == null ? new EdhocOutput(queryTrie.getOutput(node))
+                : new EdhocOutput(queryTrie.getOutput(node), messages);
+    }
+
+    /** Marks a query answered entirely from the cache */
+    public synchronized void answered() {
+        answeredQueries++;
+    }
+
+    /** Adds the executed query, appending it also to the cache file, so that it is available after a crash */
+    public synchronized void record(List<String> inputs, List<EdhocOutput> outputs) {
+        List<String> outputNames = new ArrayList<>(outputs.size());
+        int node = QueryTrie.ROOT;
+        for (int i = 0; i < inputs.size(); i++) {
+            outputNames.add(outputs.get(i).getName());
+            node = queryTrie.put(node, inputs.get(i), outputs.get(i).getName(), outputs.get(i).getMessages());
+        }
+        recordedQueries++;
+
+        if (recordedQueries % FOOTPRINT_REPORT_INTERVAL == 0) {
+            LOGGER.info("Query cache: {} prefixes cached in about {} KiB", queryTrie.size(), queryTrie.footprint() / 1024);
+        }
+
+        if (cacheWriter == null) {
+            return;
+        }
+
+        try {
+            cacheWriter.write(toLine(inputs, outputNames));
+            cacheWriter.newLine();
+            cacheWriter.flush();
+        } catch (IOException e) {
+            LOGGER.error("Cannot append to query cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    /** Returns the number of cached prefixes */
+    public synchronized int size() {
+        return queryTrie.size();
+    }
+
+    /** Returns an estimate of the memory taken by the cache in bytes */
+    public synchronized long footprint() {
+        return queryTrie.footprint();
+    }
+
+    public synchronized void close() {
+        if (cacheWriter != null) {
+            try {
+                cacheWriter.close();
+            } catch (IOException e) {
+                LOGGER.error("Cannot close query cache {}", cacheFile);
+            }
+        }
+
+        LOGGER.info("Query cache: {} queries answered, {} queries executed, {} prefixes cached in about {} KiB",
+                answeredQueries, recordedQueries, queryTrie.size(), queryTrie.footprint() / 1024);
+    }
+
+    protected void load() throws IOException {
+        long loaded = 0;
+        long skipped = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<List<String>> query = fromLine(line);
+                if (query == null) {
+                    skipped++;
+                } else {
+                    addQuery(queryTrie, query.get(0), query.get(1));
+                    loaded++;
+                }
+            }
+        }
+
+        LOGGER.info("Loaded {} queries from query cache {}, skipped {} invalid lines", loaded, cacheFile, skipped);
+    }
+
+    // a line partially written before a crash is terminated, so that the next appended line is not joined with it
+    protected void terminateLastLine() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile.toFile(), "rw")) {
+            if (file.length() > 0) {
+                file.seek(file.length() - 1);
+                if (file.read() != '\n') {
+                    file.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    protected static void addQuery(QueryTrie queryTrie, List<String> inputs, List<String> outputs) {
+        int node = QueryTrie.ROOT;
+        for (int i = 0; i < inputs.size(); i++) {
+            node = queryTrie.put(node, inputs.get(i), outputs.get(i), null);
+        }
+    }
+
+    protected static String toLine(List<String> inputs, List<String> outputs) {
+        String payload = inputs.size() + SEPARATOR + String.join(SEPARATOR, inputs) + SEPARATOR
+                + String.join(SEPARATOR, outputs);
+        return crc32(payload) + SEPARATOR + payload;
+    }
+
+    /** Returns the inputs and outputs of the line, or null if the line is invalid */
+    protected static List<List<String>> fromLine(String line) {
+        int crcEnd = line.indexOf(SEPARATOR);
+        if (crcEnd < 0 || !line.substring(0, crcEnd).equals(crc32(line.substring(crcEnd + 1)))) {
+            return null;
+        }
+
+        String[] fields = line.substring(crcEnd + 1).split(SEPARATOR, -1);
+        try {
+            int n = Integer.parseInt(fields[0]);
+            if (n <= 0 || fields.length != 2 * n + 1) {
+                return null;
+            }
+            return List.of(Arrays.asList(fields).subList(1, n + 1), Arrays.asList(fields).subList(n + 1, 2 * n + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    protected static String crc32(String payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc32.getValue());
+    }
+
+    /**
+     * Rewrites the given cache file keeping only the queries that are not prefixes of other queries,
+     * with the latest output of each prefix. It should not be used on the file of a running learning.
+     */
+    public static void compact(Path cacheFile) throws IOException {
+        QueryTrie queryTrie = new QueryTrie(false);
+        long queries = 0;
+
+        for (String line : Files.readAllLines(cacheFile, StandardCharsets.UTF_8)) {
+            List<List<String>> query = fromLine(line);
+            if (query != null) {
+                addQuery(queryTrie, query.get(0), query.get(1));
+                queries++;
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        addLeafLines(queryTrie, QueryTrie.ROOT, new ArrayList<>(), new ArrayList<>(), lines);
+
+        Path tempFile = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), "queries", ".tmp");
+        Files.write(tempFile, lines, StandardCharsets.UTF_8);
+        Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        LOGGER.info("Compacted query cache {} from {} to {} queries", cacheFile, queries, lines.size());
+    }
+
+    // adds the lines of the queries of the leaves under the given node, whose prefix is given
+    protected static void addLeafLines(QueryTrie queryTrie, int node, List<String> inputs, List<String> outputs,
+                                       List<String> lines) {
+        if (node != QueryTrie.ROOT && queryTrie.firstChild(node) == QueryTrie.NONE) {
+            lines.add(toLine(inputs, outputs));
+            return;
+        }
+
+        for (int child = queryTrie.firstChild(node); child != QueryTrie.NONE; child = queryTrie.nextSibling(child)) {
+            inputs.add(queryTrie.getInput(child));
+            outputs.add(queryTrie.getOutput(child));
+            addLeafLines(queryTrie, child, inputs, outputs, lines);
+            inputs.remove(inputs.size() - 1);
+            outputs.remove(outputs.size() - 1);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: QueryCache <query cache file>");
+            System.exit(1);
+        }
+
+        compact(Paths.get(args[0]));
+    }
+}
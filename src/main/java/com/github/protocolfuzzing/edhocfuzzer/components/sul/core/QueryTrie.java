@@ -0,0 +1,171 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.messages.EdhocProtocolMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A trie of queries stored in primitive arrays, whose input and output symbols
+ * are interned to int ids, so that each cached prefix takes a few ints instead
+ * of the objects of its inputs and output. The children of a node are kept in a
+ * list of siblings, which is short since the alphabets are small.
+ *
+ * The received messages of the outputs are kept only if requested, since their
+ * payloads take most of the memory of a cached output.
+ */
+public class QueryTrie {
+    public static final int ROOT = 0;
+    public static final int NONE = -1;
+
+    protected static final int INITIAL_CAPACITY = 1024;
+
+    // the interned input and output symbols
+    protected Map<String, Integer> symbolIds = new HashMap<>();
+    protected List<String> symbols = new ArrayList<>();
+
+    // the nodes, indexed by node id, where the output is the one of the last input of the prefix
+    protected int[] inputIds = new int[INITIAL_CAPACITY];
+    protected int[] outputIds = new int[INITIAL_CAPACITY];
+    protected int[] firstChildren = new int[INITIAL_CAPACITY];
+    protected int[] nextSiblings = new int[INITIAL_CAPACITY];
+    protected int size = 1;
+
+    // the received messages of the output of each node, null if they are not kept
+    protected List<List<EdhocProtocolMessage>> messages;
+    protected long messagesBytes = 0;
+
+    public QueryTrie(boolean keepMessages) {
+        firstChildren[ROOT] = NONE;
+        nextSiblings[ROOT] = NONE;
+        inputIds[ROOT] = NONE;
+        outputIds[ROOT] = NONE;
+
+        if (keepMessages) {
+            messages = new ArrayList<>(INITIAL_CAPACITY);
+            messages.add(null);
+        }
+    }
+
+    /** Returns the child of the node for the given input, or NONE if it is not cached */
+    public int child(int node, String input) {
+        Integer inputId = symbolIds.get(input);
+        if (inputId == null) {
+            return NONE;
+        }
+
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            if (inputIds[child] == inputId) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    /** Returns the child of the node for the given input, adding it without an output if it is not present */
+    public int add(int node, String input) {
+        int child = child(node, input);
+        if (child == NONE) {
+            child = newNode(intern(input));
+            nextSiblings[child] = firstChildren[node];
+            firstChildren[node] = child;
+        }
+        return child;
+    }
+
+    /** Returns the child of the node for the given input, setting its output and overriding any previous one */
+    public int put(int node, String input, String output, List<EdhocProtocolMessage> outputMessages) {
+        int child = add(node, input);
+        outputIds[child] = intern(output);
+
+        if (messages != null) {
+            messagesBytes += payloadBytes(outputMessages) - payloadBytes(messages.get(child));
+            messages.set(child, outputMessages);
+        }
+        return child;
+    }
+
+    public String getInput(int node) {
+        return symbols.get(inputIds[node]);
+    }
+
+    public String getOutput(int node) {
+        return symbols.get(outputIds[node]);
+    }
+
+    /** Returns the received messages of the output of the node, or null if they are not kept */
+    public List<EdhocProtocolMessage> getMessages(int node) {
+        return messages == null ? null : messages.get(node);
+    }
+
+    public int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    /** Returns the number of cached prefixes */
+    public int size() {
+        return size - 1;
+    }
+
+    /** Returns an estimate of the memory taken by the trie in bytes */
+    public long footprint() {
+        long footprint = 4L * Integer.BYTES * inputIds.length;
+        for (String symbol : symbols) {
+            // the string, its array and the map entry with its boxed id
+            footprint += 96 + symbol.length();
+        }
+
+        if (messages != null) {
+            footprint += 8L * messages.size() + messagesBytes;
+        }
+        return footprint;
+    }
+
+    protected int intern(String symbol) {
+        Integer id = symbolIds.get(symbol);
+        if (id == null) {
+            id = symbols.size();
+            symbols.add(symbol);
+            symbolIds.put(symbol, id);
+        }
+        return id;
+    }
+
+    protected int newNode(int inputId) {
+        if (size == inputIds.length) {
+            int capacity = 2 * size;
+            inputIds = Arrays.copyOf(inputIds, capacity);
+            outputIds = Arrays.copyOf(outputIds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        }
+
+        int node = size++;
+        inputIds[node] = inputId;
+        outputIds[node] = NONE;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+
+        if (messages != null) {
+            messages.add(null);
+        }
+        return node;
+    }
+
+    protected static long payloadBytes(List<EdhocProtocolMessage> outputMessages) {
+        long bytes = 0;
+        if (outputMessages != null) {
+            for (EdhocProtocolMessage message : outputMessages) {
+                bytes += message.getPayload() == null ? 0 : message.getPayload().length;
+            }
+        }
+        return bytes;
+    }
+}
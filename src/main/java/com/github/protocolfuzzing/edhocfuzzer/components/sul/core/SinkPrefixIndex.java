@@ -0,0 +1,71 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.BitSet;
+import java.util.List;
+
+/*
+ * An index of the observed query prefixes whose last output leads to a sink
+ * state, along with the outputs of their inputs. A query that extends such a
+ * prefix is answered with the outputs of the prefix followed by DISABLED for the
+ * remaining inputs, without resetting or contacting the SUL.
+ */
+public class SinkPrefixIndex {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    protected QueryTrie prefixTrie = new QueryTrie(false);
+
+    // the nodes of the trie whose prefix leads to a sink state
+    protected BitSet sinkNodes = new BitSet();
+
+    // the queries answered by the index and their inputs answered as DISABLED
+    protected long absorbedQueries = 0;
+    protected long absorbedInputs = 0;
+
+    /**
+     * Returns the node of the prefix that extends the prefix of the given node with the given input,
+     * or QueryTrie.NONE if it is not indexed. The node of the empty prefix is QueryTrie.ROOT
+     */
+    public synchronized int lookup(int node, String input) {
+        return prefixTrie.child(node, input);
+    }
+
+    public synchronized String getOutput(int node) {
+        return prefixTrie.getOutput(node);
+    }
+
+    /** Returns true if the prefix of the given node leads to a sink state */
+    public synchronized boolean isSink(int node) {
+        return sinkNodes.get(node);
+    }
+
+    /** Adds a prefix, whose last output leads to a sink state */
+    public synchronized void addSinkPrefix(List<String> inputs, List<String> outputs) {
+        int node = QueryTrie.ROOT;
+        for (int i = 0; i < inputs.size(); i++) {
+            node = prefixTrie.put(node, inputs.get(i), outputs.get(i), null);
+        }
+        sinkNodes.set(node);
+    }
+
+    /** Marks a query answered by the index, whose given number of inputs have been answered as DISABLED */
+    public synchronized void absorbed(int disabledInputs) {
+        absorbedQueries++;
+        absorbedInputs += disabledInputs;
+    }
+
+    public synchronized long getAbsorbedQueries() {
+        return absorbedQueries;
+    }
+
+    public synchronized long getAbsorbedInputs() {
+        return absorbedInputs;
+    }
+
+    public synchronized void logStatistics() {
+        LOGGER.info("Sink prefix oracle: {} queries absorbed, {} inputs answered as DISABLED, {} sink prefixes indexed",
+                absorbedQueries, absorbedInputs, sinkNodes.cardinality());
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.metrics.MetricsRegistry;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EphemeralKeyPool;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.MessageProcessorPersistent;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.messages.EdhocProtocolMessage;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.messages.common.CoapEmptyMessage;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.messages.common.EdhocErrorMessage;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.messages.initiator.EdhocMessage1;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.ClientMapperConnector;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.GenericErrorException;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.TimeoutException;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.UnsupportedMessageException;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.ClientMapperState;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.EdhocMapperState;
+import com.github.protocolfuzzing.protocolstatefuzzer.utils.CleanupTasks;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
+
+import java.util.HexFormat;
+
+/*
+ * Returns a server SUL to its initial state between queries without restarting it.
+ * The session of a finished query is aborted with an EDHOC error message and each
+ * new query uses a new own connection id, so that the SUL does not resume any of
+ * its previous sessions. Before a query, a canary session is started and aborted
+ * to check that the SUL still answers the initial message of the mapper, so that
+ * the caller can fall back to a hard restart when it does not.
+ */
+public class SoftReset {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    protected EdhocMapperConfig edhocMapperConfig;
+    protected CleanupTasks cleanupTasks;
+    protected EphemeralKeyPool ephemeralKeyPool;
+    protected ClientMapperConnector clientMapperConnector;
+
+    // the time in milliseconds to wait for the response of the SUL to an abort
+    // and to any other message, such as the canary, to which the timeout is restored
+    protected long abortWait;
+    protected long responseWait;
+
+    // the own connection id, which is extended by the rotation counter as a suffix
+    protected String baseConnectionId;
+    protected long rotation = 0;
+
+    protected long softResets = 0;
+    protected long failedCanaries = 0;
+
+    protected MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+
+    public SoftReset(EdhocMapperConfig edhocMapperConfig, CleanupTasks cleanupTasks, EphemeralKeyPool ephemeralKeyPool,
+                     ClientMapperConnector clientMapperConnector, long abortWait, long responseWait) {
+        this.edhocMapperConfig = edhocMapperConfig;
+        this.cleanupTasks = cleanupTasks;
+        this.ephemeralKeyPool = ephemeralKeyPool;
+        this.clientMapperConnector = clientMapperConnector;
+        this.abortWait = abortWait;
+        this.responseWait = responseWait;
+        this.baseConnectionId = HexFormat.of().formatHex(edhocMapperConfig.getOwnConnectionId());
+    }
+
+    /**
+     * Returns a copy of the given config with the next own connection id, whose suffix is the rotation
+     * counter as a big-endian byte string without leading zero bytes, so that no connection id is reused
+     */
+    public EdhocMapperConfig rotate(EdhocMapperConfig config) {
+        rotation++;
+        return config.withOwnConnectionId(baseConnectionId + rotationSuffix(rotation));
+    }
+
+    protected static String rotationSuffix(long rotation) {
+        String hex = Long.toHexString(rotation);
+        return hex.length() % 2 == 0 ? hex : "0" + hex;
+    }
+
+    /** Aborts the session of the given mapper state on the SUL, without waiting longer than the abort wait */
+    public void abort(EdhocMapperState edhocMapperState) {
+        EdhocProtocolMessage errorMessage = new EdhocErrorMessage(new MessageProcessorPersistent(edhocMapperState));
+        clientMapperConnector.setTimeout(abortWait);
+        send(errorMessage);
+
+        // any response of the SUL is ignored
+        receivedResponse();
+        clientMapperConnector.setTimeout(responseWait);
+    }
+
+    /**
+     * Starts and aborts a canary session on the SUL, with a config of the current SUL, and returns true
+     * if the SUL answered the initial message of the mapper, in which case the SUL is soft reset
+     */
+    public boolean probe(EdhocMapperConfig config) {
+        long start = metricsRegistry.start();
+        EdhocMapperState canaryState = new ClientMapperState(rotate(config), cleanupTasks, ephemeralKeyPool);
+        canaryState.initialize(clientMapperConnector);
+
+        MessageProcessorPersistent messageProcessorPersistent = new MessageProcessorPersistent(canaryState);
+        EdhocProtocolMessage canaryMessage = canaryState.getEdhocSessionPersistent().isInitiator() ?
+                new EdhocMessage1(messageProcessorPersistent) :
+                new CoapEmptyMessage(messageProcessorPersistent);
+
+        send(canaryMessage);
+        boolean alive = receivedResponse() && !clientMapperConnector.receivedCoapErrorMessage();
+        abort(canaryState);
+
+        if (alive) {
+            softResets++;
+            metricsRegistry.record("sul.softReset", "alive", start);
+        } else {
+            failedCanaries++;
+            metricsRegistry.record("sul.softReset", "failed", start);
+            LOGGER.warn("SUL did not answer the canary message after a soft reset");
+        }
+        return alive;
+    }
+
+    public void logStatistics() {
+        LOGGER.info("SUL soft reset {} times, with {} failed canaries", softResets, failedCanaries);
+    }
+
+    protected void send(EdhocProtocolMessage message) {
+        int contentFormat = edhocMapperConfig.useContentFormat() ?
+                message.getContentFormat(edhocMapperConfig.useOldContentFormat()) :
+                MediaTypeRegistry.UNDEFINED;
+
+        clientMapperConnector.send(message.getPayload(), message.getPayloadType(), message.getMessageCode(),
+                contentFormat);
+    }
+
+    protected boolean receivedResponse() {
+        try {
+            clientMapperConnector.receive();
+            return true;
+        } catch (GenericErrorException | TimeoutException | UnsupportedMessageException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Launches the processes of a server SUL, keeping the next one already started on
+ * an alternate port while the current one answers a query. On activation the warm
+ * standby becomes the current process, while the previous one is killed and a new
+ * standby is launched on its port in the background, so that neither the startup
+ * of the SUL nor its start wait delays the next query.
+ */
+public class StandbySulLauncher {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // the placeholder of the port in the command
+    public static final String PORT_PLACEHOLDER = SulProcess.PORT_PLACEHOLDER;
+
+    protected String[] commandTemplate;
+    protected File processDir;
+    protected int[] ports;
+    protected long startWait;
+
+    // kills the previous processes and launches the standby ones in order
+    protected ExecutorService executor;
+
+    protected SulProcess active = null;
+    protected Future<SulProcess> standby = null;
+    protected int activations = 0;
+
+    /**
+     * Creates a launcher of the given command, run in the given directory, whose processes alternate between
+     * the two given ports and are ready the given time in milliseconds after their launch
+     */
+    public StandbySulLauncher(String command, String processDir, int port, int standbyPort, long startWait) {
+        if (!command.contains(PORT_PLACEHOLDER)) {
+            throw new RuntimeException("Command of standby SUL does not contain the port placeholder " + PORT_PLACEHOLDER);
+        }
+
+        if (port == standbyPort) {
+            throw new RuntimeException("Standby SUL port " + standbyPort + " is the same as the port of the SUL");
+        }
+
+        this.commandTemplate = command.trim().split("\\s+", -1);
+        this.processDir = new File(processDir);
+        this.ports = new int[]{port, standbyPort};
+        this.startWait = startWait;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "standby-sul");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Makes the standby process the current one, once its start wait has elapsed, and returns its port.
+     * The first activation launches the first process and waits for it.
+     */
+    public synchronized int activate() {
+        SulProcess previous = active;
+
+        if (standby == null) {
+            active = launch(ports[0]);
+        } else {
+            try {
+                active = standby.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the standby SUL", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Cannot launch the standby SUL", e.getCause());
+            }
+        }
+
+        // the next standby is launched on the port of the previous process, once it has exited
+        int standbyPort = active.getPort() == ports[0] ? ports[1] : ports[0];
+        standby = executor.submit(() -> {
+            if (previous != null) {
+                previous.destroy();
+            }
+            return launch(standbyPort);
+        });
+
+        active.awaitStart(startWait);
+        if (!active.isAlive()) {
+            LOGGER.warn("SUL on port {} exited with {} before its activation", active.getPort(), active.exitValue());
+        }
+
+        activations++;
+        LOGGER.debug("Activated SUL on port {}", active.getPort());
+        return active.getPort();
+    }
+
+    /** Returns true if a process has been activated */
+    public synchronized boolean isActive() {
+        return active != null;
+    }
+
+    public synchronized void close() {
+        LOGGER.info("Standby SUL activated {} times", activations);
+        executor.shutdownNow();
+
+        try {
+            if (!executor.awaitTermination(SulProcess.DESTROY_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Standby SUL launcher did not terminate in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (active != null) {
+            active.destroy();
+        }
+
+        if (standby != null && standby.isDone() && !standby.isCancelled()) {
+            try {
+                standby.get().destroy();
+            } catch (InterruptedException | ExecutionException e) {
+                LOGGER.debug("No standby SUL to destroy: {}", e.getMessage());
+            }
+        }
+    }
+
+    protected SulProcess launch(int port) {
+        return SulProcess.launch(commandTemplate, processDir, port);
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * A SUL process launched by the fuzzer itself, instead of the process wrapper of
+ * the learning library, such as the process of a SUL instance or a standby SUL.
+ * The port of the SUL replaces the port placeholder in the tokens of its command.
+ */
+public class SulProcess {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // the placeholder of the port in the command
+    public static final String PORT_PLACEHOLDER = "{port}";
+
+    // the time in milliseconds to wait for a killed process to exit, before it is killed forcibly
+    protected static final long DESTROY_TIMEOUT = 1000;
+
+    protected Process process;
+    protected int port;
+    protected long launchTime;
+
+    protected SulProcess(Process process, int port) {
+        this.process = process;
+        this.port = port;
+        this.launchTime = System.nanoTime();
+    }
+
+    /** Launches the given command in the given directory, after replacing the port placeholder with the port */
+    public static SulProcess launch(String[] commandTemplate, File processDir, int port) {
+        List<String> command = new ArrayList<>(commandTemplate.length);
+        for (String token : commandTemplate) {
+            command.add(token.replace(PORT_PLACEHOLDER, String.valueOf(port)));
+        }
+
+        try {
+            Process process = new ProcessBuilder(command)
+                    .directory(processDir)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+
+            LOGGER.debug("Launched SUL {} on port {}", command, port);
+            return new SulProcess(process, port);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot launch SUL " + command, e);
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    public int exitValue() {
+        return process.exitValue();
+    }
+
+    /** Sleeps for the rest of the given start wait in milliseconds after the launch */
+    public void awaitStart(long startWait) {
+        long remaining = startWait - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launchTime);
+        if (remaining <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(remaining);
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted 'startWait' sleep for {} ms", remaining);
+        }
+    }
+
+    /** Kills the process along with its descendants and waits for it to exit, so that its port is released */
+    public void destroy() {
+        process.descendants().forEach(ProcessHandle::destroy);
+        process.destroy();
+
+        try {
+            if (!process.waitFor(DESTROY_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -7,7 +7,7 @@ import com.github.protocolfuzzing.protocolstatefuzzer.components.sul.core.config
 import com.github.protocolfuzzing.protocolstatefuzzer.components.sul.mapper.config.MapperConfig;
 import org.eclipse.californium.elements.config.Configuration;
 
-public class EdhocSulClientConfig extends SULClientConfigStandard {
+public class EdhocSulClientConfig extends SULClientConfigStandard implements EdhocSulConfig {
     public EdhocSulClientConfig(EdhocMapperConfig edhocMapperConfig) {
         super(edhocMapperConfig, new SULAdapterConfig(){});
     }
@@ -18,6 +18,16 @@ public class EdhocSulClientConfig extends SULClientConfigStandard {
         return mapperConfig;
     }
 
+    @Override
+    public String getCommand() {
+        return ((EdhocMapperConfig) mapperConfig).launchSulPerInstance() ? null : super.getCommand();
+    }
+
+    @Override
+    public String getInstanceCommand() {
+        return super.getCommand();
+    }
+
     @Override
     public <MC> void applyDelegate(MC config) {
         if (config instanceof EdhocMapperConnectionConfig) {
@@ -0,0 +1,14 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.config;
+
+/*
+ * The SUL configuration of EDHOC-Fuzzer. When more than one SUL instance is used,
+ * when queries may be answered without the SUL or when the SUL is soft reset, the
+ * command of the SUL is hidden from the process wrapper of the learning library,
+ * which would restart the SUL on every query, since each instance launches its own
+ * SUL process with the port of the instance and restarts it only when needed.
+ */
+public interface EdhocSulConfig {
+
+    /** Returns the command of the SUL, even if it is launched by the SUL instances */
+    String getInstanceCommand();
+}
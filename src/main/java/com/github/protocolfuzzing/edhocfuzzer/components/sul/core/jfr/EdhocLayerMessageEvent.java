@@ -0,0 +1,52 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.eclipse.californium.core.coap.Message;
+import org.eclipse.californium.core.coap.Request;
+
+/** A CoAP message sent or received through the EDHOC layer */
+@Name("edhocfuzzer.EdhocLayerMessage")
+@Label("EDHOC Layer Message")
+@Category({"EDHOC-Fuzzer", "EDHOC Layer"})
+@Description("A CoAP message sent or received through the EDHOC layer")
+@Enabled(false)
+public class EdhocLayerMessageEvent extends Event {
+    public static final String SEND = "send";
+    public static final String RECEIVE = "receive";
+
+    @Label("Direction")
+    protected String direction;
+
+    @Label("Message Type")
+    @Description("Request or response")
+    protected String messageType;
+
+    @Label("Message ID")
+    protected int mid;
+
+    @Label("Combined EDHOC+OSCORE")
+    protected boolean combined;
+
+    @Label("Payload Size")
+    @DataAmount
+    protected int payloadSize;
+
+    /** Commits an event of the given message, if the event is enabled */
+    public static void emit(String direction, Message message) {
+        EdhocLayerMessageEvent event = new EdhocLayerMessageEvent();
+        if (event.shouldCommit()) {
+            event.direction = direction;
+            event.messageType = message instanceof Request ? "request" : "response";
+            event.mid = message.getMID();
+            event.combined = message.getOptions().hasEdhoc();
+            event.payloadSize = message.getPayloadSize();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.HexFormat;
+
+/** The derivation of the OSCORE security context of an EDHOC session */
+@Name("edhocfuzzer.OscoreContext")
+@Label("OSCORE Context Derivation")
+@Category({"EDHOC-Fuzzer", "EDHOC Layer"})
+@Description("The derivation of the OSCORE security context of an EDHOC session")
+@Enabled(false)
+public class OscoreContextEvent extends Event {
+    @Label("Cipher Suite")
+    protected int cipherSuite;
+
+    @Label("Sender ID")
+    protected String senderId;
+
+    @Label("Recipient ID")
+    protected String recipientId;
+
+    @Label("Success")
+    protected boolean success;
+
+    public void end(int cipherSuite, byte[] senderId, byte[] recipientId, boolean success) {
+        if (shouldCommit()) {
+            this.cipherSuite = cipherSuite;
+            this.senderId = senderId == null ? null : HexFormat.of().formatHex(senderId);
+            this.recipientId = recipientId == null ? null : HexFormat.of().formatHex(recipientId);
+            this.success = success;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A query of the learner, from its 'pre' to its 'post' */
+@Name("edhocfuzzer.Query")
+@Label("Query")
+@Category({"EDHOC-Fuzzer", "SUL"})
+@Description("A query from 'pre' to 'post'")
+@Enabled(false)
+public class QueryEvent extends Event {
+    @Label("Steps")
+    @Description("The number of inputs of the query")
+    protected int steps;
+
+    @Label("Executed Inputs")
+    @Description("The inputs executed on the SUL, which exclude those answered by the cache or the sink prefix oracle")
+    protected String executedInputs;
+
+    @Label("Executed on SUL")
+    protected boolean executedOnSul;
+
+    public void end(int steps, CharSequence executedInputs, boolean executedOnSul) {
+        if (shouldCommit()) {
+            this.steps = steps;
+            this.executedInputs = executedInputs.toString();
+            this.executedOnSul = executedOnSul;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** The execution of an input on the SUL, from sending its message to receiving the output */
+@Name("edhocfuzzer.Step")
+@Label("Step")
+@Category({"EDHOC-Fuzzer", "SUL"})
+@Description("The execution of an input on the SUL")
+@Enabled(false)
+public class StepEvent extends Event {
+    @Label("Input")
+    protected String input;
+
+    @Label("Output")
+    protected String output;
+
+    @Label("Timeout")
+    @Description("The response timeout used for the input")
+    @Timespan(Timespan.MILLISECONDS)
+    protected long timeout;
+
+    public void end(String input, String output, long timeout) {
+        if (shouldCommit()) {
+            this.input = input;
+            this.output = output;
+            this.timeout = timeout;
+            commit();
+        }
+    }
+}
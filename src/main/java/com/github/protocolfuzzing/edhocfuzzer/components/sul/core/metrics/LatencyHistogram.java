@@ -0,0 +1,60 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A lock-free histogram of latencies in nanoseconds, whose buckets are powers of
+ * two, so that recording a value takes a few atomic increments. The percentiles
+ * are estimated as the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+    protected static final int BUCKETS = Long.SIZE;
+
+    // bucket i holds the values in [2^(i-1), 2^i)
+    protected AtomicLongArray bucketCounts = new AtomicLongArray(BUCKETS);
+    protected LongAdder count = new LongAdder();
+    protected LongAdder sum = new LongAdder();
+    protected AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        bucketCounts.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /** Returns an upper bound of the given percentile, in [0, 100], of the recorded values */
+    public long getPercentile(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile / 100 * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += bucketCounts.get(i);
+            if (seen >= rank) {
+                long upperBound = i == 0 ? 0 : i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                return Math.min(upperBound, getMax());
+            }
+        }
+        return getMax();
+    }
+}
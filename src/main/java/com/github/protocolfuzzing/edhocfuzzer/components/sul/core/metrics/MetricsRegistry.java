@@ -0,0 +1,156 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.metrics;
+
+import com.github.protocolfuzzing.protocolstatefuzzer.utils.CleanupTasks;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * The registry of the latency histograms of the SUL, the mapper and the message
+ * processor, keyed by the measured operation and a tag, such as the input or the
+ * output symbol, and of the counters of events, such as dropped exchanges. It is
+ * shared by the whole process, so that the measured code does not need to carry
+ * it, and records nothing until it is enabled, in which case it dumps all metrics
+ * periodically and at shutdown to a file.
+ */
+public class MetricsRegistry {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    public static final String METRICS_FILENAME = "metrics.txt";
+
+    // the tag of the operations measured as a whole
+    public static final String NO_TAG = "-";
+
+    protected volatile boolean enabled = false;
+    protected Path metricsFile;
+    protected ScheduledExecutorService dumpExecutor;
+
+    // the histograms keyed by operation and then by tag, so that no key is built on record
+    protected Map<String, Map<String, LatencyHistogram>> histograms = new ConcurrentHashMap<>();
+
+    protected Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /** Enables the recording, dumping the metrics every given seconds in the given directory; later calls are ignored */
+    public synchronized void enable(String metricsDir, long dumpInterval, CleanupTasks cleanupTasks) {
+        if (enabled) {
+            return;
+        }
+
+        metricsFile = Paths.get(metricsDir, METRICS_FILENAME);
+        dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpExecutor.scheduleAtFixedRate(this::dump, dumpInterval, dumpInterval, TimeUnit.SECONDS);
+        cleanupTasks.submit(this::shutdown);
+
+        enabled = true;
+        LOGGER.info("Metrics are dumped every {} s to {}", dumpInterval, metricsFile);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Returns the start time of a measurement, to be given to {@link #record} */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** Records the time elapsed since the given start in the histogram of the operation and tag */
+    public void record(String operation, String tag, long start) {
+        if (!enabled) {
+            return;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        histograms.computeIfAbsent(operation, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(tag, key -> new LatencyHistogram())
+                .record(elapsed);
+    }
+
+    /** Increments the given counter */
+    public void increment(String counter) {
+        if (enabled) {
+            counters.computeIfAbsent(counter, key -> new LongAdder()).increment();
+        }
+    }
+
+    public long getCount(String counter) {
+        LongAdder count = counters.get(counter);
+        return count == null ? 0 : count.sum();
+    }
+
+    public LatencyHistogram getHistogram(String operation, String tag) {
+        Map<String, LatencyHistogram> operationHistograms = histograms.get(operation);
+        return operationHistograms == null ? null : operationHistograms.get(tag);
+    }
+
+    public synchronized void shutdown() {
+        if (!enabled) {
+            return;
+        }
+
+        enabled = false;
+        dumpExecutor.shutdownNow();
+        dump();
+    }
+
+    /** Writes all metrics to the metrics file, replacing its previous contents */
+    public synchronized void dump() {
+        try {
+            Files.createDirectories(metricsFile.toAbsolutePath().getParent());
+            Path tempFile = Files.createTempFile(metricsFile.toAbsolutePath().getParent(), "metrics", ".tmp");
+
+            try (PrintWriter printWriter = new PrintWriter(Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8))) {
+                print(printWriter);
+            }
+
+            Files.move(tempFile, metricsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.error("Cannot dump metrics to {}: {}", metricsFile, e.getMessage());
+        }
+    }
+
+    /** Prints all histograms, with their times in microseconds, and all counters */
+    public void print(PrintWriter printWriter) {
+        printWriter.printf("%-32s %-48s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "tag", "count", "mean_us", "p50_us", "p90_us", "p99_us", "max_us");
+
+        new TreeMap<>(histograms).forEach((operation, operationHistograms) ->
+                new TreeMap<>(operationHistograms).forEach((tag, histogram) ->
+                        printWriter.printf("%-32s %-48s %10d %10d %10d %10d %10d %10d%n",
+                                operation, tag, histogram.getCount(),
+                                TimeUnit.NANOSECONDS.toMicros(histogram.getMean()),
+                                TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(50)),
+                                TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(90)),
+                                TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(99)),
+                                TimeUnit.NANOSECONDS.toMicros(histogram.getMax()))));
+
+        if (!counters.isEmpty()) {
+            printWriter.println();
+            printWriter.printf("%-32s %10s%n", "counter", "count");
+            new TreeMap<>(counters).forEach((counter, count) -> printWriter.printf("%-32s %10d%n", counter, count.sum()));
+        }
+    }
+}
@@ -3,27 +3,52 @@ package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
+/*
+ * Writes the concretized messages of one direction in the files:
+ *  - name.replay: each message prepended by its length as 4-byte little endian integer
+ *  - name.raw: the messages one after the other
+ *  - name.length: the number of messages written
+ *  - name.index: one line per message with its query, direction, offset and
+ *    length in the .replay file and timestamp in milliseconds, so that the
+ *    messages of a query can be found without scanning the .replay file
+ *
+ * The files are buffered and flushed at the query boundaries, when the flush
+ * interval has passed, so that they are usable up to the last flush on a crash
+ */
 public class Concretizer {
     private static final Logger LOGGER = LogManager.getLogger();
+    protected static final int BUFFER_SIZE = 64 * 1024;
+    protected static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    protected String name;
+    protected File lengthFile;
     protected int recordLength;
-    protected FileWriter fileWriter;
-    protected PrintWriter printWriter;
-    protected FileOutputStream fosRep;
-    protected FileOutputStream fosRaw;
+    protected int query;
+    protected long replayOffset;
+    protected long lastFlushMillis;
+    protected ByteBuffer lengthBuffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+    protected BufferedOutputStream bosRep;
+    protected BufferedOutputStream bosRaw;
+    protected BufferedWriter indexWriter;
 
     public Concretizer(String path, String name) {
         try {
             if (path.equals("")) path = ".";
+            this.name = name;
             this.recordLength = 0;
+            this.query = 0;
+            this.replayOffset = 0;
             File folder = new File(path);
             if (!folder.exists()) {
                 if(!folder.mkdir()) {
@@ -31,40 +56,76 @@ public class Concretizer {
                     return;
                 }
             }
-            this.fileWriter = new FileWriter(new File(folder, name + ".length"), StandardCharsets.UTF_8);
-            this.printWriter = new PrintWriter(fileWriter);
-            this.fosRep = new FileOutputStream(new File(folder, name + ".replay"), false);
-            this.fosRaw = new FileOutputStream(new File(folder, name + ".raw"), false);
+            this.lengthFile = new File(folder, name + ".length");
+            this.bosRep = new BufferedOutputStream(
+                    new FileOutputStream(new File(folder, name + ".replay"), false), BUFFER_SIZE);
+            this.bosRaw = new BufferedOutputStream(
+                    new FileOutputStream(new File(folder, name + ".raw"), false), BUFFER_SIZE);
+            this.indexWriter = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(new File(folder, name + ".index"), false), StandardCharsets.UTF_8));
+            this.lastFlushMillis = System.currentTimeMillis();
+            writeLength();
         } catch (IOException e) {
             LOGGER.error("Cannot create files");
         }
     }
 
-    public void concretize(byte[] val) {
+    /** Marks the start of a new query, whose messages are indexed with the next query number */
+    public synchronized void beginQuery() {
+        query += 1;
+
+        if (System.currentTimeMillis() - lastFlushMillis >= FLUSH_INTERVAL_MILLIS) {
+            flush();
+        }
+    }
+
+    public synchronized void concretize(byte[] val) {
         try {
             if (val == null) {
                 LOGGER.error("Message to concretize is null");
                 return;
             }
             recordLength += 1;
-            byte[] len = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(val.length).array();
-            fosRep.write(len);
-            fosRep.write(val);
-            fosRaw.write(val);
+            lengthBuffer.clear();
+            lengthBuffer.putInt(val.length);
+            bosRep.write(lengthBuffer.array());
+            bosRep.write(val);
+            bosRaw.write(val);
+
+            indexWriter.write(query + " " + name + " " + replayOffset + " " + val.length + " "
+                    + System.currentTimeMillis());
+            indexWriter.newLine();
+            replayOffset += 4 + val.length;
         } catch (IOException e) {
             LOGGER.error("Cannot write files");
         }
     }
 
-    public void close() {
+    public synchronized void flush() {
         try {
-            printWriter.println(recordLength);
-            fileWriter.close();
-            printWriter.close();
-            fosRep.close();
-            fosRaw.close();
+            bosRep.flush();
+            bosRaw.flush();
+            indexWriter.flush();
+            writeLength();
+            lastFlushMillis = System.currentTimeMillis();
+        } catch (IOException e) {
+            LOGGER.error("Cannot flush files");
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            flush();
+            bosRep.close();
+            bosRaw.close();
+            indexWriter.close();
         } catch (IOException e) {
             LOGGER.error("Cannot close files");
         }
     }
+
+    // the length file is rewritten, so that it always matches the flushed records
+    protected void writeLength() throws IOException {
+        Files.writeString(lengthFile.toPath(), recordLength + System.lineSeparator(), StandardCharsets.UTF_8);
+    }
 }
@@ -14,6 +14,9 @@ import java.util.Set;
 public class EdhocEndpointInfoPersistent extends EdhocEndpointInfo {
     protected Map<CBORObject, EdhocSessionPersistent> edhocSessionsPersistent;
 
+    // the pool of pre-generated ephemeral keys of the sessions, null if not used
+    protected EphemeralKeyPool ephemeralKeyPool = null;
+
     public EdhocEndpointInfoPersistent(
             HashMap<Integer, HashMap<Integer, CBORObject>> idCreds, HashMap<Integer, HashMap<Integer, CBORObject>> creds,
             HashMap<Integer, HashMap<Integer, OneKey>> keyPairs, HashMap<CBORObject, OneKey> peerPublicKeys,
@@ -33,6 +36,14 @@ public class EdhocEndpointInfoPersistent extends EdhocEndpointInfo {
         return edhocSessionsPersistent;
     }
 
+    public EphemeralKeyPool getEphemeralKeyPool() {
+        return ephemeralKeyPool;
+    }
+
+    public void setEphemeralKeyPool(EphemeralKeyPool ephemeralKeyPool) {
+        this.ephemeralKeyPool = ephemeralKeyPool;
+    }
+
     public String getOscoreUri() {
         return getUri();
     }
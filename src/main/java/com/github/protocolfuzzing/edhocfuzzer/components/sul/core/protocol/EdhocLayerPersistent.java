@@ -1,8 +1,9 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
 
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.jfr.EdhocLayerMessageEvent;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.CombinedMessageVersion;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.ClientDemultiplexer;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.CoapExchangeInfo;
-import com.github.protocolfuzzing.protocolstatefuzzer.utils.CleanupTasks;
 import com.upokecenter.cbor.CBORException;
 import com.upokecenter.cbor.CBORObject;
 import com.upokecenter.cbor.CBORType;
@@ -22,6 +23,7 @@ import org.eclipse.californium.oscore.OSCoreCtxDB;
 import org.eclipse.californium.oscore.OSException;
 
 import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -38,10 +40,15 @@ public class EdhocLayerPersistent extends AbstractLayer {
     OSCoreCtxDB ctxDb;
 
     // Map of existing EDHOC sessions
-    Map<CBORObject, EdhocSessionPersistent> edhocSessionsPersistent;
+    // It is volatile, since it may be rebound while the stack is in use
+    volatile Map<CBORObject, EdhocSessionPersistent> edhocSessionsPersistent;
 
     // MessageProcessor for reading message 3
-    MessageProcessorPersistent messageProcessorPersistent;
+    // It is volatile, since it may be rebound while the stack is in use
+    volatile MessageProcessorPersistent messageProcessorPersistent;
+
+    // Routes the requests to the message processors of several clients, null if there is a single one
+    volatile ClientDemultiplexer clientDemultiplexer = null;
 
     public EdhocLayerPersistent(EdhocEndpointInfoPersistent edhocEndpointInfoPersistent,
                                 MessageProcessorPersistent messageProcessorPersistent) {
@@ -51,14 +58,35 @@ public class EdhocLayerPersistent extends AbstractLayer {
         this.edhocSessionsPersistent = edhocEndpointInfoPersistent.getEdhocSessionsPersistent();
         this.messageProcessorPersistent = messageProcessorPersistent;
 
-        CleanupTasks cleanupTasks = messageProcessorPersistent.getEdhocMapperState().getCleanupTasks();
-        String path = messageProcessorPersistent.getEdhocMapperState().getEdhocMapperConfig().getConcretizeDir();
-        if (path != null) {
-            this.sendConcretizer = new Concretizer(path, "send");
-            this.recvConcretizer = new Concretizer(path, "recv");
-            cleanupTasks.submit(sendConcretizer::close);
-            cleanupTasks.submit(recvConcretizer::close);
+        // the concretizers are owned by the SUL and shared among queries
+        this.sendConcretizer = messageProcessorPersistent.getEdhocMapperState().getSendConcretizer();
+        this.recvConcretizer = messageProcessorPersistent.getEdhocMapperState().getRecvConcretizer();
+    }
+
+    /**
+     * Rebinds this layer to the given message processor and the sessions of its mapper state,
+     * so that the stack can be reused for a new query without being rebuilt.
+     * The OSCORE context database, used also by the other layers of the stack, cannot change.
+     */
+    public void rebind(MessageProcessorPersistent messageProcessorPersistent) {
+        EdhocEndpointInfoPersistent edhocEndpointInfoPersistent =
+                messageProcessorPersistent.getEdhocMapperState().getEdhocEndpointInfoPersistent();
+
+        if (edhocEndpointInfoPersistent.getOscoreDb() != ctxDb) {
+            throw new IllegalStateException("Unable to rebind EDHOC layer to a different OSCORE context database");
         }
+
+        LOGGER.debug("Rebinding EDHOC layer persistent");
+        this.edhocSessionsPersistent = edhocEndpointInfoPersistent.getEdhocSessionsPersistent();
+        this.messageProcessorPersistent = messageProcessorPersistent;
+        this.sendConcretizer = messageProcessorPersistent.getEdhocMapperState().getSendConcretizer();
+        this.recvConcretizer = messageProcessorPersistent.getEdhocMapperState().getRecvConcretizer();
+    }
+
+    /** Routes each received request to the message processor of its client, instead of the bound one */
+    public void setClientDemultiplexer(ClientDemultiplexer clientDemultiplexer) {
+        LOGGER.debug("Demultiplexing EDHOC layer persistent");
+        this.clientDemultiplexer = clientDemultiplexer;
     }
 
     @Override
@@ -105,6 +133,7 @@ public class EdhocLayerPersistent extends AbstractLayer {
             });
         }
 
+        EdhocLayerMessageEvent.emit(EdhocLayerMessageEvent.SEND, request);
         super.sendRequest(exchange, request);
     }
 
@@ -112,10 +141,11 @@ public class EdhocLayerPersistent extends AbstractLayer {
     public void sendResponse(Exchange exchange, Response response) {
         LOGGER.debug("Sending response through EDHOC layer");
         int MID = exchange.getRequest().getMID();
-        EdhocSessionPersistent session = messageProcessorPersistent.getEdhocMapperState().getEdhocSessionPersistent();
+        MessageProcessorPersistent processor = processorOf(exchange.getRequest());
+        EdhocSessionPersistent session = processor == null ? null : processor.getEdhocMapperState().getEdhocSessionPersistent();
 
-        if (session.getCoapExchanger().getDraftQueue().removeIf(coapExInfo -> coapExInfo.getMID() == MID)) {
-            // remove exchange from draft queue if left there and did not reach any resource
+        if (session != null && session.getCoapExchanger().removeDraft(MID) != null) {
+            // remove exchange from drafts if left there and did not reach any resource
             // but encountered an error and response came from a middle layer, so
             // intercept that response, unset necessary exchange flags and
             // add it to received queue with Unsuccessful flag set
@@ -135,17 +165,25 @@ public class EdhocLayerPersistent extends AbstractLayer {
             });
         }
 
+        EdhocLayerMessageEvent.emit(EdhocLayerMessageEvent.SEND, response);
         super.sendResponse(exchange, response);
     }
 
     @Override
     public void receiveRequest(Exchange exchange, Request request) {
         LOGGER.debug("Receiving request through EDHOC layer");
+        EdhocLayerMessageEvent.emit(EdhocLayerMessageEvent.RECEIVE, request);
 
         if(recvConcretizer != null) {
             recvConcretizer.concretize(request.getBytes());
         }
 
+        MessageProcessorPersistent processor = routeRequest(request);
+        if (processor == null) {
+            LOGGER.debug("Dropped request from unassigned client {}", request.getSourceContext().getPeerAddress());
+            return;
+        }
+
         if (request.getOptions().hasEdhoc()) {
 
             if (!request.getOptions().hasOscore()) {
@@ -154,9 +192,9 @@ public class EdhocLayerPersistent extends AbstractLayer {
             }
 
             LOGGER.debug("Combined EDHOC+OSCORE request");
-            LOGGER.debug(EdhocUtil.byteArrayToString("Received payload", request.getPayload()));
+            EdhocUtil.debugByteArray(LOGGER, "Received payload", request.getPayload());
 
-            CombinedMessagePair combinedMessagePair = splitCombinedMessage(request.getPayload());
+            CombinedMessagePair combinedMessagePair = splitCombinedMessage(request.getPayload(), processor);
             if (combinedMessagePair == null) {
                 LOGGER.error("Could not split received combined message");
                 return;
@@ -164,7 +202,7 @@ public class EdhocLayerPersistent extends AbstractLayer {
 
             // Prepare the actual OSCORE request, by replacing the payload
             byte[] oscorePayload = combinedMessagePair.oscorePayload;
-            LOGGER.debug(EdhocUtil.byteArrayToString("OSCORE request payload", oscorePayload));
+            EdhocUtil.debugByteArray(LOGGER, "OSCORE request payload", oscorePayload);
             request.setPayload(oscorePayload);
 
             // Rebuild the full message_3 sequence
@@ -173,9 +211,9 @@ public class EdhocLayerPersistent extends AbstractLayer {
 
             // Find C_R, by encoding the 'kid' from the OSCORE option
             byte[] kid = getKid(request.getOptions().getOscore());
-            CBORObject cR = messageProcessorPersistent.encodeIdentifier(kid);
+            CBORObject cR = processor.encodeIdentifier(kid);
 
-            if (messageProcessorPersistent.getEdhocMapperState().receiveWithPrependedCX()) {
+            if (processor.getEdhocMapperState().receiveWithPrependedCX()) {
                 // Prepend C_R if needed
                 edhocObjectList.add(cR);
             }
@@ -186,10 +224,11 @@ public class EdhocLayerPersistent extends AbstractLayer {
             // Assemble the full EDHOC message_3
             byte[] message3Sequence = Util.buildCBORSequence(edhocObjectList);
 
-            LOGGER.debug(EdhocUtil.byteArrayToString("Rebuilt EDHOC message_3", message3Sequence));
+            EdhocUtil.debugByteArray(LOGGER, "Rebuilt EDHOC message_3", message3Sequence);
 
             CBORObject kidCbor = CBORObject.FromObject(kid);
-            EdhocSessionPersistent session = edhocSessionsPersistent.get(kidCbor);
+            EdhocSessionPersistent session = processor.getEdhocMapperState().getEdhocEndpointInfoPersistent()
+                    .getEdhocSessionsPersistent().get(kidCbor);
 
             // Consistency checks
             if (session == null) {
@@ -198,7 +237,7 @@ public class EdhocLayerPersistent extends AbstractLayer {
             }
 
             // Process EDHOC message_3
-            boolean ok = messageProcessorPersistent.readMessage3(message3Sequence);
+            boolean ok = processor.readMessage3(message3Sequence);
 
             if (ok) {
                 addCoapExchangeInfo(request, true, session);
@@ -211,7 +250,7 @@ public class EdhocLayerPersistent extends AbstractLayer {
             }
         } else {
             // edhoc message or application data or unknown message
-            EdhocSessionPersistent session = messageProcessorPersistent.getEdhocMapperState().getEdhocSessionPersistent();
+            EdhocSessionPersistent session = processor.getEdhocMapperState().getEdhocSessionPersistent();
 
             if (request.getOptions().hasOscore()) {
                 // wait in case message 3 is received and current OSCORE context
@@ -230,6 +269,7 @@ public class EdhocLayerPersistent extends AbstractLayer {
     @Override
     public void receiveResponse(Exchange exchange, Response response) {
         LOGGER.debug("Receiving response through EDHOC layer");
+        EdhocLayerMessageEvent.emit(EdhocLayerMessageEvent.RECEIVE, response);
 
         if(recvConcretizer != null) {
             recvConcretizer.concretize(response.getBytes());
@@ -250,8 +290,84 @@ public class EdhocLayerPersistent extends AbstractLayer {
         super.receiveEmptyMessage(exchange, message);
     }
 
-    protected boolean hasCombinedMessageVersionEqV6() {
-        CombinedMessageVersion version = messageProcessorPersistent.getEdhocMapperState().getCombinedMessageVersion();
+    /** Returns the message processor of the client of the request, or null if its client has not been assigned */
+    protected MessageProcessorPersistent processorOf(Request request) {
+        ClientDemultiplexer demultiplexer = clientDemultiplexer;
+        if (demultiplexer == null) {
+            return messageProcessorPersistent;
+        }
+
+        ClientDemultiplexer.ClientContext clientContext = demultiplexer.lookup(request.getSourceContext().getPeerAddress());
+        return clientContext == null ? null : clientContext.getMessageProcessorPersistent();
+    }
+
+    /**
+     * Returns the message processor of the client of the received request, assigning a new client only
+     * on its initial request, or null if the request cannot be routed. The request is parsed with the
+     * processor of a current query, since the bound one may belong to a finished query.
+     */
+    protected MessageProcessorPersistent routeRequest(Request request) {
+        ClientDemultiplexer demultiplexer = clientDemultiplexer;
+        if (demultiplexer == null) {
+            return messageProcessorPersistent;
+        }
+
+        InetSocketAddress peerAddress = request.getSourceContext().getPeerAddress();
+        MessageProcessorPersistent requestProcessor = demultiplexer.processorFor(peerAddress);
+        if (requestProcessor == null) {
+            return null;
+        }
+
+        ClientDemultiplexer.ClientContext clientContext = demultiplexer.route(peerAddress, request.getMID(),
+                connectionIdOf(request, requestProcessor), isInitialRequest(request, requestProcessor));
+        return clientContext == null ? null : clientContext.getMessageProcessorPersistent();
+    }
+
+    /*
+     * Returns true if the request is the initial one of a client, i.e. an EDHOC message_1 prepended by
+     * the CBOR simple value true or, when the mapper is the initiator, an empty request asking for message_1
+     */
+    protected boolean isInitialRequest(Request request, MessageProcessorPersistent processor) {
+        if (request.getOptions().hasOscore()) {
+            return false;
+        }
+
+        if (request.getPayloadSize() == 0) {
+            return processor.getEdhocMapperState().getEdhocSessionPersistent().isInitiator();
+        }
+
+        try {
+            return CBORObject.True.equals(CBORObject.Read(new ByteArrayInputStream(request.getPayload())));
+        } catch (CBORException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Returns the connection identifier of this peer carried by the request, i.e. the kid of an OSCORE request
+     * or the prepended C_R of an EDHOC message, when CX correlation is used, or null if there is none.
+     */
+    protected CBORObject connectionIdOf(Request request, MessageProcessorPersistent processor) {
+        if (request.getOptions().hasOscore()) {
+            byte[] kid = getKid(request.getOptions().getOscore());
+            return kid == null ? null : CBORObject.FromObject(kid);
+        }
+
+        if (!processor.getEdhocMapperState().receiveWithPrependedCX() || request.getPayloadSize() == 0) {
+            return null;
+        }
+
+        try {
+            CBORObject cX = CBORObject.Read(new ByteArrayInputStream(request.getPayload()));
+            byte[] connectionId = processor.decodeIdentifier(cX);
+            return connectionId == null ? null : CBORObject.FromObject(connectionId);
+        } catch (CBORException e) {
+            return null;
+        }
+    }
+
+    protected boolean hasCombinedMessageVersionEqV6(MessageProcessorPersistent processor) {
+        CombinedMessageVersion version = processor.getEdhocMapperState().getCombinedMessageVersion();
         return version.equals(CombinedMessageVersion.v06);
     }
 
@@ -261,13 +377,13 @@ public class EdhocLayerPersistent extends AbstractLayer {
         int index = messageProcessorPersistent.getEdhocMapperState().sendWithPrependedCX() ? 1 : 0;
         CBORObject edhocMessage3Cbor = message3SequenceElements[index];
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("Message 3 Sequence ", message3Sequence));
-        LOGGER.debug(EdhocUtil.byteArrayToString("EDHOC Message 3", edhocMessage3Cbor.GetByteString()));
-        LOGGER.debug(EdhocUtil.byteArrayToString("OSCORE payload", oscorePayload));
+        EdhocUtil.debugByteArray(LOGGER, "Message 3 Sequence ", message3Sequence);
+        EdhocUtil.debugByteArray(LOGGER, "EDHOC Message 3", edhocMessage3Cbor.GetByteString());
+        EdhocUtil.debugByteArray(LOGGER, "OSCORE payload", oscorePayload);
 
         byte[] combinedMessagePart1, combinedMessagePart2;
 
-        if (hasCombinedMessageVersionEqV6()) {
+        if (hasCombinedMessageVersionEqV6(messageProcessorPersistent)) {
             // The combined message is composed of two concatenated elements:
             // 1. A CBOR byte string, with value the EDHOC Message 3
             // 2. A CBOR byte string, with value the original OSCORE payload
@@ -292,7 +408,7 @@ public class EdhocLayerPersistent extends AbstractLayer {
         System.arraycopy(combinedMessagePart1, 0, combinedMessage, 0, combinedMessagePart1.length);
         System.arraycopy(combinedMessagePart2, 0, combinedMessage, combinedMessagePart1.length, combinedMessagePart2.length);
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("New OSCORE payload", combinedMessage));
+        EdhocUtil.debugByteArray(LOGGER, "New OSCORE payload", combinedMessage);
         return combinedMessage;
     }
 
@@ -306,13 +422,13 @@ public class EdhocLayerPersistent extends AbstractLayer {
         }
     }
 
-    protected CombinedMessagePair splitCombinedMessage(byte[] combinedMessage) {
+    protected CombinedMessagePair splitCombinedMessage(byte[] combinedMessage, MessageProcessorPersistent processor) {
         if (combinedMessage == null) {
             LOGGER.error("Provided null combined message to split");
             return null;
         }
 
-        if (hasCombinedMessageVersionEqV6()) {
+        if (hasCombinedMessageVersionEqV6(processor)) {
             // CBOR objects included in the received CBOR sequence
             CBORObject[] cborObjectList = CBORObject.DecodeSequenceFromBytes(combinedMessage);
 
@@ -386,19 +502,15 @@ public class EdhocLayerPersistent extends AbstractLayer {
             }
         }
 
-        // add coapExhangeInfo to appropriate queue
+        // add coapExhangeInfo to appropriate exchanges
         if (isRequest) {
-            // in case of request, add it to draft queue in order for server resources to
-            // edit it and add it to received queue
-            if (!edhocSessionPersistent.getCoapExchanger().getDraftQueue().offer(coapExchangeInfo)) {
-                LOGGER.warn("Full draft queue found");
-            }
+            // in case of request, add it to drafts in order for server resources to
+            // edit it and add it to received exchanges
+            edhocSessionPersistent.getCoapExchanger().addDraft(coapExchangeInfo);
         } else {
-            // in case of response, add it to received queue immediately
+            // in case of response, add it to received exchanges immediately
             // for client to obtain
-            if (!edhocSessionPersistent.getCoapExchanger().getReceivedQueue().offer(coapExchangeInfo)) {
-                LOGGER.warn("Full received queue found");
-            }
+            edhocSessionPersistent.getCoapExchanger().addReceived(coapExchangeInfo);
         }
     }
 
@@ -408,9 +520,7 @@ public class EdhocLayerPersistent extends AbstractLayer {
         coapExchangeInfo.setHasUnsuccessfulMessage(true);
 
         coapExchangeInfo.setCoapExchange(new CoapExchange(exchange));
-        if (!edhocSessionPersistent.getCoapExchanger().getReceivedQueue().offer(coapExchangeInfo)) {
-            LOGGER.warn("Full received queue found");
-        }
+        edhocSessionPersistent.getCoapExchanger().addReceived(coapExchangeInfo);
     }
 
     /*
@@ -1,11 +1,14 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
 
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.jfr.OscoreContextEvent;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.metrics.MetricsRegistry;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.CoapExchanger;
 import com.upokecenter.cbor.CBORObject;
 import com.upokecenter.cbor.CBORType;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.californium.cose.AlgorithmID;
+import org.eclipse.californium.cose.OneKey;
 import org.eclipse.californium.edhoc.EdhocSession;
 import org.eclipse.californium.edhoc.SideProcessor;
 import org.eclipse.californium.edhoc.Util;
@@ -17,6 +20,10 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class EdhocSessionPersistent extends EdhocSession {
 
@@ -33,6 +40,13 @@ public class EdhocSessionPersistent extends EdhocSession {
     protected int oscoreMaxUnfragmentedSize;
     protected boolean oscoreCtxGenerated;
 
+    // completed when the next OSCORE context setup finishes, successfully or not,
+    // so that the Californium threads waiting for it are released immediately
+    protected volatile CompletableFuture<Void> oscoreCtxReady = new CompletableFuture<>();
+
+    // the last OSCORE context added to the database by this session, null if none
+    protected volatile OSCoreCtx oscoreCtx = null;
+
     protected List<Integer> peerSupportedCipherSuites;
     protected CBORObject cipherSuitesIncludeInError;
 
@@ -41,6 +55,9 @@ public class EdhocSessionPersistent extends EdhocSession {
     protected byte[] forceOscoreSenderId;
     protected byte[] forceOscoreRecipientId;
 
+    // the ephemeral keys are drawn from the pool, if there is one
+    protected EphemeralKeyPool ephemeralKeyPool;
+
     @SuppressWarnings("this-escape")
     public EdhocSessionPersistent(
             String sessionUri, boolean initiator, boolean clientInitiated, int method, byte[] connectionId,
@@ -63,6 +80,7 @@ public class EdhocSessionPersistent extends EdhocSession {
         this.sessionResetEnabled = sessionResetEnabled;
         this.forceOscoreSenderId = forceOscoreSenderId;
         this.forceOscoreRecipientId = forceOscoreRecipientId;
+        this.ephemeralKeyPool = edhocEndpointInfoPersistent.getEphemeralKeyPool();
 
         SideProcessor sideProcessor = new SideProcessor(
             edhocEndpointInfoPersistent.getTrustModel(),
@@ -82,6 +100,7 @@ public class EdhocSessionPersistent extends EdhocSession {
         } else {
             // do not reset, but allow for new oscore context to be derived
             oscoreCtxGenerated = false;
+            renewOscoreContextReadiness();
         }
     }
 
@@ -130,6 +149,22 @@ public class EdhocSessionPersistent extends EdhocSession {
         oscoreCtxGenerated = false;
         setupOscoreContext();
         oscoreCtxGenerated = false;
+        renewOscoreContextReadiness();
+    }
+
+    /**
+     * Sets a pre-generated ephemeral key of the selected cipher suite, if available, or else a new one,
+     * in the base session, which keeps the ephemeral key for all the message processing of cf-edhoc
+     */
+    @Override
+    public void setEphemeralKey() {
+        OneKey pooledEphemeralKey = ephemeralKeyPool == null ? null : ephemeralKeyPool.take(getSelectedCipherSuite());
+
+        if (pooledEphemeralKey != null) {
+            setEphemeralKey(pooledEphemeralKey);
+        } else {
+            super.setEphemeralKey();
+        }
     }
 
     public synchronized void setupOscoreContext() {
@@ -139,24 +174,27 @@ public class EdhocSessionPersistent extends EdhocSession {
             return;
         }
 
+        OscoreContextEvent oscoreContextEvent = new OscoreContextEvent();
+        oscoreContextEvent.begin();
+
         /* Invoke the EDHOC-Exporter to produce OSCORE input material */
         byte[] masterSecret = getMasterSecretOSCORE(this);
-        LOGGER.debug(EdhocUtil.byteArrayToString("OSCORE Master Secret", masterSecret));
+        EdhocUtil.debugByteArray(LOGGER, "OSCORE Master Secret", masterSecret);
 
         byte[] masterSalt = getMasterSaltOSCORE(this);
-        LOGGER.debug(EdhocUtil.byteArrayToString("OSCORE Master Salt", masterSalt));
+        EdhocUtil.debugByteArray(LOGGER, "OSCORE Master Salt", masterSalt);
 
         /* Set up the OSCORE Security Context */
 
         byte[] senderId = getOscoreSenderId();
-        LOGGER.debug(EdhocUtil.byteArrayToString("OSCORE Sender Id", senderId));
-        LOGGER.debug(EdhocUtil.byteArrayToString("peerConnectionId", getPeerConnectionId()));
-        LOGGER.debug(EdhocUtil.byteArrayToString("forceOscoreSenderId", forceOscoreSenderId));
+        EdhocUtil.debugByteArray(LOGGER, "OSCORE Sender Id", senderId);
+        EdhocUtil.debugByteArray(LOGGER, "peerConnectionId", getPeerConnectionId());
+        EdhocUtil.debugByteArray(LOGGER, "forceOscoreSenderId", forceOscoreSenderId);
 
         byte[] recipientId = getOscoreRecipientId();
-        LOGGER.debug(EdhocUtil.byteArrayToString("OSCORE Recipient Id", recipientId));
-        LOGGER.debug(EdhocUtil.byteArrayToString("connectionId", getConnectionId()));
-        LOGGER.debug(EdhocUtil.byteArrayToString("forceOscoreRecipientId", forceOscoreRecipientId));
+        EdhocUtil.debugByteArray(LOGGER, "OSCORE Recipient Id", recipientId);
+        EdhocUtil.debugByteArray(LOGGER, "connectionId", getConnectionId());
+        EdhocUtil.debugByteArray(LOGGER, "forceOscoreRecipientId", forceOscoreRecipientId);
 
         int selectedCipherSuite = getSelectedCipherSuite();
         AlgorithmID alg = getAppAEAD(selectedCipherSuite);
@@ -171,26 +209,51 @@ public class EdhocSessionPersistent extends EdhocSession {
                     oscoreReplayWindow, masterSalt, null, oscoreMaxUnfragmentedSize);
 
             getOscoreDb().addContext(oscoreUri, ctx);
+            oscoreCtx = ctx;
             oscoreCtxGenerated = true;
         } catch (OSException e) {
             oscoreCtxGenerated = false;
             LOGGER.error("Error when setting up the OSCORE Security Context: " + e.getMessage());
         } finally {
-            notifyAll();
+            oscoreContextEvent.end(selectedCipherSuite, senderId, recipientId, oscoreCtxGenerated);
+            oscoreCtxReady.complete(null);
         }
     }
 
-    public synchronized void waitForOscoreContext(long timeoutMillis) {
+    /** Waits up to the given timeout for the next OSCORE context setup to finish, returning at once if it already has */
+    public void waitForOscoreContext(long timeoutMillis) {
         LOGGER.debug("Start of waitForOscoreContext");
-        if (!oscoreCtxGenerated) {
+        MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+        long start = metricsRegistry.start();
+        CompletableFuture<Void> ready = oscoreCtxReady;
+        String outcome = "ready";
+
+        if (!ready.isDone()) {
             try {
-                wait(timeoutMillis);
+                ready.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                outcome = "notified";
+            } catch (TimeoutException e) {
+                outcome = "timeout";
             } catch (InterruptedException e) {
                 LOGGER.warn("Wait for OSCORE context generation interrupted: {}", e.getMessage());
+                Thread.currentThread().interrupt();
+                outcome = "interrupted";
+            } catch (ExecutionException e) {
+                // never completed exceptionally
+                throw new IllegalStateException(e);
             }
         }
+
+        metricsRegistry.record("session.waitForOscoreContext", outcome, start);
         // wait finished
-        LOGGER.debug("End of waitForOscoreContext, OSCORE context generated: {}", oscoreCtxGenerated);
+        LOGGER.debug("End of waitForOscoreContext: {}", outcome);
+    }
+
+    // a new readiness is needed only if the current one has been used by a previous setup
+    protected void renewOscoreContextReadiness() {
+        if (oscoreCtxReady.isDone()) {
+            oscoreCtxReady = new CompletableFuture<>();
+        }
     }
 
     public byte[] getOscoreSenderId() {
@@ -236,6 +299,10 @@ public class EdhocSessionPersistent extends EdhocSession {
         return coapExchanger;
     }
 
+    public OSCoreCtx getOscoreCtx() {
+        return oscoreCtx;
+    }
+
     @Override
     public List<Integer> getPeerSupportedCipherSuites() {
         return peerSupportedCipherSuites;
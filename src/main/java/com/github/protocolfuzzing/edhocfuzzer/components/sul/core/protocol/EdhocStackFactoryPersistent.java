@@ -1,5 +1,6 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
 
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.ClientDemultiplexer;
 import org.eclipse.californium.core.coap.CoAP;
 import org.eclipse.californium.core.network.ExtendedCoapStackFactory;
 import org.eclipse.californium.core.network.Outbox;
@@ -13,6 +14,9 @@ public class EdhocStackFactoryPersistent implements ExtendedCoapStackFactory {
     protected EdhocEndpointInfoPersistent edhocEndpointInfoPersistent;
     protected MessageProcessorPersistent messageProcessorPersistent;
 
+    // the last stack created by this factory
+    protected EdhocStackPersistent edhocStackPersistent;
+
     public EdhocStackFactoryPersistent(EdhocEndpointInfoPersistent edhocEndpointInfoPersistent,
                                  MessageProcessorPersistent messageProcessorPersistent) {
         this.edhocEndpointInfoPersistent = edhocEndpointInfoPersistent;
@@ -31,8 +35,38 @@ public class EdhocStackFactoryPersistent implements ExtendedCoapStackFactory {
             throw new IllegalArgumentException("erroneously provided custom coap stack: " + customStackArgument);
         }
 
-        return new EdhocStackPersistent(tag, config, outbox, matchingStrategy,
+        edhocStackPersistent = new EdhocStackPersistent(tag, config, outbox, matchingStrategy,
                 edhocEndpointInfoPersistent, messageProcessorPersistent);
+
+        return edhocStackPersistent;
+    }
+
+    /**
+     * Rebinds the stack created by this factory to the message processor of the given factory,
+     * so that the stack is reused in place of the one the given factory would create
+     */
+    public void rebind(EdhocStackFactoryPersistent edhocStackFactoryPersistent) {
+        if (edhocStackPersistent == null) {
+            throw new IllegalStateException("No stack has been created by this factory to be rebound");
+        }
+
+        edhocStackPersistent.getEdhocLayerPersistent().rebind(edhocStackFactoryPersistent.messageProcessorPersistent);
+    }
+
+    /**
+     * Routes the exchanges of the stack created by this factory through the given demultiplexer,
+     * so that the stack is shared by the message processors of several SUL instances
+     */
+    public void demultiplex(ClientDemultiplexer clientDemultiplexer) {
+        if (edhocStackPersistent == null) {
+            throw new IllegalStateException("No stack has been created by this factory to be demultiplexed");
+        }
+
+        edhocStackPersistent.getEdhocLayerPersistent().setClientDemultiplexer(clientDemultiplexer);
+    }
+
+    public MessageProcessorPersistent getMessageProcessorPersistent() {
+        return messageProcessorPersistent;
     }
 
     @SuppressWarnings("deprecation")
@@ -10,6 +10,8 @@ import org.eclipse.californium.oscore.ObjectSecurityLayer;
 /** Adapted from {@link org.eclipse.californium.edhoc.EdhocStack} */
 public class EdhocStackPersistent extends BaseCoapStack {
 
+    protected EdhocLayerPersistent edhocLayerPersistent;
+
     @SuppressWarnings("this-escape")
     public EdhocStackPersistent(String tag, final Configuration config, final Outbox outbox,
                                 EndpointContextMatcher matchingStrategy,
@@ -17,6 +19,8 @@ public class EdhocStackPersistent extends BaseCoapStack {
                                 MessageProcessorPersistent messageProcessorPersistent) {
         super(outbox);
 
+        edhocLayerPersistent = new EdhocLayerPersistent(edhocEndpointInfoPersistent, messageProcessorPersistent);
+
         Layer[] layers = new Layer[] {
                 new ObjectSecurityContextLayer(edhocEndpointInfoPersistent.getOscoreDb()),
                 new ExchangeCleanupLayer(config),
@@ -24,10 +28,14 @@ public class EdhocStackPersistent extends BaseCoapStack {
                 new BlockwiseLayer(tag, false, config, matchingStrategy),
                 CongestionControlLayer.newImplementation(tag, config),
                 new ObjectSecurityLayer(edhocEndpointInfoPersistent.getOscoreDb()),
-                new EdhocLayerPersistent(edhocEndpointInfoPersistent, messageProcessorPersistent)
+                edhocLayerPersistent
         };
 
         setLayers(layers);
     }
 
+    public EdhocLayerPersistent getEdhocLayerPersistent() {
+        return edhocLayerPersistent;
+    }
+
 }
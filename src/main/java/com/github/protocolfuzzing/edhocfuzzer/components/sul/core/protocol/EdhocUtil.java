@@ -1,10 +1,26 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
 
+import com.upokecenter.cbor.CBORObject;
 import net.i2p.crypto.eddsa.Utils;
+import org.apache.logging.log4j.Logger;
 import org.eclipse.californium.edhoc.Util;
 
 public class EdhocUtil extends Util {
 
+    /** Logs the dump of the content at debug level, building the dump only if the debug level is enabled */
+    public static void debugByteArray(Logger logger, String header, byte[] content) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(byteArrayToString(header, content));
+        }
+    }
+
+    /** Logs the dump of the encoded content at debug level, encoding it only if the debug level is enabled */
+    public static void debugCbor(Logger logger, String header, CBORObject content) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(byteArrayToString(header, content.EncodeToBytes()));
+        }
+    }
+
     /** Adapted from {@link org.eclipse.californium.edhoc.Util#nicePrint} */
     public static String byteArrayToString(String header, byte[] content) {
         if (content == null) {
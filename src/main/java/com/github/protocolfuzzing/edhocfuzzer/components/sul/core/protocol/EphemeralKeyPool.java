@@ -0,0 +1,157 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.californium.cose.KeyKeys;
+import org.eclipse.californium.cose.OneKey;
+import org.eclipse.californium.edhoc.Constants;
+import org.eclipse.californium.edhoc.Util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A bounded pool of pre-generated ephemeral key pairs per curve, refilled by a
+ * background thread, so that the key generation of a new session is moved out
+ * of the critical path of a query and overlaps with the wait time of the SUL.
+ * The pool of a curve is created and filled on the first request of a key of
+ * that curve.
+ */
+public class EphemeralKeyPool {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // the number of consecutive failed generations of a curve after which its refill requests are dropped,
+    // so that a curve that cannot be generated does not keep the refill thread busy
+    protected static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    protected int capacity;
+
+    // the pooled keys, keyed by the curve of the keys
+    protected Map<Integer, BlockingQueue<OneKey>> pooledKeys = new ConcurrentHashMap<>();
+
+    // the curves of the keys to be generated, one element per key
+    protected BlockingQueue<Integer> refillRequests = new LinkedBlockingQueue<>();
+
+    protected Thread refillThread;
+
+    protected AtomicLong hits = new AtomicLong();
+    protected AtomicLong misses = new AtomicLong();
+    protected AtomicLong failures = new AtomicLong();
+
+    @SuppressWarnings("this-escape")
+    public EphemeralKeyPool(int capacity) {
+        this.capacity = capacity;
+
+        refillThread = new Thread(this::refill, "ephemeral-key-pool");
+        refillThread.setDaemon(true);
+        refillThread.start();
+    }
+
+    /** Returns the curve of the ephemeral keys of the given cipher suite, or null if it is not pooled */
+    public static Integer curveOf(int cipherSuite) {
+        return switch (cipherSuite) {
+            case Constants.EDHOC_CIPHER_SUITE_0, Constants.EDHOC_CIPHER_SUITE_1 -> KeyKeys.OKP_X25519.AsInt32();
+            case Constants.EDHOC_CIPHER_SUITE_2, Constants.EDHOC_CIPHER_SUITE_3 -> KeyKeys.EC2_P256.AsInt32();
+            default -> null;
+        };
+    }
+
+    /**
+     * Returns a pre-generated ephemeral key pair for the given cipher suite, or null if none is available,
+     * in which case the caller should generate the key pair itself
+     */
+    public OneKey take(int cipherSuite) {
+        Integer curve = curveOf(cipherSuite);
+        if (curve == null) {
+            return null;
+        }
+
+        BlockingQueue<OneKey> keys = getKeys(curve);
+        OneKey key = keys.poll();
+        if (key == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        refillRequests.add(curve);
+        return key;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public void shutdown() {
+        refillThread.interrupt();
+        LOGGER.info("Ephemeral key pool: {} hits, {} misses, {} failed generations", hits.get(), misses.get(),
+                failures.get());
+    }
+
+    // the keys of a curve are requested only after their queue is added, so that the refill thread finds it
+    protected BlockingQueue<OneKey> getKeys(Integer curve) {
+        BlockingQueue<OneKey> keys = pooledKeys.get(curve);
+        if (keys != null) {
+            return keys;
+        }
+
+        BlockingQueue<OneKey> newKeys = new ArrayBlockingQueue<>(capacity);
+        keys = pooledKeys.putIfAbsent(curve, newKeys);
+        if (keys != null) {
+            return keys;
+        }
+
+        for (int i = 0; i < capacity; i++) {
+            refillRequests.add(curve);
+        }
+        return newKeys;
+    }
+
+    protected void refill() {
+        Map<Integer, Integer> consecutiveFailures = new HashMap<>();
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Integer curve = refillRequests.take();
+                OneKey key = generateKeyPair(curve);
+
+                if (key != null) {
+                    consecutiveFailures.remove(curve);
+                    pooledKeys.get(curve).offer(key);
+                    continue;
+                }
+
+                // the failed request is retried, so that the pool does not shrink, unless the curve keeps failing
+                failures.incrementAndGet();
+                int curveFailures = consecutiveFailures.merge(curve, 1, Integer::sum);
+                if (curveFailures < MAX_CONSECUTIVE_FAILURES) {
+                    LOGGER.warn("Cannot generate ephemeral key pair of curve {}, retrying", curve);
+                    refillRequests.add(curve);
+                } else {
+                    LOGGER.error("Cannot generate ephemeral key pair of curve {} after {} attempts", curve,
+                            curveFailures);
+                    consecutiveFailures.remove(curve);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected OneKey generateKeyPair(int curve) {
+        return Util.generateKeyPair(curve);
+    }
+}
@@ -1,7 +1,7 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
 
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.metrics.MetricsRegistry;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.EdhocMapperState;
-import com.upokecenter.cbor.CBORException;
 import com.upokecenter.cbor.CBORObject;
 import com.upokecenter.cbor.CBORType;
 import org.apache.logging.log4j.LogManager;
@@ -23,6 +23,7 @@ import java.util.*;
 public class MessageProcessorPersistent {
     private static final Logger LOGGER = LogManager.getLogger();
     protected EdhocMapperState edhocMapperState;
+    protected MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
 
     public MessageProcessorPersistent(EdhocMapperState edhocMapperState) {
         this.edhocMapperState = edhocMapperState;
@@ -43,16 +44,19 @@ public class MessageProcessorPersistent {
 
     /** Tries to match the byte sequence's structure of CBOR elements with an edhoc message */
     public StructureCodes messageTypeFromStructure(byte[] sequence) {
+        return messageTypeFromStructure(new ParsedEdhocMessage(sequence));
+    }
+
+    /** Tries to match the parsed message's structure of CBOR elements with an edhoc message */
+    public StructureCodes messageTypeFromStructure(ParsedEdhocMessage parsedMessage) {
         LOGGER.debug("Start of messageTypeFromStructure");
-        if (sequence == null) {
+        if (parsedMessage.getSequence() == null) {
             return StructureCodes.UNKNOWN_MESSAGE;
         }
 
-        CBORObject[] elements;
-        try {
-            elements = CBORObject.DecodeSequenceFromBytes(sequence);
-        } catch (CBORException e) {
-            LOGGER.error("MessageType: " + e.getMessage());
+        List<CBORObject> elements = parsedMessage.getElements();
+        if (elements == null) {
+            LOGGER.error("MessageType: " + parsedMessage.getDecodeError());
             return StructureCodes.UNKNOWN_MESSAGE;
         }
 
@@ -65,7 +69,7 @@ public class MessageProcessorPersistent {
         // A CoAP client receives responses from CoAP server without connection identifiers prepended
         // A CoAP server receives requests from CoAP clients with C_I or C_R prepended if enabled
         int cX_offset = edhocMapperState.receiveWithPrependedCX() ? 1 : 0;
-        int messageElementsLength = elements.length - cX_offset;
+        int messageElementsLength = elements.size() - cX_offset;
 
         switch (messageElementsLength) {
             case 4, 5 -> {
@@ -95,11 +99,47 @@ public class MessageProcessorPersistent {
         }
     }
 
+    /**
+     * Returns false if the parsed message is ruled out as message 2, 3 or 4 without processing it,
+     * because its last element, which is CIPHERTEXT_3, CIPHERTEXT_4 or G_Y | CIPHERTEXT_2, is not a byte string
+     */
+    public boolean mayBeMessage2Or3Or4(ParsedEdhocMessage parsedMessage) {
+        int length = parsedMessage.getElementsLength();
+        return length > 0 && parsedMessage.getElement(length - 1).getType() == CBORType.ByteString;
+    }
+
+    /**
+     * Returns false if the parsed message is ruled out as message 2 without processing it,
+     * because G_Y | CIPHERTEXT_2 is not longer than G_Y for the cipher suite of any session
+     */
+    public boolean mayBeMessage2(ParsedEdhocMessage parsedMessage) {
+        if (!mayBeMessage2Or3Or4(parsedMessage)) {
+            return false;
+        }
+
+        int length = parsedMessage.getElement(parsedMessage.getElementsLength() - 1).GetByteString().length;
+        for (EdhocSessionPersistent session :
+                edhocMapperState.getEdhocEndpointInfoPersistent().getEdhocSessionsPersistent().values()) {
+            if (length > EdhocSession.getEphermeralKeyLength(session.getSelectedCipherSuite())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
 
     /* Initiator message functions -- only session of Initiator is modified */
 
     /** Adapted from {@link org.eclipse.californium.edhoc.MessageProcessor#writeMessage1} */
     public byte[] writeMessage1() {
+        long start = metricsRegistry.start();
+        byte[] message1 = buildMessage1();
+        metricsRegistry.record("processor.writeMessage1", MetricsRegistry.NO_TAG, start);
+        return message1;
+    }
+
+    protected byte[] buildMessage1() {
         LOGGER.debug("Start of writeMessage1");
         EdhocSessionPersistent session = edhocMapperState.getEdhocSessionPersistent();
 
@@ -115,7 +155,7 @@ public class MessageProcessorPersistent {
         // METHOD as CBOR integer
         int method = session.getMethod();
         CBORObject method_cbor = CBORObject.FromObject(method);
-        LOGGER.debug(EdhocUtil.byteArrayToString("METHOD", method_cbor.EncodeToBytes()));
+        EdhocUtil.debugCbor(LOGGER, "METHOD", method_cbor);
         objectList.add(method_cbor);
 
         // SUITES_I as CBOR integer or CBOR array
@@ -174,7 +214,7 @@ public class MessageProcessorPersistent {
                 }
             }
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("SUITES_I", suitesI.EncodeToBytes()));
+        EdhocUtil.debugCbor(LOGGER, "SUITES_I", suitesI);
         objectList.add(suitesI);
 
         // G_X as a CBOR byte string
@@ -193,13 +233,13 @@ public class MessageProcessorPersistent {
         }
 
         objectList.add(gX);
-        LOGGER.debug(EdhocUtil.byteArrayToString("G_X", gX.GetByteString()));
+        EdhocUtil.debugByteArray(LOGGER, "G_X", gX.GetByteString());
 
         // C_I
         byte[] connectionIdentifierInitiator = session.getConnectionId();
         CBORObject cI = encodeIdentifier(connectionIdentifierInitiator);
-        LOGGER.debug(EdhocUtil.byteArrayToString("Connection Identifier of the Initiator", connectionIdentifierInitiator));
-        LOGGER.debug(EdhocUtil.byteArrayToString("C_I", cI.EncodeToBytes()));
+        EdhocUtil.debugByteArray(LOGGER, "Connection Identifier of the Initiator", connectionIdentifierInitiator);
+        EdhocUtil.debugCbor(LOGGER, "C_I", cI);
         objectList.add(cI);
 
         // Produce possible EAD items following early instructions from the application
@@ -233,7 +273,7 @@ public class MessageProcessorPersistent {
 
         /* Prepare EDHOC Message 1 */
         byte[] message1 = EdhocUtil.buildCBORSequence(objectList);
-        LOGGER.debug(EdhocUtil.byteArrayToString("EDHOC Message 1", message1));
+        EdhocUtil.debugByteArray(LOGGER, "EDHOC Message 1", message1);
 
         // Compute and store the hash of Message 1
         // In case of CoAP request the first byte 0xf5 must be skipped
@@ -251,7 +291,20 @@ public class MessageProcessorPersistent {
 
     /** Adapted from {@link org.eclipse.californium.edhoc.MessageProcessor#readMessage2} */
     public boolean readMessage2(byte[] sequence) {
+        return readMessage2(new ParsedEdhocMessage(sequence));
+    }
+
+    /** Same as {@link #readMessage2(byte[])}, using the already decoded elements of the parsed message */
+    public boolean readMessage2(ParsedEdhocMessage parsedMessage) {
+        long start = metricsRegistry.start();
+        boolean ok = processMessage2(parsedMessage);
+        metricsRegistry.record("processor.readMessage2", MetricsRegistry.NO_TAG, start);
+        return ok;
+    }
+
+    protected boolean processMessage2(ParsedEdhocMessage parsedMessage) {
         LOGGER.debug("Start of readMessage2");
+        byte[] sequence = parsedMessage.getSequence();
         Map<CBORObject, EdhocSessionPersistent> edhocSessions = edhocMapperState.getEdhocEndpointInfoPersistent().getEdhocSessionsPersistent();
         Map<CBORObject, OneKey> peerPublicKeys = edhocMapperState.getEdhocEndpointInfoPersistent().getPeerPublicKeys();
         Map<CBORObject, CBORObject> peerCredentials = edhocMapperState.getEdhocEndpointInfoPersistent().getPeerCredentials();
@@ -265,10 +318,8 @@ public class MessageProcessorPersistent {
         }
 
         int index = -1;
-        CBORObject[] objectListRequest;
-        try {
-            objectListRequest = CBORObject.DecodeSequenceFromBytes(sequence);
-        } catch (Exception e) {
+        List<CBORObject> objectListRequest = parsedMessage.getElements();
+        if (objectListRequest == null) {
             LOGGER.error("R_M2: Unable to decode byte sequence to CBOR object array");
             return false;
         }
@@ -282,7 +333,7 @@ public class MessageProcessorPersistent {
             // Message 2 is transported in a CoAP request
             // C_I is present as first element of the CBOR sequence
             index++;
-            CBORObject cI = objectListRequest[index];
+            CBORObject cI = objectListRequest.get(index);
 
             if (cI.getType() != CBORType.ByteString && cI.getType() != CBORType.Integer)  {
                 LOGGER.error("R_M2: C_I must be a byte string or an integer");
@@ -301,7 +352,7 @@ public class MessageProcessorPersistent {
             connectionIdentifierInitiator = edhocMapperState.getEdhocSessionPersistent().getConnectionId();
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("Connection Identifier of the Initiator", connectionIdentifierInitiator));
+        EdhocUtil.debugByteArray(LOGGER, "Connection Identifier of the Initiator", connectionIdentifierInitiator);
 
         CBORObject connectionIdentifierInitiatorCbor = CBORObject.FromObject(connectionIdentifierInitiator);
         EdhocSessionPersistent session = edhocSessions.get(connectionIdentifierInitiatorCbor);
@@ -314,12 +365,12 @@ public class MessageProcessorPersistent {
         // G_Y | CIPHERTEXT_2
         index++;
 
-        if (objectListRequest[index].getType() != CBORType.ByteString) {
+        if (objectListRequest.get(index).getType() != CBORType.ByteString) {
             LOGGER.error("R_M2: (G_Y | CIPHERTEXT_2) must be a byte string");
             return false;
         }
 
-        byte[] gY_Ciphertext2 = objectListRequest[index].GetByteString();
+        byte[] gY_Ciphertext2 = objectListRequest.get(index).GetByteString();
 
         int gYLength = EdhocSession.getEphermeralKeyLength(session.getSelectedCipherSuite());
         int ciphertext2Length = gY_Ciphertext2.length - gYLength;
@@ -333,7 +384,7 @@ public class MessageProcessorPersistent {
         byte[] gY = new byte[gYLength];
         System.arraycopy(gY_Ciphertext2, 0, gY, 0, gYLength);
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("G_Y", gY));
+        EdhocUtil.debugByteArray(LOGGER, "G_Y", gY);
 
         // Ephemeral public key of the Responder
         int selectedCipherSuite = session.getSelectedCipherSuite();
@@ -352,12 +403,12 @@ public class MessageProcessorPersistent {
             return false;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("PeerEphemeralPublicKey", peerEphemeralKey.AsCBOR().EncodeToBytes()));
+        EdhocUtil.debugCbor(LOGGER, "PeerEphemeralPublicKey", peerEphemeralKey.AsCBOR());
 
         // CIPHERTEXT_2
         byte[] ciphertext2 = new byte[ciphertext2Length];
         System.arraycopy(gY_Ciphertext2, gYLength, ciphertext2, 0, ciphertext2Length);
-        LOGGER.debug(EdhocUtil.byteArrayToString("CIPHERTEXT_2", ciphertext2));
+        EdhocUtil.debugByteArray(LOGGER, "CIPHERTEXT_2", ciphertext2);
 
         CBORObject cR = null;
         byte[] connectionIdentifierResponder = null;
@@ -365,7 +416,7 @@ public class MessageProcessorPersistent {
         if (hasProtocolVersionLeqV19()) {
             // C_R for version leq v19
             index++;
-            cR = objectListRequest[index];
+            cR = objectListRequest.get(index);
 
             if (cR.getType() != CBORType.ByteString && cR.getType() != CBORType.Integer) {
                 LOGGER.error("R_M2: C_R must be a byte string or an integer");
@@ -378,8 +429,8 @@ public class MessageProcessorPersistent {
                 return false;
             }
 
-            LOGGER.debug(EdhocUtil.byteArrayToString("Connection Identifier of the Responder", connectionIdentifierResponder));
-            LOGGER.debug(EdhocUtil.byteArrayToString("C_R", cR.EncodeToBytes()));
+            EdhocUtil.debugByteArray(LOGGER, "Connection Identifier of the Responder", connectionIdentifierResponder);
+            EdhocUtil.debugCbor(LOGGER, "C_R", cR);
 
             if (session.getApplicationProfile().getUsedForOSCORE()
                 && Arrays.equals(connectionIdentifierInitiator, connectionIdentifierResponder)) {
@@ -407,8 +458,8 @@ public class MessageProcessorPersistent {
             return false;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("H(message_1)", hashMessage1));
-        LOGGER.debug(EdhocUtil.byteArrayToString("TH_2", th2));
+        EdhocUtil.debugByteArray(LOGGER, "H(message_1)", hashMessage1);
+        EdhocUtil.debugByteArray(LOGGER, "TH_2", th2);
 
         // Compute the Diffie-Hellman secret G_XY
         byte[] dhSecret = SharedSecretCalculation.generateSharedSecret(session.getEphemeralKey(), peerEphemeralKey);
@@ -418,7 +469,7 @@ public class MessageProcessorPersistent {
             return false;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("G_XY", dhSecret));
+        EdhocUtil.debugByteArray(LOGGER, "G_XY", dhSecret);
 
         // Compute PRK_2e
         byte[] prk2e = null;
@@ -433,7 +484,7 @@ public class MessageProcessorPersistent {
             return false;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("PRK_2e", prk2e));
+        EdhocUtil.debugByteArray(LOGGER, "PRK_2e", prk2e);
 
         // Compute KEYSTREAM_2
         byte[] keystream2 = computeKeystream2(session, th2, prk2e, ciphertext2.length);
@@ -442,11 +493,11 @@ public class MessageProcessorPersistent {
             return false;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("KEYSTREAM_2", keystream2));
+        EdhocUtil.debugByteArray(LOGGER, "KEYSTREAM_2", keystream2);
 
         // Compute the plaintext
         byte[] plaintext2 = EdhocUtil.arrayXor(ciphertext2, keystream2);
-        LOGGER.debug(EdhocUtil.byteArrayToString("Plaintext retrieved from CIPHERTEXT_2", plaintext2));
+        EdhocUtil.debugByteArray(LOGGER, "Plaintext retrieved from CIPHERTEXT_2", plaintext2);
 
         // Parse the plaintext as a CBOR sequence
         // baseIndex is the index of ID_CRED_R
@@ -500,8 +551,8 @@ public class MessageProcessorPersistent {
                 return false;
             }
 
-            LOGGER.debug(EdhocUtil.byteArrayToString("Connection Identifier of the Responder", connectionIdentifierResponder));
-            LOGGER.debug(EdhocUtil.byteArrayToString("C_R", cR.EncodeToBytes()));
+            EdhocUtil.debugByteArray(LOGGER, "Connection Identifier of the Responder", connectionIdentifierResponder);
+            EdhocUtil.debugCbor(LOGGER, "C_R", cR);
 
             if (session.getApplicationProfile().getUsedForOSCORE()
                 && Arrays.equals(connectionIdentifierInitiator, connectionIdentifierResponder)) {
@@ -621,7 +672,7 @@ public class MessageProcessorPersistent {
             return false;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("PRK_3e2m", prk3e2m));
+        EdhocUtil.debugByteArray(LOGGER, "PRK_3e2m", prk3e2m);
 
         if (peerCredCBOR == null) {
             LOGGER.error("R_M2: Unable to retrieve the peer credential");
@@ -636,11 +687,11 @@ public class MessageProcessorPersistent {
             return false;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("MAC_2", mac2));
+        EdhocUtil.debugByteArray(LOGGER, "MAC_2", mac2);
 
         // Verify Signature_or_MAC_2
         byte[] signatureOrMac2 = plaintextElementList[baseIndex + 1].GetByteString();
-        LOGGER.debug(EdhocUtil.byteArrayToString("Signature_or_MAC_2", signatureOrMac2));
+        EdhocUtil.debugByteArray(LOGGER, "Signature_or_MAC_2", signatureOrMac2);
 
         // Prepare the External Data, as a CBOR sequence
         byte[] externalData = computeExternalData(th2, peerCredential, ead2);
@@ -649,7 +700,7 @@ public class MessageProcessorPersistent {
             return false;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("External Data to verify Signature_or_MAC_2", externalData));
+        EdhocUtil.debugByteArray(LOGGER, "External Data to verify Signature_or_MAC_2", externalData);
 
         if (!verifySignatureOrMac2(session, peerLongTermKey, idCredR, signatureOrMac2, externalData, mac2)) {
             LOGGER.error("R_M2: Non valid Signature_or_MAC_2");
@@ -698,6 +749,13 @@ public class MessageProcessorPersistent {
 
     /** Adapted from {@link org.eclipse.californium.edhoc.MessageProcessor#writeMessage3} */
     public byte[] writeMessage3() {
+        long start = metricsRegistry.start();
+        byte[] message3 = buildMessage3();
+        metricsRegistry.record("processor.writeMessage3", MetricsRegistry.NO_TAG, start);
+        return message3;
+    }
+
+    protected byte[] buildMessage3() {
         LOGGER.debug("Start of writeMessage3");
         EdhocSessionPersistent session = edhocMapperState.getEdhocSessionPersistent();
         List<CBORObject> objectList = new ArrayList<>();
@@ -708,9 +766,8 @@ public class MessageProcessorPersistent {
         if (edhocMapperState.sendWithPrependedCX()) {
             byte[] connectionIdentifierResponder = session.getPeerConnectionId();
             CBORObject cR = encodeIdentifier(connectionIdentifierResponder);
-            LOGGER.debug(EdhocUtil.byteArrayToString("Connection Identifier of the Responder",
-                    connectionIdentifierResponder));
-            LOGGER.debug(EdhocUtil.byteArrayToString("C_R", cR.EncodeToBytes()));
+            EdhocUtil.debugByteArray(LOGGER, "Connection Identifier of the Responder", connectionIdentifierResponder);
+            EdhocUtil.debugCbor(LOGGER, "C_R", cR);
             objectList.add(cR);
         }
 
@@ -734,7 +791,7 @@ public class MessageProcessorPersistent {
             return null;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("TH_3", th3));
+        EdhocUtil.debugByteArray(LOGGER, "TH_3", th3);
 
         // Compute the key material
         byte[] prk4e3m = computePRK4e3m(session, session.getPRK3e2m(), th3, session.getPeerLongTermPublicKey(),
@@ -744,7 +801,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M3: Computing PRK_4e3m");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("PRK_4e3m", prk4e3m));
+        EdhocUtil.debugByteArray(LOGGER, "PRK_4e3m", prk4e3m);
 
         // Produce possible EAD items following early instructions from the application
         SideProcessor sideProcessor = session.getSideProcessor();
@@ -783,7 +840,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M3: Computing MAC_3");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("MAC_3", mac3));
+        EdhocUtil.debugByteArray(LOGGER, "MAC_3", mac3);
 
         // Compute Signature_or_MAC_3
 
@@ -799,7 +856,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M3: Computing Signature_or_MAC_3");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("Signature_or_MAC_3", signatureOrMac3));
+        EdhocUtil.debugByteArray(LOGGER, "Signature_or_MAC_3", signatureOrMac3);
 
         /* Start computing CIPHERTEXT_3 */
 
@@ -810,14 +867,14 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M3: Computing K_3");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("K_3", k3));
+        EdhocUtil.debugByteArray(LOGGER, "K_3", k3);
 
         byte[] iv3 = computeKeyOrIV3("IV", session, th3, session.getPRK3e2m());
         if (iv3 == null) {
             LOGGER.error("W_M3: Computing IV_3");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("IV_3", iv3));
+        EdhocUtil.debugByteArray(LOGGER, "IV_3", iv3);
 
         // Prepare the External Data as including only TH3
         externalData = th3;
@@ -841,12 +898,12 @@ public class MessageProcessorPersistent {
         }
 
         byte[] plaintext3 = EdhocUtil.buildCBORSequence(plaintextElementList);
-        LOGGER.debug(EdhocUtil.byteArrayToString("Plaintext to compute CIPHERTEXT_3", plaintext3));
+        EdhocUtil.debugByteArray(LOGGER, "Plaintext to compute CIPHERTEXT_3", plaintext3);
 
         // Compute CIPHERTEXT_3 and add it to the outer CBOR sequence
 
         byte[] ciphertext3 = computeCiphertext3(session.getSelectedCipherSuite(), externalData, plaintext3, k3, iv3);
-        LOGGER.debug(EdhocUtil.byteArrayToString("CIPHERTEXT_3", ciphertext3));
+        EdhocUtil.debugByteArray(LOGGER, "CIPHERTEXT_3", ciphertext3);
         objectList.add(CBORObject.FromObject(ciphertext3));
 
         /* Compute TH4 */
@@ -864,7 +921,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M3: Computing TH_4");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("TH_4", th4));
+        EdhocUtil.debugByteArray(LOGGER, "TH_4", th4);
 
         /* Compute PRK_out */
         byte[] prkOut = computePRKout(session, th4, prk4e3m);
@@ -872,7 +929,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M3: Computing PRK_out");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("PRK_out", prkOut));
+        EdhocUtil.debugByteArray(LOGGER, "PRK_out", prkOut);
 
         /* Compute PRK_exporter */
         byte[] prkExporter = computePRKexporter(session, prkOut);
@@ -880,11 +937,11 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M3: Computing PRK_exporter");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("PRK_exporter", prkExporter));
+        EdhocUtil.debugByteArray(LOGGER, "PRK_exporter", prkExporter);
 
         /* Prepare EDHOC Message 3 */
         byte[] message3 = EdhocUtil.buildCBORSequence(objectList);
-        LOGGER.debug(EdhocUtil.byteArrayToString("EDHOC Message 3", message3));
+        EdhocUtil.debugByteArray(LOGGER, "EDHOC Message 3", message3);
 
         /* Modify session and derive new oscore context */
         if (session.isInitiator()) {
@@ -904,7 +961,20 @@ public class MessageProcessorPersistent {
 
     /** Adapted from {@link org.eclipse.californium.edhoc.MessageProcessor#readMessage4} */
     public boolean readMessage4(byte[] sequence) {
+        return readMessage4(new ParsedEdhocMessage(sequence));
+    }
+
+    /** Same as {@link #readMessage4(byte[])}, using the already decoded elements of the parsed message */
+    public boolean readMessage4(ParsedEdhocMessage parsedMessage) {
+        long start = metricsRegistry.start();
+        boolean ok = processMessage4(parsedMessage);
+        metricsRegistry.record("processor.readMessage4", MetricsRegistry.NO_TAG, start);
+        return ok;
+    }
+
+    protected boolean processMessage4(ParsedEdhocMessage parsedMessage) {
         LOGGER.debug("Start of readMessage4");
+        byte[] sequence = parsedMessage.getSequence();
         Map<CBORObject, EdhocSessionPersistent> edhocSessions = edhocMapperState.getEdhocEndpointInfoPersistent().getEdhocSessionsPersistent();
         Set<CBORObject> usedConnectionIds = edhocMapperState.getEdhocEndpointInfoPersistent().getUsedConnectionIds();
 
@@ -914,10 +984,8 @@ public class MessageProcessorPersistent {
         }
 
         int index = -1;
-        CBORObject[] objectListRequest;
-        try {
-            objectListRequest = CBORObject.DecodeSequenceFromBytes(sequence);
-        } catch (Exception e) {
+        List<CBORObject> objectListRequest = parsedMessage.getElements();
+        if (objectListRequest == null) {
             LOGGER.error("R_M4: Unable to decode byte sequence to CBOR object array");
             return false;
         }
@@ -931,13 +999,13 @@ public class MessageProcessorPersistent {
             // Message 4 is transported in a CoAP request
             // C_I is present as first element of the CBOR sequence
             index++;
-            if (objectListRequest[index].getType() != CBORType.ByteString
-                    && objectListRequest[index].getType() != CBORType.Integer)  {
+            if (objectListRequest.get(index).getType() != CBORType.ByteString
+                    && objectListRequest.get(index).getType() != CBORType.Integer)  {
                 LOGGER.error("R_M4: C_I must be a byte string or an integer");
                 return false;
             }
 
-            connectionIdentifierInitiator = decodeIdentifier(objectListRequest[index]);
+            connectionIdentifierInitiator = decodeIdentifier(objectListRequest.get(index));
             if (connectionIdentifierInitiator == null) {
                 LOGGER.error("R_M4: Invalid encoding of C_I");
                 return false;
@@ -959,17 +1027,17 @@ public class MessageProcessorPersistent {
         // CIPHERTEXT_4
         index++;
         byte[] ciphertext4;
-        if (objectListRequest[index].getType() != CBORType.ByteString) {
+        if (objectListRequest.get(index).getType() != CBORType.ByteString) {
             LOGGER.error("R_M4: CIPHERTEXT_4 must be a byte string");
             return false;
         }
 
-        ciphertext4 = objectListRequest[index].GetByteString();
+        ciphertext4 = objectListRequest.get(index).GetByteString();
         if (ciphertext4 == null) {
             LOGGER.error("R_M4: Retrieving CIPHERTEXT_4");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("CIPHERTEXT_4", ciphertext4));
+        EdhocUtil.debugByteArray(LOGGER, "CIPHERTEXT_4", ciphertext4);
 
         /* Compute the plaintext */
 
@@ -982,7 +1050,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("R_M4: Computing the external data for CIPHERTEXT_4");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("External Data to compute CIPHERTEXT_4", externalData));
+        EdhocUtil.debugByteArray(LOGGER, "External Data to compute CIPHERTEXT_4", externalData);
 
         // Compute the key material
 
@@ -993,21 +1061,21 @@ public class MessageProcessorPersistent {
             LOGGER.error("R_M4: Computing K");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("K", k4ae));
+        EdhocUtil.debugByteArray(LOGGER, "K", k4ae);
 
         byte[] iv4ae = computeKeyOrIV4("IV", session, session.getTH4(), session.getPRK4e3m());
         if (iv4ae == null) {
             LOGGER.error("R_M4: Computing IV");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("IV", iv4ae));
+        EdhocUtil.debugByteArray(LOGGER, "IV", iv4ae);
 
         byte[] plaintext4 = decryptCiphertext4(session.getSelectedCipherSuite(), externalData, ciphertext4, k4ae, iv4ae);
         if (plaintext4 == null) {
             LOGGER.error("R_M4: Decrypting CIPHERTEXT_4");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("Plaintext retrieved from CIPHERTEXT_4", plaintext4));
+        EdhocUtil.debugByteArray(LOGGER, "Plaintext retrieved from CIPHERTEXT_4", plaintext4);
 
         // Parse the outer plaintext as a CBOR sequence. To be valid, this is either the empty plaintext
         // or just padding or padding followed by the External Authorization Data EAD_4 possibly
@@ -1082,7 +1150,20 @@ public class MessageProcessorPersistent {
 
     /** Adapted from {@link org.eclipse.californium.edhoc.MessageProcessor#readMessage1} */
     public boolean readMessage1(byte[] sequence) {
+        return readMessage1(new ParsedEdhocMessage(sequence));
+    }
+
+    /** Same as {@link #readMessage1(byte[])}, using the already decoded elements of the parsed message */
+    public boolean readMessage1(ParsedEdhocMessage parsedMessage) {
+        long start = metricsRegistry.start();
+        boolean ok = processMessage1(parsedMessage);
+        metricsRegistry.record("processor.readMessage1", MetricsRegistry.NO_TAG, start);
+        return ok;
+    }
+
+    protected boolean processMessage1(ParsedEdhocMessage parsedMessage) {
         LOGGER.debug("Start of readMessage1");
+        byte[] sequence = parsedMessage.getSequence();
         List<Integer> supportedCipherSuites = edhocMapperState.getEdhocEndpointInfoPersistent().getSupportedCipherSuites();
         AppProfile appProfile = edhocMapperState.getEdhocSessionPersistent().getApplicationProfile();
 
@@ -1092,17 +1173,15 @@ public class MessageProcessorPersistent {
         }
 
         int index = -1;
-        CBORObject[] objectListRequest;
-        try {
-            objectListRequest = CBORObject.DecodeSequenceFromBytes(sequence);
-        } catch (Exception e) {
+        List<CBORObject> objectListRequest = parsedMessage.getElements();
+        if (objectListRequest == null) {
             LOGGER.error("R_M1: Unable to decode byte sequence to CBOR object array");
             return false;
         }
 
         /* Consistency checks */
 
-        if (objectListRequest.length == 0) {
+        if (objectListRequest.isEmpty()) {
             LOGGER.error("R_M1: CBOR object array is empty");
             return false;
         }
@@ -1111,7 +1190,7 @@ public class MessageProcessorPersistent {
         // CBOR simple value 'true', it can be skipped
         if (edhocMapperState.receiveWithPrependedCX()) {
             index++;
-            if (!objectListRequest[index].equals(CBORObject.True)) {
+            if (!objectListRequest.get(index).equals(CBORObject.True)) {
                 LOGGER.error("R_M1: The first element must be the CBOR simple value 'true'");
                 return false;
             }
@@ -1119,13 +1198,13 @@ public class MessageProcessorPersistent {
 
         // METHOD
         index++;
-        if (objectListRequest[index].getType() != CBORType.Integer) {
+        if (objectListRequest.get(index).getType() != CBORType.Integer) {
             LOGGER.error("R_M1: Method must be an integer");
             return false;
         }
 
         // Check that the indicated authentication method is supported
-        int method = objectListRequest[index].AsInt32();
+        int method = objectListRequest.get(index).AsInt32();
         if (!appProfile.isAuthMethodSupported(method)) {
             LOGGER.error("R_M1: Authentication method '{}' is not supported", method);
             return false;
@@ -1137,14 +1216,14 @@ public class MessageProcessorPersistent {
         int selectedCipherSuite;
         List<Integer> cipherSuitesToOffer = null;
 
-        if (objectListRequest[index].getType() == CBORType.Integer) {
-            if (objectListRequest[index].AsInt32() < 0) {
+        if (objectListRequest.get(index).getType() == CBORType.Integer) {
+            if (objectListRequest.get(index).AsInt32() < 0) {
                 LOGGER.error("R_M1: SUITES_I as an integer must be positive");
                 return false;
             }
 
             // SUITES_I is the selected cipher suite
-            selectedCipherSuite = objectListRequest[index].AsInt32();
+            selectedCipherSuite = objectListRequest.get(index).AsInt32();
 
             // This peer does not support the selected cipher suite
             if (!supportedCipherSuites.contains(selectedCipherSuite)) {
@@ -1153,29 +1232,29 @@ public class MessageProcessorPersistent {
                 cipherSuitesToOffer = supportedCipherSuites;
             }
 
-        } else if (objectListRequest[index].getType() == CBORType.Array) {
-            if (objectListRequest[index].size() < 2) {
+        } else if (objectListRequest.get(index).getType() == CBORType.Array) {
+            if (objectListRequest.get(index).size() < 2) {
                 LOGGER.error("R_M1: SUITES_I as an array must have at least 2 elements");
                 return false;
             }
 
-            for (int i = 0; i < objectListRequest[index].size(); i++) {
-                if(objectListRequest[index].get(i).getType() != CBORType.Integer
-                        || objectListRequest[index].get(i).AsInt32() < 0) {
+            for (int i = 0; i < objectListRequest.get(index).size(); i++) {
+                if(objectListRequest.get(index).get(i).getType() != CBORType.Integer
+                        || objectListRequest.get(index).get(i).AsInt32() < 0) {
                     LOGGER.error("R_M1: SUITES_I as an array must have positive integers as elements");
                     return false;
                 }
             }
 
             // The selected cipher suite is the last element of SUITES_I
-            int size = objectListRequest[index].size();
-            selectedCipherSuite = objectListRequest[index].get(size-1).AsInt32();
+            int size = objectListRequest.get(index).size();
+            selectedCipherSuite = objectListRequest.get(index).get(size-1).AsInt32();
 
             int firstSharedCipherSuite = -1;
             // Find the first commonly supported cipher suite, i.e. the cipher suite both
             // supported by the Responder and specified as early as possible in SUITES_I
             for (int i = 0; i < size; i++) {
-                int suite = objectListRequest[index].get(i).AsInt32();
+                int suite = objectListRequest.get(index).get(i).AsInt32();
                 if (supportedCipherSuites.contains(suite)) {
                     firstSharedCipherSuite = suite;
                     break;
@@ -1215,41 +1294,43 @@ public class MessageProcessorPersistent {
         // G_X
         index++;
         int indexGX = index;
-        if (objectListRequest[index].getType() != CBORType.ByteString) {
+        if (objectListRequest.get(index).getType() != CBORType.ByteString) {
             LOGGER.error("R_M1: G_X must be a byte string");
             return false;
         }
-        byte[] gX = objectListRequest[index].GetByteString();
+        byte[] gX = objectListRequest.get(index).GetByteString();
 
         // C_I
         index++;
-        if (objectListRequest[index].getType() != CBORType.ByteString
-                && objectListRequest[index].getType() != CBORType.Integer) {
+        if (objectListRequest.get(index).getType() != CBORType.ByteString
+                && objectListRequest.get(index).getType() != CBORType.Integer) {
             LOGGER.error("R_M1: C_I must be a byte string or an integer");
             return false;
         }
 
         // The Connection Identifier C_I as encoded in the EDHOC message
-        CBORObject cI = objectListRequest[index];
+        CBORObject cI = objectListRequest.get(index);
         byte[] connectionIdInitiator = decodeIdentifier(cI);
         if (connectionIdInitiator == null) {
             LOGGER.error("R_M1: Invalid encoding of C_I");
             return false;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("Connection Identifier of the Initiator", connectionIdInitiator));
-        LOGGER.debug(EdhocUtil.byteArrayToString("C_I", cI.EncodeToBytes()));
+        EdhocUtil.debugByteArray(LOGGER, "Connection Identifier of the Initiator", connectionIdInitiator);
+        EdhocUtil.debugCbor(LOGGER, "C_I", cI);
 
         // EAD_1
         index++;
         CBORObject[] ead1 = null;
-        int length = objectListRequest.length - index;
+        int length = objectListRequest.size() - index;
         if (length > 0) {
             // EAD_1 is present
             if (hasProtocolVersionLeqV17()) {
-                ead1 = preParseEADleqV17(objectListRequest, index, edhocMapperState.getEdhocSessionPersistent().getSupportedEADs());
+                ead1 = preParseEADleqV17(objectListRequest.toArray(new CBORObject[0]), index,
+                        edhocMapperState.getEdhocSessionPersistent().getSupportedEADs());
             } else {
-                ead1 = preParseEAD(objectListRequest, index, 1, edhocMapperState.getEdhocSessionPersistent().getSupportedEADs());
+                ead1 = preParseEAD(objectListRequest.toArray(new CBORObject[0]), index, 1,
+                        edhocMapperState.getEdhocSessionPersistent().getSupportedEADs());
             }
 
             if (ead1 == null) {
@@ -1265,19 +1346,19 @@ public class MessageProcessorPersistent {
                 sideProcessorInfo[0] = CBORObject.FromObject(method);
 
                 // add SUITES_I
-                if (objectListRequest[indexSuitesI].getType() == CBORType.Integer) {
+                if (objectListRequest.get(indexSuitesI).getType() == CBORType.Integer) {
                     // Single-element array is needed, with a single CBOR integer
                     // indicating the selected cipher suite
                     sideProcessorInfo[1] = CBORObject.NewArray();
-                    sideProcessorInfo[1].Add(objectListRequest[indexSuitesI]);
+                    sideProcessorInfo[1].Add(objectListRequest.get(indexSuitesI));
                 } else {
                     // SUITES_I can be taken as is, with the last integer
                     // indicating the selected cipher suite
-                    sideProcessorInfo[1] = objectListRequest[indexSuitesI];
+                    sideProcessorInfo[1] = objectListRequest.get(indexSuitesI);
                 }
 
                 // add G_X
-                sideProcessorInfo[2] = objectListRequest[indexGX];
+                sideProcessorInfo[2] = objectListRequest.get(indexGX);
 
                 // add C_I
                 sideProcessorInfo[3] = CBORObject.FromObject(connectionIdInitiator);
@@ -1374,6 +1455,13 @@ public class MessageProcessorPersistent {
 
     /** Adapted from {@link org.eclipse.californium.edhoc.MessageProcessor#writeMessage2} */
     public byte[] writeMessage2() {
+        long start = metricsRegistry.start();
+        byte[] message2 = buildMessage2();
+        metricsRegistry.record("processor.writeMessage2", MetricsRegistry.NO_TAG, start);
+        return message2;
+    }
+
+    protected byte[] buildMessage2() {
         LOGGER.debug("Start of writeMessage2");
         EdhocSessionPersistent session = edhocMapperState.getEdhocSessionPersistent();
         List<CBORObject> objectList = new ArrayList<>();
@@ -1382,8 +1470,8 @@ public class MessageProcessorPersistent {
         if (edhocMapperState.sendWithPrependedCX()) {
             byte[] connectionIdentifierInitiator = session.getPeerConnectionId();
             CBORObject cI = encodeIdentifier(connectionIdentifierInitiator);
-            LOGGER.debug(EdhocUtil.byteArrayToString("Connection Identifier of the Initiator", connectionIdentifierInitiator));
-            LOGGER.debug(EdhocUtil.byteArrayToString("C_I", cI.EncodeToBytes()));
+            EdhocUtil.debugByteArray(LOGGER, "Connection Identifier of the Initiator", connectionIdentifierInitiator);
+            EdhocUtil.debugCbor(LOGGER, "C_I", cI);
             objectList.add(cI);
         }
 
@@ -1407,13 +1495,13 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M2: Invalid G_Y");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("G_Y", gY.GetByteString()));
+        EdhocUtil.debugByteArray(LOGGER, "G_Y", gY.GetByteString());
 
         // C_R
         byte[] connectionIdentifierResponder = session.getConnectionId();
         CBORObject cR = encodeIdentifier(connectionIdentifierResponder);
-        LOGGER.debug(EdhocUtil.byteArrayToString("Connection Identifier of the Responder", connectionIdentifierResponder));
-        LOGGER.debug(EdhocUtil.byteArrayToString("C_R", cR.EncodeToBytes()));
+        EdhocUtil.debugByteArray(LOGGER, "Connection Identifier of the Responder", connectionIdentifierResponder);
+        EdhocUtil.debugCbor(LOGGER, "C_R", cR);
 
         // Compute TH_2
         String hashAlgorithm = EdhocSession.getEdhocHashAlg(selectedSuite);
@@ -1433,8 +1521,8 @@ public class MessageProcessorPersistent {
             return null;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("H(message_1)", hashMessage1));
-        LOGGER.debug(EdhocUtil.byteArrayToString("TH_2", th2));
+        EdhocUtil.debugByteArray(LOGGER, "H(message_1)", hashMessage1);
+        EdhocUtil.debugByteArray(LOGGER, "TH_2", th2);
 
 
         // Compute the key material
@@ -1447,7 +1535,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M2: Computing the Diffie-Hellman Secret");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("G_XY", dhSecret));
+        EdhocUtil.debugByteArray(LOGGER, "G_XY", dhSecret);
 
         // Compute PRK_2e
         byte[] prk2e = null;
@@ -1461,7 +1549,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M2: Computing PRK_2e");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("PRK_2e", prk2e));
+        EdhocUtil.debugByteArray(LOGGER, "PRK_2e", prk2e);
 
         // Compute PRK_3e2m
         byte[] prk3e2m = computePRK3e2m(session, prk2e, th2, session.getPeerLongTermPublicKey(),
@@ -1471,7 +1559,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M2: Computing PRK_3e2m");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("PRK_3e2m", prk3e2m));
+        EdhocUtil.debugByteArray(LOGGER, "PRK_3e2m", prk3e2m);
 
         // Produce possible EAD items following early instructions from the application
         SideProcessor sideProcessor = session.getSideProcessor();
@@ -1509,7 +1597,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M2: Computing MAC_2");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("MAC_2", mac2));
+        EdhocUtil.debugByteArray(LOGGER, "MAC_2", mac2);
 
         // Compute Signature_or_MAC_2
 
@@ -1526,7 +1614,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M2: Computing Signature_or_MAC_2");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("Signature_or_MAC_2", signatureOrMac2));
+        EdhocUtil.debugByteArray(LOGGER, "Signature_or_MAC_2", signatureOrMac2);
 
         /* Start computing CIPHERTEXT_2 */
 
@@ -1554,7 +1642,7 @@ public class MessageProcessorPersistent {
         }
 
         byte[] plaintext2 = EdhocUtil.buildCBORSequence(plaintextElementList);
-        LOGGER.debug(EdhocUtil.byteArrayToString("Plaintext to compute CIPHERTEXT_2", plaintext2));
+        EdhocUtil.debugByteArray(LOGGER, "Plaintext to compute CIPHERTEXT_2", plaintext2);
 
         // Compute KEYSTREAM_2
         byte[] keystream2 = computeKeystream2(session, th2, prk2e, plaintext2.length);
@@ -1562,12 +1650,12 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M2: Computing KEYSTREAM_2");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("KEYSTREAM_2", keystream2));
+        EdhocUtil.debugByteArray(LOGGER, "KEYSTREAM_2", keystream2);
 
         // Compute CIPHERTEXT_2
         byte[] ciphertext2 = EdhocUtil.arrayXor(plaintext2, keystream2);
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("CIPHERTEXT_2", ciphertext2));
+        EdhocUtil.debugByteArray(LOGGER, "CIPHERTEXT_2", ciphertext2);
 
         // Concatenate G_Y with CIPHERTEXT_2
         byte[] gY_Ciphertext2 = new byte[gY.GetByteString().length + ciphertext2.length];
@@ -1576,7 +1664,7 @@ public class MessageProcessorPersistent {
 
         // Wrap the result in a single CBOR byte string, included in the outer CBOR sequence of EDHOC Message 2
         objectList.add(CBORObject.FromObject(gY_Ciphertext2));
-        LOGGER.debug(EdhocUtil.byteArrayToString("G_Y | CIPHERTEXT_2", gY_Ciphertext2));
+        EdhocUtil.debugByteArray(LOGGER, "G_Y | CIPHERTEXT_2", gY_Ciphertext2);
 
         if (hasProtocolVersionLeqV19()) {
             // The outer CBOR sequence finishes with the connection identifier C_R
@@ -1585,7 +1673,7 @@ public class MessageProcessorPersistent {
 
         /* Prepare EDHOC Message 2 */
         byte[] message2 = EdhocUtil.buildCBORSequence(objectList);
-        LOGGER.debug(EdhocUtil.byteArrayToString("EDHOC Message 2", message2));
+        EdhocUtil.debugByteArray(LOGGER, "EDHOC Message 2", message2);
 
 
         /* Modify session */
@@ -1601,7 +1689,20 @@ public class MessageProcessorPersistent {
 
     /** Adapted from {@link org.eclipse.californium.edhoc.MessageProcessor#readMessage3} */
     public boolean readMessage3(byte[] sequence) {
+        return readMessage3(new ParsedEdhocMessage(sequence));
+    }
+
+    /** Same as {@link #readMessage3(byte[])}, using the already decoded elements of the parsed message */
+    public boolean readMessage3(ParsedEdhocMessage parsedMessage) {
+        long start = metricsRegistry.start();
+        boolean ok = processMessage3(parsedMessage);
+        metricsRegistry.record("processor.readMessage3", MetricsRegistry.NO_TAG, start);
+        return ok;
+    }
+
+    protected boolean processMessage3(ParsedEdhocMessage parsedMessage) {
         LOGGER.debug("Start of readMessage3");
+        byte[] sequence = parsedMessage.getSequence();
         Map<CBORObject, EdhocSessionPersistent> edhocSessions = edhocMapperState.getEdhocEndpointInfoPersistent().getEdhocSessionsPersistent();
         Map<CBORObject, OneKey> peerPublicKeys = edhocMapperState.getEdhocEndpointInfoPersistent().getPeerPublicKeys();
         Map<CBORObject, CBORObject> peerCredentials = edhocMapperState.getEdhocEndpointInfoPersistent().getPeerCredentials();
@@ -1614,10 +1715,8 @@ public class MessageProcessorPersistent {
         }
 
         int index = -1;
-        CBORObject[] objectListRequest;
-        try {
-            objectListRequest = CBORObject.DecodeSequenceFromBytes(sequence);
-        } catch (Exception e) {
+        List<CBORObject> objectListRequest = parsedMessage.getElements();
+        if (objectListRequest == null) {
             LOGGER.error("R_M3: Unable to decode byte sequence to CBOR object array");
             return false;
         }
@@ -1632,13 +1731,13 @@ public class MessageProcessorPersistent {
             // Message 3 is transported in a CoAP request,
             // C_R is present as first element of the CBOR sequence
             index++;
-            if (objectListRequest[index].getType() != CBORType.ByteString
-                    && objectListRequest[index].getType() != CBORType.Integer)  {
+            if (objectListRequest.get(index).getType() != CBORType.ByteString
+                    && objectListRequest.get(index).getType() != CBORType.Integer)  {
                 LOGGER.error("R_M3: C_R must be a byte string or an integer");
                 return false;
             }
 
-            connectionIdentifierResponder = decodeIdentifier(objectListRequest[index]);
+            connectionIdentifierResponder = decodeIdentifier(objectListRequest.get(index));
             if (connectionIdentifierResponder == null) {
                 LOGGER.error("R_M3: Invalid encoding of C_R");
                 return false;
@@ -1659,12 +1758,12 @@ public class MessageProcessorPersistent {
 
         // CIPHERTEXT_3
         index++;
-        if (objectListRequest[index].getType() != CBORType.ByteString) {
+        if (objectListRequest.get(index).getType() != CBORType.ByteString) {
             LOGGER.error("R_M3: CIPHERTEXT_3 must be a byte string");
             return false;
         }
-        byte[] ciphertext3 = objectListRequest[index].GetByteString();
-        LOGGER.debug(EdhocUtil.byteArrayToString("CIPHERTEXT_3", ciphertext3));
+        byte[] ciphertext3 = objectListRequest.get(index).GetByteString();
+        EdhocUtil.debugByteArray(LOGGER, "CIPHERTEXT_3", ciphertext3);
 
         /* Decrypt CIPHERTEXT_3 */
 
@@ -1685,7 +1784,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("R_M3: Computing TH3");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("TH_3", th3));
+        EdhocUtil.debugByteArray(LOGGER, "TH_3", th3);
 
         // Compute K_3 and IV_3 to protect the outer COSE object
         byte[] k3 = computeKeyOrIV3("KEY", session, th3, session.getPRK3e2m());
@@ -1693,7 +1792,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("R_M3: Computing TH3");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("K_3", k3));
+        EdhocUtil.debugByteArray(LOGGER, "K_3", k3);
 
 
         byte[] iv3 = computeKeyOrIV3("IV", session, th3, session.getPRK3e2m());
@@ -1701,7 +1800,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("R_M3: Computing IV_3ae");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("IV_3", iv3));
+        EdhocUtil.debugByteArray(LOGGER, "IV_3", iv3);
 
         // Prepare the external_aad as including only TH3
         byte[] externalData = th3;
@@ -1712,7 +1811,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("R_M3: Decrypting CIPHERTEXT_3");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("Plaintext retrieved from CIPHERTEXT_3", plaintext3));
+        EdhocUtil.debugByteArray(LOGGER, "Plaintext retrieved from CIPHERTEXT_3", plaintext3);
 
         // Parse the outer plaintext as a CBOR sequence
         int baseIndex = 0;
@@ -1847,7 +1946,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("R_M3: Computing PRK_4e3m");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("PRK_4e3m", prk4e3m));
+        EdhocUtil.debugByteArray(LOGGER, "PRK_4e3m", prk4e3m);
 
         /* Start verifying Signature_or_MAC_3 */
 
@@ -1864,12 +1963,12 @@ public class MessageProcessorPersistent {
             LOGGER.error("R_M3: Computing MAC_3");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("MAC_3", mac3));
+        EdhocUtil.debugByteArray(LOGGER, "MAC_3", mac3);
 
         // Verify Signature_or_MAC_3
 
         byte[] signatureOrMac3 = plaintextElementList[1].GetByteString();
-        LOGGER.debug(EdhocUtil.byteArrayToString("Signature_or_MAC_3", signatureOrMac3));
+        EdhocUtil.debugByteArray(LOGGER, "Signature_or_MAC_3", signatureOrMac3);
 
         // Compute the external data, as a CBOR sequence
         externalData = computeExternalData(th3, peerCredential, ead3);
@@ -1877,7 +1976,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("R_M3: Computing the external data for MAC_3");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("External Data to verify Signature_or_MAC_3", externalData));
+        EdhocUtil.debugByteArray(LOGGER, "External Data to verify Signature_or_MAC_3", externalData);
 
         if (!verifySignatureOrMac3(session, peerLongTermKey, idCredI, signatureOrMac3, externalData, mac3)) {
             LOGGER.error("R_M3: Non valid Signature_or_MAC_3");
@@ -1922,7 +2021,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("R_M3: Computing TH_4");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("TH_4", th4));
+        EdhocUtil.debugByteArray(LOGGER, "TH_4", th4);
 
         /* Compute PRK_out */
         byte[] prkOut = computePRKout(session, th4, prk4e3m);
@@ -1931,7 +2030,7 @@ public class MessageProcessorPersistent {
             return false;
         }
 
-        LOGGER.debug(EdhocUtil.byteArrayToString("PRK_out", prkOut));
+        EdhocUtil.debugByteArray(LOGGER, "PRK_out", prkOut);
 
         /* Compute PRK_exporter */
         byte[] prkExporter = computePRKexporter(session, prkOut);
@@ -1939,7 +2038,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("R_M3: Computing PRK_exporter");
             return false;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("PRK_exporter", prkExporter));
+        EdhocUtil.debugByteArray(LOGGER, "PRK_exporter", prkExporter);
 
         /* Modify session and derive oscore context */
         if (!session.isInitiator()) {
@@ -1962,6 +2061,13 @@ public class MessageProcessorPersistent {
 
     /** Adapted from {@link org.eclipse.californium.edhoc.MessageProcessor#writeMessage4} */
     public byte[] writeMessage4() {
+        long start = metricsRegistry.start();
+        byte[] message4 = buildMessage4();
+        metricsRegistry.record("processor.writeMessage4", MetricsRegistry.NO_TAG, start);
+        return message4;
+    }
+
+    protected byte[] buildMessage4() {
         LOGGER.debug("Start of writeMessage4");
         EdhocSessionPersistent session = edhocMapperState.getEdhocSessionPersistent();
         List<CBORObject> objectList = new ArrayList<>();
@@ -1973,9 +2079,8 @@ public class MessageProcessorPersistent {
             byte[] connectionIdentifierInitiator = session.getPeerConnectionId();
             CBORObject cI = encodeIdentifier(connectionIdentifierInitiator);
             objectList.add(cI);
-            LOGGER.debug(EdhocUtil.byteArrayToString("Connection Identifier of the Initiator",
-                    connectionIdentifierInitiator));
-            LOGGER.debug(EdhocUtil.byteArrayToString("C_I", cI.EncodeToBytes()));
+            EdhocUtil.debugByteArray(LOGGER, "Connection Identifier of the Initiator", connectionIdentifierInitiator);
+            EdhocUtil.debugCbor(LOGGER, "C_I", cI);
         }
 
         /* Start computing the COSE object */
@@ -1989,7 +2094,7 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M4: Computing the external data for CIPHERTEXT_4");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("External Data to compute CIPHERTEXT_4", externalData));
+        EdhocUtil.debugByteArray(LOGGER, "External Data to compute CIPHERTEXT_4", externalData);
 
         // Produce possible EAD items following early instructions from the application
         SideProcessor sideProcessor = session.getSideProcessor();
@@ -2026,7 +2131,7 @@ public class MessageProcessorPersistent {
             Collections.addAll(plaintextElementList, ead4);
             plaintext4 = EdhocUtil.buildCBORSequence(plaintextElementList);
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("Plaintext to compute CIPHERTEXT_4", plaintext4));
+        EdhocUtil.debugByteArray(LOGGER, "Plaintext to compute CIPHERTEXT_4", plaintext4);
 
         // Compute the key material
 
@@ -2036,14 +2141,14 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M4: Computing K_4");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("K_4", k4));
+        EdhocUtil.debugByteArray(LOGGER, "K_4", k4);
 
         byte[] iv4 = computeKeyOrIV4("IV", session, session.getTH4(), session.getPRK4e3m());
         if (iv4 == null) {
             LOGGER.error("W_M4: Computing IV_4");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("IV_4", iv4));
+        EdhocUtil.debugByteArray(LOGGER, "IV_4", iv4);
 
         // Encrypt the COSE object and take the ciphertext as CIPHERTEXT_4
         byte[] ciphertext4 = computeCiphertext4(session.getSelectedCipherSuite(), externalData, plaintext4, k4, iv4);
@@ -2051,12 +2156,12 @@ public class MessageProcessorPersistent {
             LOGGER.error("W_M4: Computing CIPHERTEXT_4");
             return null;
         }
-        LOGGER.debug(EdhocUtil.byteArrayToString("CIPHERTEXT_4", ciphertext4));
+        EdhocUtil.debugByteArray(LOGGER, "CIPHERTEXT_4", ciphertext4);
         objectList.add(CBORObject.FromObject(ciphertext4));
 
         /* Prepare EDHOC Message 4 */
         byte[] message4 = EdhocUtil.buildCBORSequence(objectList);
-        LOGGER.debug(EdhocUtil.byteArrayToString("EDHOC Message 4", EdhocUtil.buildCBORSequence(objectList)));
+        EdhocUtil.debugByteArray(LOGGER, "EDHOC Message 4", message4);
 
         return message4;
     }
@@ -2065,10 +2170,10 @@ public class MessageProcessorPersistent {
     /* Error message functions */
 
     /** Adapted from {@link org.eclipse.californium.edhoc.MessageProcessor#isErrorMessage} */
-    protected boolean hasErrorMessageStructure(CBORObject[] myObjects) {
+    protected boolean hasErrorMessageStructure(List<CBORObject> myObjects) {
         // A CoAP message including an EDHOC error message is a CBOR sequence of
         // CX - not true (optional); ERR_CODE - int (mandatory); ERR_INFO - any type (mandatory)
-        if (myObjects.length != 3 && myObjects.length != 2) {
+        if (myObjects.size() != 3 && myObjects.size() != 2) {
             return false;
         }
 
@@ -2076,12 +2181,12 @@ public class MessageProcessorPersistent {
             // Received by CoAP server
             // Error message is a request, this starts with C_X different from 'true' (0xf5),
             // followed by ERR_CODE as a CBOR integer
-            return !myObjects[0].equals(CBORObject.True) && myObjects[1].getType() == CBORType.Integer;
+            return !myObjects.get(0).equals(CBORObject.True) && myObjects.get(1).getType() == CBORType.Integer;
         }
         else {
             // Received by CoAP client or CoAP server with CX correlation disabled
             // Error message is a response, this starts with ERR_CODE as a CBOR integer
-            return myObjects[0].getType() == CBORType.Integer;
+            return myObjects.get(0).getType() == CBORType.Integer;
         }
     }
 
@@ -2138,7 +2243,13 @@ public class MessageProcessorPersistent {
 
     /** Adapted from {@link org.eclipse.californium.edhoc.MessageProcessor#readErrorMessage} */
     public boolean readErrorMessage(byte[] sequence) {
+        return readErrorMessage(new ParsedEdhocMessage(sequence));
+    }
+
+    /** Same as {@link #readErrorMessage(byte[])}, using the already decoded elements of the parsed message */
+    public boolean readErrorMessage(ParsedEdhocMessage parsedMessage) {
         LOGGER.debug("Start of readErrorMessage");
+        byte[] sequence = parsedMessage.getSequence();
         Map<CBORObject, EdhocSessionPersistent> edhocSessions = edhocMapperState.getEdhocEndpointInfoPersistent()
                 .getEdhocSessionsPersistent();
 
@@ -2149,28 +2260,26 @@ public class MessageProcessorPersistent {
 
         int index = 0;
         EdhocSessionPersistent session = null;
-        CBORObject[] objectList;
-        try {
-            objectList = CBORObject.DecodeSequenceFromBytes(sequence);
-        } catch (Exception e) {
+        List<CBORObject> objectList = parsedMessage.getElements();
+        if (objectList == null) {
             LOGGER.error("R_ERR: Malformed or invalid EDHOC Error Message");
             return false;
         }
 
-        if (objectList.length == 0 || objectList.length > 3) {
+        if (objectList.isEmpty() || objectList.size() > 3) {
             LOGGER.error("R_ERR: Zero or too many elements");
             return false;
         }
 
         if (edhocMapperState.receiveWithPrependedCX()) {
             // The connection identifier is expected as first element in the EDHOC Error Message
-            if (objectList[index].getType() != CBORType.ByteString
-                    && objectList[index].getType() != CBORType.Integer) {
+            if (objectList.get(index).getType() != CBORType.ByteString
+                    && objectList.get(index).getType() != CBORType.Integer) {
                 LOGGER.error("R_ERR: Invalid format of C_X");
                 return false;
             }
 
-            byte[] retrievedConnectionIdentifier = decodeIdentifier(objectList[index]);
+            byte[] retrievedConnectionIdentifier = decodeIdentifier(objectList.get(index));
             if (retrievedConnectionIdentifier != null) {
                 CBORObject connectionIdentifierCbor = CBORObject.FromObject(retrievedConnectionIdentifier);
                 session = edhocSessions.get(connectionIdentifierCbor);
@@ -2186,22 +2295,22 @@ public class MessageProcessorPersistent {
             return false;
         }
 
-        if (objectList[index].getType() != CBORType.Integer) {
+        if (objectList.get(index).getType() != CBORType.Integer) {
             LOGGER.error("R_ERR: Invalid format of ERR_CODE");
             return false;
         }
 
         // Retrieve ERR_CODE
-        int errorCode = objectList[index].AsInt32();
+        int errorCode = objectList.get(index).AsInt32();
         index++;
 
         // Check that the rest of the message is consistent
-        if (objectList.length == index){
+        if (objectList.size() == index){
             LOGGER.error("R_ERR: ERR_INFO expected but not included");
             return false;
         }
 
-        if (objectList.length > (index + 1)){
+        if (objectList.size() > (index + 1)){
             LOGGER.error("R_ERR: Unexpected parameters following ERR_INFO");
             return false;
         }
@@ -2212,16 +2321,16 @@ public class MessageProcessorPersistent {
             }
 
             case Constants.ERR_CODE_UNSPECIFIED_ERROR -> {
-                if (objectList[index].getType() != CBORType.TextString) {
+                if (objectList.get(index).getType() != CBORType.TextString) {
                     LOGGER.error("R_ERR: Invalid format of ERR_INFO");
                     return false;
                 }
-                String errorMsg = objectList[index].AsString();
+                String errorMsg = objectList.get(index).AsString();
                 LOGGER.info("ERR_INFO: {} ~ {}", EdhocUtil.byteArrayToString(errorMsg.getBytes(StandardCharsets.UTF_8)), errorMsg);
             }
 
             case Constants.ERR_CODE_WRONG_SELECTED_CIPHER_SUITE -> {
-                CBORObject suitesR = objectList[index];
+                CBORObject suitesR = objectList.get(index);
                 List<Integer> peerSupportedCipherSuites = new ArrayList<>();
 
                 switch(suitesR.getType()) {
@@ -2399,7 +2508,7 @@ public class MessageProcessorPersistent {
                 return null;
             }
 
-            LOGGER.debug(EdhocUtil.byteArrayToString("G_RX", dhSecret));
+            EdhocUtil.debugByteArray(LOGGER, "G_RX", dhSecret);
 
             String hashAlgorithm = EdhocSession.getEdhocHashAlg(selectedCipherSuite);
 
@@ -2415,7 +2524,7 @@ public class MessageProcessorPersistent {
                 return null;
             }
 
-            LOGGER.debug(EdhocUtil.byteArrayToString("SALT_3e2m", salt3e2m));
+            EdhocUtil.debugByteArray(LOGGER, "SALT_3e2m", salt3e2m);
 
             if (hashAlgorithm.equals("SHA-256") || hashAlgorithm.equals("SHA-384") || hashAlgorithm.equals("SHA-512")) {
                 try {
@@ -2449,7 +2558,7 @@ public class MessageProcessorPersistent {
 
         byte[] contextSequence = EdhocUtil.buildCBORSequence(objectList);
         CBORObject context = CBORObject.FromObject(contextSequence);
-        LOGGER.debug(EdhocUtil.byteArrayToString("context_2", contextSequence));
+        EdhocUtil.debugByteArray(LOGGER, "context_2", contextSequence);
 
         int macLength = 0;
         int method = session.getMethod();
@@ -2525,8 +2634,8 @@ public class MessageProcessorPersistent {
                     return null;
                 }
 
-                LOGGER.debug(EdhocUtil.byteArrayToString("External Data for signing MAC_2 to produce Signature_or_MAC_2",
-                        externalData));
+                EdhocUtil.debugByteArray(LOGGER, "External Data for signing MAC_2 to produce Signature_or_MAC_2",
+                        externalData);
 
                 signatureOrMac2 = EdhocUtil.computeSignature(session.getIdCred(), externalData, mac2, identityKey);
 
@@ -2694,7 +2803,7 @@ public class MessageProcessorPersistent {
                 return null;
             }
 
-            LOGGER.debug(EdhocUtil.byteArrayToString("G_IY", dhSecret));
+            EdhocUtil.debugByteArray(LOGGER, "G_IY", dhSecret);
 
             String hashAlgorithm = EdhocSession.getEdhocHashAlg(session.getSelectedCipherSuite());
 
@@ -2715,7 +2824,7 @@ public class MessageProcessorPersistent {
                 return null;
             }
 
-            LOGGER.debug(EdhocUtil.byteArrayToString("SALT_4e3m", salt4e3m));
+            EdhocUtil.debugByteArray(LOGGER, "SALT_4e3m", salt4e3m);
 
             if (hashAlgorithm.equals("SHA-256") || hashAlgorithm.equals("SHA-384") || hashAlgorithm.equals("SHA-512")) {
                 try {
@@ -2746,7 +2855,7 @@ public class MessageProcessorPersistent {
         }
         byte[] contextSequence = EdhocUtil.buildCBORSequence(objectList);
         CBORObject context = CBORObject.FromObject(contextSequence);
-        LOGGER.debug(EdhocUtil.byteArrayToString("context_3", contextSequence));
+        EdhocUtil.debugByteArray(LOGGER, "context_3", contextSequence);
 
         int macLength = 0;
         int method = session.getMethod();
@@ -2792,8 +2901,8 @@ public class MessageProcessorPersistent {
                     return null;
                 }
 
-                LOGGER.debug(EdhocUtil.byteArrayToString("External Data for signing MAC_3 to produce Signature_or_MAC_3",
-                        externalData));
+                EdhocUtil.debugByteArray(LOGGER, "External Data for signing MAC_3 to produce Signature_or_MAC_3",
+                        externalData);
 
                 signatureOrMac3 = EdhocUtil.computeSignature(session.getIdCred(), externalData, mac3, identityKey);
 
@@ -3166,7 +3275,7 @@ public class MessageProcessorPersistent {
                 LOGGER.debug("EAD Label: {}", eadLabel);
 
                 if (i+1 < objectList.length && objectList[i+1].getType() == CBORType.ByteString) {
-                    LOGGER.debug(EdhocUtil.byteArrayToString("EAD Value", objectList[i+1].GetByteString()));
+                    EdhocUtil.debugByteArray(LOGGER, "EAD Value", objectList[i+1].GetByteString());
                     // Skip the corresponding ead_value, if present
                     i++;
                 }
@@ -3206,7 +3315,7 @@ public class MessageProcessorPersistent {
                 eadArray[eadIndex] = elementValue;
                 eadIndex++;
 
-                LOGGER.debug(EdhocUtil.byteArrayToString("EAD Value", objectList[i+1].GetByteString()));
+                EdhocUtil.debugByteArray(LOGGER, "EAD Value", objectList[i+1].GetByteString());
                 // This will result in moving to the next EAD item, if any
                 i++;
             }
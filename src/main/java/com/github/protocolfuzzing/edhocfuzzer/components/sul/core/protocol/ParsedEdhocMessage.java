@@ -0,0 +1,62 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
+
+import com.upokecenter.cbor.CBORException;
+import com.upokecenter.cbor.CBORObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A received byte sequence decoded only once to its CBOR elements, so that
+ * it can be classified and handed to every candidate message reader
+ */
+public class ParsedEdhocMessage {
+    protected byte[] sequence;
+
+    // null if the sequence is null or could not be decoded
+    protected List<CBORObject> elements = null;
+    protected String decodeError = null;
+
+    public ParsedEdhocMessage(byte[] sequence) {
+        this.sequence = sequence;
+
+        if (sequence == null) {
+            return;
+        }
+
+        try {
+            elements = Collections.unmodifiableList(Arrays.asList(CBORObject.DecodeSequenceFromBytes(sequence)));
+        } catch (CBORException e) {
+            decodeError = e.getMessage();
+        }
+    }
+
+    public byte[] getSequence() {
+        return sequence;
+    }
+
+    public boolean isDecoded() {
+        return elements != null;
+    }
+
+    /**
+     * Returns an unmodifiable view of the decoded elements, so that readers do not affect each other
+     * without copying them, or null if not decoded
+     */
+    public List<CBORObject> getElements() {
+        return elements;
+    }
+
+    public int getElementsLength() {
+        return elements == null ? 0 : elements.size();
+    }
+
+    public CBORObject getElement(int index) {
+        return elements.get(index);
+    }
+
+    public String getDecodeError() {
+        return decodeError;
+    }
+}
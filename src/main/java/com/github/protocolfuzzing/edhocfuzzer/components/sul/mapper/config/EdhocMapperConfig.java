@@ -3,6 +3,7 @@ package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParametersDelegate;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.authentication.AuthenticationConfig;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.CoapExchanger;
 import com.github.protocolfuzzing.protocolstatefuzzer.components.sul.mapper.config.MapperConfigStandard;
 import com.google.common.base.Ascii;
 import org.eclipse.californium.elements.util.StringUtil;
@@ -12,7 +13,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Objects;
 
-public class EdhocMapperConfig extends MapperConfigStandard {
+public class EdhocMapperConfig extends MapperConfigStandard implements Cloneable {
     protected String host = "";
 
     @ParametersDelegate
@@ -101,6 +102,148 @@ public class EdhocMapperConfig extends MapperConfigStandard {
     @Parameter(names = "-concretizeDir", description = "The directory to save the files regarding concretization. Note: it is better to be used during testing, instead of learning.")
     protected String concretizeDir = null;
 
+    @Parameter(names = "-reuseMapperState", description = "Reuse the mapper state among queries, by resetting only its "
+            + "session-related fields before each query, instead of rebuilding it along with the authentication "
+            + "credentials of the mapper and the SUL. Unless -reuseMapperEndpoint is used, the state is still rebuilt "
+            + "every 100 queries, so that the time saved by a reset over a build is measured")
+    protected boolean reuseMapperState = false;
+
+    @Parameter(names = "-reuseMapperEndpoint", description = "Reuse the bound CoAP endpoint of the mapper among "
+            + "queries, by swapping only the EDHOC session of each query. Requires -reuseMapperState")
+    protected boolean reuseMapperEndpoint = false;
+
+    @Parameter(names = "-sulInstances", description = "The number of SUL instances, which answer the queries in "
+            + "turn, while the instances not answering a query restart their SUL in the background. Each instance i "
+            + "in [0, sulInstances) uses the port: port + i * sulPortStride, where port is the one of the first "
+            + "instance. Each instance launches the -cmd itself, after replacing the port of the first instance in "
+            + "the -cmd and the -processDir with its own port")
+    protected int sulInstances = 1;
+
+    @Parameter(names = "-sulPortStride", description = "The difference between the ports of consecutive SUL instances")
+    protected int sulPortStride = 1;
+
+    @Parameter(names = "-multiplexClients", description = "Learn the client SUL instances through one mapper server "
+            + "bound to the port of the first instance, instead of one server per instance. Each client is assigned "
+            + "on its first request to the instance that has waited the longest and is then recognized by its source "
+            + "address, or by the connection id when CX correlation is used. The own connection id of instance i > 0 "
+            + "is extended by the byte i. It cannot be used with -reuseMapperState or -forceOscoreRecipientId")
+    protected boolean multiplexClients = false;
+
+    @Parameter(names = "-adaptiveResponseWait", description = "Learn the response latency of the SUL for each "
+            + "(prefix, input) pair and shorten the response wait of the pairs that have been always answered quickly. "
+            + "The -responseWait is used as ceiling and for pairs found nondeterministic or never answered. It does "
+            + "not affect inputs with extended wait or input response timeout")
+    protected boolean adaptiveResponseWait = false;
+
+    @Parameter(names = "-adaptiveShortenUnanswered", description = "Shorten also the adaptive response wait of the "
+            + "pairs never answered, based on the maximum latency of any response. Note: a late response of such "
+            + "a pair is then missed, so it should be used only when the SUL is known to answer promptly or not at all")
+    protected boolean adaptiveShortenUnanswered = false;
+
+    @Parameter(names = "-adaptiveMinSamples", description = "The observations of a (prefix, input) pair needed, "
+            + "before its adaptive response wait is shortened")
+    protected int adaptiveMinSamples = 3;
+
+    @Parameter(names = "-adaptiveWaitFactor", description = "The factor by which the observed maximum response "
+            + "latency is multiplied to give the adaptive response wait")
+    protected double adaptiveWaitFactor = 2.0;
+
+    @Parameter(names = "-adaptiveMinWait", description = "The minimum adaptive response wait in milliseconds")
+    protected long adaptiveMinWait = 50;
+
+    @Parameter(names = "-readinessProbe", description = "Probe the readiness of the SUL before each query, instead of "
+            + "sleeping for -startWait and -clientWait. A server SUL is pinged with empty CoAP CON messages until it "
+            + "replies and for a client SUL its initial message is awaited until -readinessTimeout")
+    protected boolean readinessProbe = false;
+
+    @Parameter(names = "-readinessTimeout", description = "The maximum time in milliseconds to wait for the SUL to "
+            + "become ready, when -readinessProbe is used")
+    protected long readinessTimeout = 5000;
+
+    @Parameter(names = "-readinessProbeInterval", description = "The time in milliseconds to wait for the reply "
+            + "of each ping to a server SUL, when -readinessProbe is used")
+    protected long readinessProbeInterval = 20;
+
+    @Parameter(names = "-ephemeralKeyPoolSize", description = "The number of ephemeral key pairs to be pre-generated "
+            + "per curve in a background thread, from which the EDHOC sessions of the mapper take their ephemeral keys. "
+            + "Use 0 to generate the ephemeral keys only when needed")
+    protected int ephemeralKeyPoolSize = 0;
+
+    @Parameter(names = "-exchangeMaxAge", description = "The maximum age in milliseconds of the CoAP exchanges that "
+            + "wait to be correlated or consumed by the mapper, after which they are dropped as stale")
+    protected long exchangeMaxAge = CoapExchanger.DEFAULT_MAX_AGE;
+
+    @Parameter(names = "-loopbackSul", description = "The main class, followed by its arguments, of a stock cf-edhoc "
+            + "peer to be run on loopback, in place of the SUL launched by -cmd, e.g. "
+            + "'org.eclipse.californium.edhoc.EdhocServer'. The SUL is run in a child JVM, which is restarted on each "
+            + "query. Requires -loopbackSulClasspath")
+    protected String loopbackSul = null;
+
+    @Parameter(names = "-loopbackSulClasspath", description = "The class path of the -loopbackSul, such as the "
+            + "cf-edhoc.jar of the rise SUL set up by scripts/setup_sul.sh")
+    protected String loopbackSulClasspath = null;
+
+    @Parameter(names = "-standbySulCmd", description = "The command of a server SUL to be launched by the mapper in "
+            + "place of -cmd, in which {port} is replaced by the port of each process. While a query runs, the process "
+            + "of the next query is started on the alternate port and the mapper switches to it on reset, so that the "
+            + "start wait of the SUL elapses in the background")
+    protected String standbySulCmd = null;
+
+    @Parameter(names = "-standbySulDir", description = "The directory from which the -standbySulCmd is run")
+    protected String standbySulDir = ".";
+
+    @Parameter(names = "-standbySulPort", description = "The alternate port of the -standbySulCmd processes. "
+            + "Use 0 for the port of -connect plus 1")
+    protected int standbySulPort = 0;
+
+    @Parameter(names = "-softReset", description = "Reset the server SUL between queries without restarting "
+            + "it, by aborting the session of each query with an EDHOC error message and using a new own connection id "
+            + "in the next one. Before each query, a canary session checks that the SUL still answers the initial "
+            + "message of the mapper, otherwise the SUL is restarted by switching to its -standbySulCmd process, if "
+            + "any, or by relaunching its -cmd or -loopbackSul process. When the mapper is the Responder, it requires "
+            + "-disableOwnConnectionIdGeneration")
+    protected boolean softReset = false;
+
+    @Parameter(names = "-softResetAbortWait", description = "The time in milliseconds to wait for the response of "
+            + "the SUL to the error message that aborts a session, when -softReset is used")
+    protected long softResetAbortWait = 20;
+
+    @Parameter(names = "-metricsDir", description = "The directory of the metrics file, usually the output directory, "
+            + "in which the latency histograms of the SUL, the mapper and the message processor are dumped periodically "
+            + "and at shutdown")
+    protected String metricsDir = null;
+
+    @Parameter(names = "-metricsInterval", description = "The interval in seconds between the dumps of the metrics")
+    protected long metricsInterval = 60;
+
+    @Parameter(names = "-sinkPrefixOracle", description = "Answer the queries that extend an observed prefix leading "
+            + "to a sink state with the outputs of the prefix followed by DISABLED, without resetting or contacting the SUL. "
+            + "The -cmd is then launched by the mapper only for the queries that reach the SUL")
+    protected boolean sinkPrefixOracle = false;
+
+    @Parameter(names = "-socketClosedAsSink", description = "Consider also the SOCKET_CLOSED output as leading to a sink "
+            + "state, after which all outputs are DISABLED")
+    protected boolean socketClosedAsSink = false;
+
+    @Parameter(names = "-connectedSocket", description = "Connect the UDP socket of the mapper to the server SUL, so "
+            + "that the ICMP port unreachable errors of a terminated SUL end the current and the rest of the "
+            + "exchanges of a query with SOCKET_CLOSED, instead of waiting for their timeouts")
+    protected boolean connectedSocket = false;
+
+    @Parameter(names = "-queryCache", description = "Answer the repeated queries from an in-memory cache of the "
+            + "SUL, which stores the prefixes of the executed queries in a compact trie of interned symbols. It is "
+            + "implied by -queryCacheDir. The -cmd is then launched by the mapper only for the queries that reach the SUL")
+    protected boolean queryCache = false;
+
+    @Parameter(names = "-queryCacheMessages", description = "Keep also the received messages of the outputs in the "
+            + "in-memory query cache, so that the cached outputs include their payloads, at the cost of more memory")
+    protected boolean queryCacheMessages = false;
+
+    @Parameter(names = "-queryCacheDir", description = "The directory of the persistent query cache, which stores the "
+            + "outputs of the executed queries per configuration, so that a new or resumed run with the same "
+            + "configuration answers the already executed queries without the SUL")
+    protected String queryCacheDir = null;
+
     public void initializeHost(String host) {
         if (Objects.equals(this.host, "")) {
             this.host = checkAndReturnHost(host);
@@ -203,6 +346,179 @@ public class EdhocMapperConfig extends MapperConfigStandard {
         return concretizeDir;
     }
 
+    public boolean reuseMapperState() {
+        return reuseMapperState;
+    }
+
+    public boolean reuseMapperEndpoint() {
+        return reuseMapperEndpoint;
+    }
+
+    public int getSulInstances() {
+        return sulInstances;
+    }
+
+    public int getSulPortStride() {
+        return sulPortStride;
+    }
+
+    public boolean multiplexClients() {
+        return multiplexClients;
+    }
+
+    /** Specifies if the SUL instances share the port of the first instance, instead of using their own */
+    public boolean shareSulPort() {
+        return multiplexClients;
+    }
+
+    /**
+     * Specifies if the SUL instances launch the -cmd themselves, instead of the process wrapper, which restarts
+     * the SUL on every query, even on those answered without the SUL by the query cache or the sink prefix oracle
+     * and on those preceded by a soft reset
+     */
+    public boolean launchSulPerInstance() {
+        return sulInstances > 1 || useQueryCache() || useSinkPrefixOracle() || softReset;
+    }
+
+    public boolean useAdaptiveResponseWait() {
+        return adaptiveResponseWait;
+    }
+
+    public boolean adaptiveShortenUnanswered() {
+        return adaptiveShortenUnanswered;
+    }
+
+    public int getAdaptiveMinSamples() {
+        return adaptiveMinSamples;
+    }
+
+    public double getAdaptiveWaitFactor() {
+        return adaptiveWaitFactor;
+    }
+
+    public long getAdaptiveMinWait() {
+        return adaptiveMinWait;
+    }
+
+    public boolean useReadinessProbe() {
+        return readinessProbe;
+    }
+
+    public long getReadinessTimeout() {
+        return readinessTimeout;
+    }
+
+    public long getReadinessProbeInterval() {
+        return readinessProbeInterval;
+    }
+
+    public int getEphemeralKeyPoolSize() {
+        return ephemeralKeyPoolSize;
+    }
+
+    public long getExchangeMaxAge() {
+        return exchangeMaxAge;
+    }
+
+    public String getLoopbackSul() {
+        return loopbackSul;
+    }
+
+    public String getLoopbackSulClasspath() {
+        return loopbackSulClasspath;
+    }
+
+    public String getStandbySulCmd() {
+        return standbySulCmd;
+    }
+
+    public String getStandbySulDir() {
+        return standbySulDir;
+    }
+
+    public int getStandbySulPort() {
+        return standbySulPort == 0 ? getHostPort() + 1 : standbySulPort;
+    }
+
+    public boolean useSoftReset() {
+        return softReset;
+    }
+
+    public long getSoftResetAbortWait() {
+        return softResetAbortWait;
+    }
+
+    public String getMetricsDir() {
+        return metricsDir;
+    }
+
+    public long getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    public boolean useSinkPrefixOracle() {
+        return sinkPrefixOracle;
+    }
+
+    public boolean socketClosedAsSink() {
+        return socketClosedAsSink;
+    }
+
+    public boolean useConnectedSocket() {
+        return connectedSocket;
+    }
+
+    public boolean useQueryCache() {
+        return queryCache || queryCacheDir != null;
+    }
+
+    public boolean queryCacheMessages() {
+        return queryCacheMessages;
+    }
+
+    public String getQueryCacheDir() {
+        return queryCacheDir;
+    }
+
+    public int getHostPort() {
+        return Integer.parseInt(host.substring(host.lastIndexOf(':') + 1));
+    }
+
+    /** Returns a copy of this config, whose host uses the given port, for a SUL instance listening on that port */
+    public EdhocMapperConfig withHostPort(int port) {
+        EdhocMapperConfig instanceConfig;
+        try {
+            instanceConfig = (EdhocMapperConfig) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+
+        instanceConfig.host = host.substring(0, host.lastIndexOf(':') + 1) + port;
+        return instanceConfig;
+    }
+
+    /**
+     * Returns a copy of this config, whose own connection id is extended by the given instance, so that
+     * the SUL instances sharing an OSCORE context database use distinct ids
+     */
+    public EdhocMapperConfig withInstanceConnectionId(int instance) {
+        String baseConnectionId = Objects.equals(ownConnectionId, "[]") ? "" : ownConnectionId;
+        return withOwnConnectionId(baseConnectionId + String.format("%02x", instance));
+    }
+
+    /** Returns a copy of this config, whose own connection id is the given hexadecimal byte string */
+    public EdhocMapperConfig withOwnConnectionId(String ownConnectionId) {
+        EdhocMapperConfig instanceConfig;
+        try {
+            instanceConfig = (EdhocMapperConfig) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+
+        instanceConfig.ownConnectionId = ownConnectionId.isEmpty() ? "[]" : ownConnectionId;
+        return instanceConfig;
+    }
+
     protected String checkAndReturnHost(String host) {
         String[] hostArray = host.split(":", -1);
 
@@ -262,6 +578,67 @@ public class EdhocMapperConfig extends MapperConfigStandard {
         printRDBooleanParam(printWriter, "-disableOwnConnectionIdGeneration", disableOwnConnectionIdGeneration);
         printRDStringParam(printWriter, "-forceOscoreSenderId", forceOscoreSenderId);
         printRDStringParam(printWriter, "-forceOscoreRecipientId", forceOscoreRecipientId);
+        printRDBooleanParam(printWriter, "-reuseMapperState", reuseMapperState);
+        printRDBooleanParam(printWriter, "-reuseMapperEndpoint", reuseMapperEndpoint);
+        printRDParam(printWriter, "-sulInstances", sulInstances);
+        printRDParam(printWriter, "-sulPortStride", sulPortStride);
+        printRDBooleanParam(printWriter, "-multiplexClients", multiplexClients);
+        printRDBooleanParam(printWriter, "-adaptiveResponseWait", adaptiveResponseWait);
+        printRDBooleanParam(printWriter, "-adaptiveShortenUnanswered", adaptiveShortenUnanswered);
+        printRDParam(printWriter, "-adaptiveMinSamples", adaptiveMinSamples);
+        printRDParam(printWriter, "-adaptiveWaitFactor", adaptiveWaitFactor);
+        printRDParam(printWriter, "-adaptiveMinWait", adaptiveMinWait);
+        printRDBooleanParam(printWriter, "-readinessProbe", readinessProbe);
+        printRDParam(printWriter, "-readinessTimeout", readinessTimeout);
+        printRDParam(printWriter, "-readinessProbeInterval", readinessProbeInterval);
+        printRDParam(printWriter, "-ephemeralKeyPoolSize", ephemeralKeyPoolSize);
+        printRDParam(printWriter, "-exchangeMaxAge", exchangeMaxAge);
+        printRDStringParam(printWriter, "-loopbackSul", loopbackSul);
+        printRDStringParam(printWriter, "-loopbackSulClasspath", loopbackSulClasspath);
+        printRDStringParam(printWriter, "-standbySulCmd", standbySulCmd);
+        printRDStringParam(printWriter, "-standbySulDir", standbySulDir);
+        printRDParam(printWriter, "-standbySulPort", standbySulPort);
+        printRDBooleanParam(printWriter, "-softReset", softReset);
+        printRDParam(printWriter, "-softResetAbortWait", softResetAbortWait);
+        printRDStringParam(printWriter, "-metricsDir", metricsDir);
+        printRDParam(printWriter, "-metricsInterval", metricsInterval);
+        printRDBooleanParam(printWriter, "-sinkPrefixOracle", sinkPrefixOracle);
+        printRDBooleanParam(printWriter, "-socketClosedAsSink", socketClosedAsSink);
+        printRDBooleanParam(printWriter, "-connectedSocket", connectedSocket);
+        printRDBooleanParam(printWriter, "-queryCache", queryCache);
+        printRDBooleanParam(printWriter, "-queryCacheMessages", queryCacheMessages);
+        printRDStringParam(printWriter, "-queryCacheDir", queryCacheDir);
+    }
+
+    /**
+     * Prints the parameters that affect the outputs of the SUL, leaving out the ones that affect only how the
+     * outputs are obtained, such as the reuse, the instances, the waits, the oracles, the metrics and the caches
+     */
+    public void printOutputDescription(PrintWriter printWriter) {
+        super.printRunDescriptionSelf(printWriter);
+        printWriter.println("Host: " + host);
+        printRDParam(printWriter, "-protocolVersion", protocolVersion);
+        printRDParam(printWriter, "-combinedMessageVersion", combinedMessageVersion);
+        printRDParam(printWriter, "-edhocRole", edhocRole);
+        printRDStringParam(printWriter, "-edhocCoapResource", edhocCoapResource);
+        printRDStringParam(printWriter, "-appCoapResource", appCoapResource);
+        printRDStringParam(printWriter, "-appMessageCodeToCoapServer", appMessageCodeToCoapServer);
+        printRDStringParam(printWriter, "-appMessagePayloadToCoapServer", appMessagePayloadToCoapServer);
+        printRDStringParam(printWriter, "-appMessageCodeToCoapClient", appMessageCodeToCoapClient);
+        printRDStringParam(printWriter, "-appMessagePayloadToCoapClient", appMessagePayloadToCoapClient);
+        printRDBooleanParam(printWriter, "-coapErrorAsEdhocError", coapErrorAsEdhocError);
+        printRDBooleanParam(printWriter, "-disableContentFormat", disableContentFormat);
+        printRDBooleanParam(printWriter, "-useOldContentFormat", useOldContentFormat);
+        printRDBooleanParam(printWriter, "-enableSessionReset", enableSessionReset);
+        printRDBooleanParam(printWriter, "-disableCXCorrelation", disableCXCorrelation);
+        printRDStringParam(printWriter, "-ownConnectionId", ownConnectionId);
+        printRDBooleanParam(printWriter, "-disableOwnConnectionIdGeneration", disableOwnConnectionIdGeneration);
+        printRDStringParam(printWriter, "-forceOscoreSenderId", forceOscoreSenderId);
+        printRDStringParam(printWriter, "-forceOscoreRecipientId", forceOscoreRecipientId);
+        printRDStringParam(printWriter, "-loopbackSul", loopbackSul);
+        printRDStringParam(printWriter, "-standbySulCmd", standbySulCmd);
+        printRDStringParam(printWriter, "-standbySulDir", standbySulDir);
+        getAuthenticationConfig().printCredentialDescription(printWriter);
     }
 
     @Override
@@ -2,10 +2,15 @@ package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.auth
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParametersDelegate;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.authentication.keyconfigs.KeyConfig;
 import com.github.protocolfuzzing.protocolstatefuzzer.components.learner.statistics.RunDescriptionPrinter;
 import org.eclipse.californium.edhoc.Constants;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 public class AuthenticationConfig implements RunDescriptionPrinter {
 
@@ -30,6 +35,12 @@ public class AuthenticationConfig implements RunDescriptionPrinter {
             + "LEARNING means 'Trust and use any (new) valid credential'.")
     protected TrustModel trustModel = TrustModel.NO_LEARNING;
 
+    @Parameter(names = "-credentialCacheDir", description = "The directory to cache the built authentication "
+            + "credentials of the mapper and the SUL across runs, including the private keys of the mapper. A cached "
+            + "entry is used only if the authentication parameters, the role of the mapper and the contents of the "
+            + "key, certificate and test vector files are unchanged.")
+    protected String credentialCacheDir = null;
+
     @ParametersDelegate
     protected ManyFilesAuthenticationConfig manyFilesAuthenticationConfig;
 
@@ -61,6 +72,33 @@ public class AuthenticationConfig implements RunDescriptionPrinter {
         return trustModel.toInteger();
     }
 
+    public String getCredentialCacheDir() {
+        return credentialCacheDir;
+    }
+
+    /** Returns the files, from which the authentication credentials are built */
+    public List<String> getSourceFilenames() {
+        List<String> filenames = new ArrayList<>();
+
+        if (manyFilesAuthenticationConfig.isUsed()) {
+            List<KeyConfig> keyConfigs = List.of(
+                    manyFilesAuthenticationConfig.getEd25519KeySigConfig(),
+                    manyFilesAuthenticationConfig.getX25519KeyStatConfig(),
+                    manyFilesAuthenticationConfig.getP256KeySigConfig(),
+                    manyFilesAuthenticationConfig.getP256KeyStatConfig());
+
+            for (KeyConfig keyConfig : keyConfigs) {
+                Stream.of(keyConfig.getMapPrivateFilename(), keyConfig.getMapPublicFilename(),
+                        keyConfig.getMapX509Filename(), keyConfig.getSulPublicFilename(),
+                        keyConfig.getSulX509Filename()).filter(Objects::nonNull).forEach(filenames::add);
+            }
+        } else if (testVectorAuthenticationConfig.isUsed()) {
+            filenames.add(testVectorAuthenticationConfig.getTestVectorFile());
+        }
+
+        return filenames;
+    }
+
     public ManyFilesAuthenticationConfig getManyFilesAuthenticationConfig() {
         return manyFilesAuthenticationConfig;
     }
@@ -72,6 +110,17 @@ public class AuthenticationConfig implements RunDescriptionPrinter {
     @Override
     public void printRunDescriptionSelf(PrintWriter printWriter) {
         printWriter.println("### AuthenticationConfig Parameters");
+        printCredentialParameters(printWriter);
+        printRDStringParam(printWriter, "-credentialCacheDir", credentialCacheDir);
+    }
+
+    /** Prints the parameters of the credentials, leaving out the credential cache, which does not affect them */
+    public void printCredentialDescription(PrintWriter printWriter) {
+        printCredentialParameters(printWriter);
+        printRunDescriptionRec(printWriter);
+    }
+
+    protected void printCredentialParameters(PrintWriter printWriter) {
         printRDParam(printWriter, "-mapCredType", mapCredType);
         printRDParam(printWriter, "-mapIdCredType", mapIdCredType);
         printRDParam(printWriter, "-sulCredType", sulCredType);
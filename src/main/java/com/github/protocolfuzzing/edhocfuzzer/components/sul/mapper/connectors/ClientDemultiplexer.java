@@ -0,0 +1,212 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors;
+
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EdhocSessionPersistent;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EdhocStackFactoryPersistent;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.MessageProcessorPersistent;
+import com.upokecenter.cbor.CBORObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.californium.oscore.HashMapCtxDB;
+import org.eclipse.californium.oscore.OSCoreCtx;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Lets several SUL instances learn client SULs through one EdhocServer bound to a
+ * single port, instead of one server per instance. Each instance registers the
+ * session context of its query and a client is assigned on its initial request to
+ * the context that has waited the longest, after which its exchanges are routed by
+ * its source address, or by the connection identifier of a session of the context,
+ * if its address has changed. Any other request is dropped, as are the
+ * retransmissions of the exchanges of the contexts that have been released, so
+ * that a late client does not pollute a query. The OSCORE context database and the
+ * used connection identifiers are shared by the mapper states of all instances,
+ * since they are used by the shared stack.
+ */
+public class ClientDemultiplexer {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // the maximum number of exchanges of released contexts that are remembered
+    protected static final int MAX_RETIRED_EXCHANGES = 4096;
+
+    protected HashMapCtxDB oscoreDb = new HashMapCtxDB();
+    protected Set<CBORObject> usedConnectionIds = ConcurrentHashMap.newKeySet();
+
+    // the contexts keyed by the addresses of their clients and the contexts waiting for a new client
+    protected Map<InetSocketAddress, ClientContext> claimedContexts = new HashMap<>();
+    protected Deque<ClientContext> waitingContexts = new ArrayDeque<>();
+
+    // the exchanges of the released contexts, keyed by the address and the message id of their requests
+    protected Map<String, Boolean> retiredExchanges = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_RETIRED_EXCHANGES;
+        }
+    };
+
+    protected EdhocServer edhocServer = null;
+
+    public HashMapCtxDB getOscoreDb() {
+        return oscoreDb;
+    }
+
+    public Set<CBORObject> getUsedConnectionIds() {
+        return usedConnectionIds;
+    }
+
+    /**
+     * Registers the context for the session of a new query, releasing its previous session and client,
+     * and starts the shared server on the first registration
+     */
+    public synchronized void register(ClientContext clientContext, String host, int port, String edhocResource,
+                                      String appResource, EdhocStackFactoryPersistent edhocStackFactoryPersistent,
+                                      CoapExchanger coapExchanger) {
+        unregister(clientContext);
+        clientContext.messageProcessorPersistent = edhocStackFactoryPersistent.getMessageProcessorPersistent();
+        clientContext.coapExchanger = coapExchanger;
+        waitingContexts.add(clientContext);
+
+        if (edhocServer == null) {
+            edhocServer = new EdhocServer(host, port, edhocResource, appResource, edhocStackFactoryPersistent, this);
+            edhocStackFactoryPersistent.demultiplex(this);
+            edhocServer.start();
+            LOGGER.info("Started server demultiplexing clients on {}:{}", host, port);
+        }
+    }
+
+    /** Releases the session and the client of the context, which then receives no exchanges */
+    public synchronized void unregister(ClientContext clientContext) {
+        waitingContexts.remove(clientContext);
+        claimedContexts.values().removeIf(context -> context == clientContext);
+
+        clientContext.exchanges.forEach(exchange -> retiredExchanges.put(exchange, Boolean.TRUE));
+        clientContext.exchanges.clear();
+
+        if (clientContext.messageProcessorPersistent != null) {
+            release(clientContext.messageProcessorPersistent);
+            clientContext.messageProcessorPersistent = null;
+            clientContext.coapExchanger = null;
+        }
+    }
+
+    /**
+     * Returns the context of the request with the given message id from the client with the given address or,
+     * if there is none, the context with a session of the given connection identifier, which may be null.
+     * Otherwise, if the request is the initial one of a client, the client is assigned to the longest waiting
+     * context. Returns null if the request cannot be routed or belongs to an exchange of a released context.
+     */
+    public synchronized ClientContext route(InetSocketAddress address, int mid, CBORObject connectionId,
+                                            boolean isInitialRequest) {
+        String exchange = address + "#" + mid;
+        if (retiredExchanges.containsKey(exchange)) {
+            LOGGER.debug("Dropped retransmission of released exchange {}", exchange);
+            return null;
+        }
+
+        ClientContext clientContext = claimedContexts.get(address);
+
+        if (clientContext == null && connectionId != null) {
+            for (ClientContext claimedContext : claimedContexts.values()) {
+                if (claimedContext.hasSession(connectionId)) {
+                    LOGGER.debug("Routed client {} by connection id {}", address, connectionId);
+                    claimedContexts.put(address, claimedContext);
+                    clientContext = claimedContext;
+                    break;
+                }
+            }
+        }
+
+        if (clientContext == null) {
+            if (!isInitialRequest || waitingContexts.isEmpty()) {
+                return null;
+            }
+
+            clientContext = waitingContexts.poll();
+            claimedContexts.put(address, clientContext);
+            LOGGER.debug("Assigned client {}", address);
+        }
+
+        clientContext.exchanges.add(exchange);
+        return clientContext;
+    }
+
+    /**
+     * Returns the message processor of the current query of the context that a request from the given address
+     * would be routed to, i.e. the one of its client, or else the longest waiting one or any assigned one, so that
+     * the request can be parsed before being routed, or null if no context is registered
+     */
+    public synchronized MessageProcessorPersistent processorFor(InetSocketAddress address) {
+        ClientContext clientContext = claimedContexts.get(address);
+        if (clientContext == null) {
+            clientContext = waitingContexts.isEmpty() ? claimedContexts.values().stream().findAny().orElse(null) :
+                    waitingContexts.peek();
+        }
+        return clientContext == null ? null : clientContext.messageProcessorPersistent;
+    }
+
+    /** Returns the context of the client with the given address, or null if it has not been assigned */
+    public synchronized ClientContext lookup(InetSocketAddress address) {
+        return claimedContexts.get(address);
+    }
+
+    /** Returns the coapExchanger of the client with the given address, or null if it has not been assigned */
+    public CoapExchanger coapExchangerOf(InetSocketAddress address) {
+        ClientContext clientContext = lookup(address);
+        return clientContext == null ? null : clientContext.coapExchanger;
+    }
+
+    public synchronized void close() {
+        if (edhocServer != null) {
+            edhocServer.destroy();
+            edhocServer = null;
+        }
+    }
+
+    // frees the connection identifiers and the OSCORE contexts of the sessions of the processor's mapper state
+    protected void release(MessageProcessorPersistent messageProcessorPersistent) {
+        Map<CBORObject, EdhocSessionPersistent> edhocSessionsPersistent = messageProcessorPersistent
+                .getEdhocMapperState().getEdhocEndpointInfoPersistent().getEdhocSessionsPersistent();
+
+        List<Map.Entry<CBORObject, EdhocSessionPersistent>> entries = new ArrayList<>(edhocSessionsPersistent.entrySet());
+        for (Map.Entry<CBORObject, EdhocSessionPersistent> entry : entries) {
+            usedConnectionIds.remove(entry.getKey());
+
+            OSCoreCtx oscoreCtx = entry.getValue().getOscoreCtx();
+            if (oscoreCtx != null) {
+                oscoreDb.removeContext(oscoreCtx);
+            }
+        }
+    }
+
+    /** The session context of a SUL instance, which is updated on each query */
+    public static class ClientContext {
+        protected volatile MessageProcessorPersistent messageProcessorPersistent = null;
+        protected volatile CoapExchanger coapExchanger = null;
+
+        // the exchanges routed to the context, keyed as the retired exchanges
+        protected List<String> exchanges = new ArrayList<>();
+
+        public MessageProcessorPersistent getMessageProcessorPersistent() {
+            return messageProcessorPersistent;
+        }
+
+        public CoapExchanger getCoapExchanger() {
+            return coapExchanger;
+        }
+
+        protected boolean hasSession(CBORObject connectionId) {
+            MessageProcessorPersistent processor = messageProcessorPersistent;
+            return processor != null && processor.getEdhocMapperState().getEdhocEndpointInfoPersistent()
+                    .getEdhocSessionsPersistent().containsKey(connectionId);
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.eclipse.californium.elements.exception.ConnectorException;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.URI;
 
 /*
  * It is used when the Mapper should act as a client to connect
@@ -22,6 +23,10 @@ public class ClientMapperConnector implements EdhocMapperConnector {
     private static final Logger LOGGER = LogManager.getLogger();
     protected CoapClient edhocClient;
     protected CoapClient appClient;
+
+    // client with the default endpoint used only for probing the readiness of the server,
+    // so that probes do not pass through the edhoc stack
+    protected CoapClient probeClient;
     protected CoapEndpoint coapEndpoint;
     protected CoapResponse response;
 
@@ -35,10 +40,39 @@ public class ClientMapperConnector implements EdhocMapperConnector {
     protected CoapExchanger coapExchanger;
     protected CoapExchangeInfo currentCoapExchangeInfo;
 
+    // keep the endpoint across queries and swap only the session
+    protected boolean reuseEndpoint;
+
+    // the stack factory with which the current endpoint was built, null if the
+    // current endpoint is the initial one without an edhoc stack
+    protected EdhocStackFactoryPersistent endpointStackFactory = null;
+
+    // connect the socket of the endpoint to the server, so that its ICMP errors end the exchanges
+    protected boolean connectedSocket;
+
+    // the request waiting for its response and whether the server has been unreachable since the initialization
+    protected volatile Request currentRequest = null;
+    protected volatile boolean serverUnreachable = false;
+
+    // the time in nanoseconds the last request waited for its response
+    protected long responseWaitTime = 0;
+
     public ClientMapperConnector(String edhocUri, String appUri, Long originalTimeout) {
+        this(edhocUri, appUri, originalTimeout, false);
+    }
+
+    public ClientMapperConnector(String edhocUri, String appUri, Long originalTimeout, boolean reuseEndpoint) {
+        this(edhocUri, appUri, originalTimeout, reuseEndpoint, false);
+    }
+
+    public ClientMapperConnector(String edhocUri, String appUri, Long originalTimeout, boolean reuseEndpoint,
+                                 boolean connectedSocket) {
+        this.reuseEndpoint = reuseEndpoint;
+        this.connectedSocket = connectedSocket;
         this.coapEndpoint = CoapEndpoint.builder().build();
         this.edhocClient = new CoapClient(edhocUri).setEndpoint(coapEndpoint).setTimeout(originalTimeout);
         this.appClient = new CoapClient(appUri).setEndpoint(coapEndpoint).setTimeout(originalTimeout);
+        this.probeClient = new CoapClient(edhocUri);
     }
 
     @Override
@@ -46,26 +80,72 @@ public class ClientMapperConnector implements EdhocMapperConnector {
                            CoapExchanger coapExchanger) {
 
         this.coapExchanger = coapExchanger;
+        this.serverUnreachable = false;
+
+        if (reuseEndpoint && endpointStackFactory != null) {
+            // keep the endpoint and its stack, swap the session of the new query
+            // and flush the exchange store and the deduplicator, so that no
+            // exchange or message id of the previous query affects the new one
+            endpointStackFactory.rebind(edhocStackFactoryPersistent);
+            coapEndpoint.clear();
+            return;
+        }
 
         // create new coapEndpoint using provided stackFactory
         // at the same address as the previous one
         InetSocketAddress address = coapEndpoint.getAddress();
         coapEndpoint.destroy();
-        coapEndpoint = CoapEndpoint.builder()
-                .setInetSocketAddress(address)
-                .setCoapStackFactory(edhocStackFactoryPersistent)
-                .build();
+        CoapEndpoint.Builder builder = CoapEndpoint.builder().setCoapStackFactory(edhocStackFactoryPersistent);
+        if (connectedSocket) {
+            builder.setConnector(new ConnectedUdpConnector(address, getServerAddress(), this::onServerUnreachable));
+        } else {
+            builder.setInetSocketAddress(address);
+        }
+        coapEndpoint = builder.build();
+        endpointStackFactory = edhocStackFactoryPersistent;
 
         // set the new endpoint to clients
         edhocClient.setEndpoint(coapEndpoint);
         appClient.setEndpoint(coapEndpoint);
     }
 
+    /** Sends the next requests to the given URIs, such as those of a new SUL process */
+    public void setUris(String edhocUri, String appUri) {
+        edhocClient.setURI(edhocUri);
+        appClient.setURI(appUri);
+        probeClient.setURI(edhocUri);
+
+        // the endpoint is rebuilt on the next initialization, so that its socket is connected to the new server
+        if (connectedSocket) {
+            endpointStackFactory = null;
+        }
+    }
+
+    /**
+     * Pings the server with empty CON messages until it replies or the timeout expires
+     *
+     * @param timeout        the maximum time to wait in milliseconds
+     * @param probeInterval  the time to wait for the reply of each ping in milliseconds
+     * @return               true if the server replied before the timeout
+     */
+    public boolean waitForServerReadiness(long timeout, long probeInterval) {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        do {
+            if (probeClient.ping(probeInterval)) {
+                return true;
+            }
+        } while (System.currentTimeMillis() < deadline);
+
+        return false;
+    }
+
     @Override
     public void send(byte[] payload, PayloadType payloadType, int messageCode, int contentFormat) {
         exceptionCodeOccurred = -1;
         expectedAppResponse = false;
         currentCoapExchangeInfo = null;
+        responseWaitTime = 0;
 
         if (payload == null) {
             LOGGER.error("Payload to send is null");
@@ -74,9 +154,18 @@ public class ClientMapperConnector implements EdhocMapperConnector {
             return;
         }
 
+        // the server has terminated, so the exchanges of the rest of the query end immediately
+        if (serverUnreachable) {
+            exceptionCodeOccurred = 0;
+            response = null;
+            return;
+        }
+
         Request request = new Request(CoAP.Code.valueOf(messageCode), CoAP.Type.CON);
         request.getOptions().setContentFormat(contentFormat);
         request.setPayload(payload);
+        currentRequest = request;
+        long start = System.nanoTime();
 
         try {
             switch (payloadType) {
@@ -102,11 +191,29 @@ public class ClientMapperConnector implements EdhocMapperConnector {
             exceptionCodeOccurred = 0;
             response = null;
         } finally {
+            responseWaitTime = System.nanoTime() - start;
+            currentRequest = null;
             // null on timeout or exception, but not null on successful exchange
-            currentCoapExchangeInfo = coapExchanger.getReceivedQueue().poll();
+            currentCoapExchangeInfo = coapExchanger.pollReceived();
         }
     }
 
+    // fails the current request with a send error, which stops the wait for its response
+    protected void onServerUnreachable() {
+        serverUnreachable = true;
+
+        Request request = currentRequest;
+        if (request != null) {
+            request.setSendError(new ConnectorException("Server is unreachable"));
+        }
+    }
+
+    protected InetSocketAddress getServerAddress() {
+        URI uri = URI.create(edhocClient.getURI());
+        int port = uri.getPort() == -1 ? CoAP.DEFAULT_COAP_PORT : uri.getPort();
+        return new InetSocketAddress(uri.getHost(), port);
+    }
+
     @Override
     public byte[] receive() throws GenericErrorException, TimeoutException, UnsupportedMessageException {
         // save code and reset it to maintain neutral state
@@ -132,6 +239,11 @@ public class ClientMapperConnector implements EdhocMapperConnector {
         this.appClient.setTimeout(timeout);
     }
 
+    @Override
+    public long getResponseWaitTime() {
+        return responseWaitTime;
+    }
+
     @Override
     public boolean receivedCoapErrorMessage() {
         return response != null
@@ -1,22 +1,141 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors;
 
-import java.util.concurrent.ArrayBlockingQueue;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/*
+ * Correlates the CoAP exchanges of a session between the EDHOC layer, the server
+ * resources and the mapper connectors. The draft exchanges, i.e. the requests that
+ * have passed the EDHOC layer but not yet reached a resource, are indexed by MID,
+ * and the received exchanges are queued in order of arrival for the connector.
+ * Both are bounded by the age of their exchanges instead of their number, so that
+ * a burst of messages is not lost, while stale exchanges are eventually dropped.
+ */
 public class CoapExchanger {
-    protected BlockingQueue<CoapExchangeInfo> receivedQueue;
-    protected BlockingQueue<CoapExchangeInfo> draftQueue;
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    public static final long DEFAULT_MAX_AGE = 30000;
+
+    // the draft exchanges keyed by MID, in order of insertion, so that the oldest are evicted first
+    protected Map<Integer, TimedExchangeInfo> drafts = new LinkedHashMap<>();
+
+    protected BlockingQueue<TimedExchangeInfo> receivedQueue = new LinkedBlockingQueue<>();
+
+    // the maximum age of the exchanges in milliseconds
+    protected long maxAge;
+
+    protected MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
 
     public CoapExchanger() {
-        receivedQueue = new ArrayBlockingQueue<>(10);
-        draftQueue = new ArrayBlockingQueue<>(10);
+        this(DEFAULT_MAX_AGE);
+    }
+
+    public CoapExchanger(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /** Adds a draft exchange, replacing any previous draft of the same MID */
+    public synchronized void addDraft(CoapExchangeInfo coapExchangeInfo) {
+        evictDrafts();
+
+        if (drafts.put(coapExchangeInfo.getMID(), new TimedExchangeInfo(coapExchangeInfo)) != null) {
+            LOGGER.warn("Replaced draft exchange with MID {}", coapExchangeInfo.getMID());
+            metricsRegistry.increment("exchanger.dropped");
+        }
+    }
+
+    /** Removes and returns the draft exchange of the given MID, or null if there is none */
+    public synchronized CoapExchangeInfo removeDraft(int MID) {
+        evictDrafts();
+
+        TimedExchangeInfo timedExchangeInfo = drafts.remove(MID);
+        return timedExchangeInfo == null ? null : timedExchangeInfo.coapExchangeInfo;
+    }
+
+    /** Marks an exchange that reached a resource without a draft */
+    public void unmatched(int MID) {
+        LOGGER.warn("No draft exchange found with MID {}", MID);
+        metricsRegistry.increment("exchanger.unmatched");
+    }
+
+    public void addReceived(CoapExchangeInfo coapExchangeInfo) {
+        receivedQueue.add(new TimedExchangeInfo(coapExchangeInfo));
     }
 
-    public BlockingQueue<CoapExchangeInfo> getReceivedQueue() {
-        return receivedQueue;
+    /** Returns the oldest received exchange that is not stale, or null if there is none */
+    public CoapExchangeInfo pollReceived() {
+        TimedExchangeInfo timedExchangeInfo;
+        do {
+            timedExchangeInfo = receivedQueue.poll();
+        } while (timedExchangeInfo != null && isLate(timedExchangeInfo));
+
+        return timedExchangeInfo == null ? null : timedExchangeInfo.coapExchangeInfo;
+    }
+
+    /** Waits up to the given timeout in milliseconds for a received exchange that is not stale */
+    public CoapExchangeInfo pollReceived(long timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        TimedExchangeInfo timedExchangeInfo;
+        do {
+            timedExchangeInfo = receivedQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } while (timedExchangeInfo != null && isLate(timedExchangeInfo));
+
+        return timedExchangeInfo == null ? null : timedExchangeInfo.coapExchangeInfo;
     }
 
-    public BlockingQueue<CoapExchangeInfo> getDraftQueue() {
-        return draftQueue;
+    /** Waits for a received exchange that is not stale */
+    public CoapExchangeInfo takeReceived() throws InterruptedException {
+        TimedExchangeInfo timedExchangeInfo;
+        do {
+            timedExchangeInfo = receivedQueue.take();
+        } while (isLate(timedExchangeInfo));
+
+        return timedExchangeInfo.coapExchangeInfo;
+    }
+
+    protected void evictDrafts() {
+        Iterator<TimedExchangeInfo> iterator = drafts.values().iterator();
+        while (iterator.hasNext()) {
+            TimedExchangeInfo timedExchangeInfo = iterator.next();
+            if (!isStale(timedExchangeInfo)) {
+                break;
+            }
+
+            iterator.remove();
+            LOGGER.warn("Dropped stale draft exchange with MID {}", timedExchangeInfo.coapExchangeInfo.getMID());
+            metricsRegistry.increment("exchanger.dropped");
+        }
+    }
+
+    protected boolean isLate(TimedExchangeInfo timedExchangeInfo) {
+        if (!isStale(timedExchangeInfo)) {
+            return false;
+        }
+
+        LOGGER.warn("Dropped late received exchange with MID {}", timedExchangeInfo.coapExchangeInfo.getMID());
+        metricsRegistry.increment("exchanger.late");
+        return true;
+    }
+
+    protected boolean isStale(TimedExchangeInfo timedExchangeInfo) {
+        return System.nanoTime() - timedExchangeInfo.timestamp > TimeUnit.MILLISECONDS.toNanos(maxAge);
+    }
+
+    protected static class TimedExchangeInfo {
+        protected CoapExchangeInfo coapExchangeInfo;
+        protected long timestamp;
+
+        protected TimedExchangeInfo(CoapExchangeInfo coapExchangeInfo) {
+            this.coapExchangeInfo = coapExchangeInfo;
+            this.timestamp = System.nanoTime();
+        }
     }
 }
@@ -0,0 +1,85 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.californium.elements.UDPConnector;
+import org.eclipse.californium.elements.config.Configuration;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.net.SocketException;
+
+/*
+ * A UDP connector whose socket is connected to the server SUL, so that the ICMP
+ * port unreachable errors, which the kernel reports only on connected sockets,
+ * reach the mapper once the SUL has terminated. Each error is passed to the given
+ * listener, instead of the send or the receive of the connector failing silently
+ * and the exchange waiting for its response until the timeout.
+ */
+public class ConnectedUdpConnector extends UDPConnector {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    protected InetSocketAddress localAddress;
+    protected InetSocketAddress peerAddress;
+    protected Runnable unreachableListener;
+
+    public ConnectedUdpConnector(InetSocketAddress localAddress, InetSocketAddress peerAddress,
+                                 Runnable unreachableListener) {
+        super(localAddress, Configuration.getStandard());
+        this.localAddress = localAddress;
+        this.peerAddress = peerAddress;
+        this.unreachableListener = unreachableListener;
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (isRunning()) {
+            return;
+        }
+
+        DatagramSocket socket = new ConnectedSocket();
+        socket.bind(localAddress);
+        socket.connect(peerAddress);
+        init(socket);
+        LOGGER.debug("Connected UDP socket {} to {}", socket.getLocalSocketAddress(), peerAddress);
+    }
+
+    protected void unreachable(PortUnreachableException e) {
+        LOGGER.debug("Peer {} is unreachable: {}", peerAddress, e.getMessage());
+        unreachableListener.run();
+    }
+
+    // reports the ICMP errors of the peer, which the receive skips, since they are not datagrams
+    protected class ConnectedSocket extends DatagramSocket {
+
+        protected ConnectedSocket() throws SocketException {
+            super((SocketAddress) null);
+        }
+
+        @Override
+        public void send(DatagramPacket packet) throws IOException {
+            try {
+                super.send(packet);
+            } catch (PortUnreachableException e) {
+                unreachable(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public void receive(DatagramPacket packet) throws IOException {
+            while (true) {
+                try {
+                    super.receive(packet);
+                    return;
+                } catch (PortUnreachableException e) {
+                    unreachable(e);
+                }
+            }
+        }
+    }
+}
@@ -14,6 +14,9 @@ public interface EdhocMapperConnector {
 
     void setTimeout(Long timeout);
 
+    /** Returns the time in nanoseconds the last send waited for a response, excluding the building of its message */
+    long getResponseWaitTime();
+
     boolean receivedCoapErrorMessage();
 
     boolean receivedOscoreAppMessage();
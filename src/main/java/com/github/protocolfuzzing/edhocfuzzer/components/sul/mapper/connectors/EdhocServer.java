@@ -6,25 +6,50 @@ import org.apache.logging.log4j.Logger;
 import org.eclipse.californium.core.CoapResource;
 import org.eclipse.californium.core.CoapServer;
 import org.eclipse.californium.core.network.CoapEndpoint;
+import org.eclipse.californium.core.network.Endpoint;
 import org.eclipse.californium.core.server.resources.CoapExchange;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 public class EdhocServer extends CoapServer {
     private static final Logger LOGGER = LogManager.getLogger();
 
-    @SuppressWarnings("this-escape")
+    // the coapExchanger of the current session, shared with the resources,
+    // which can be swapped when the server is kept for a new session
+    protected AtomicReference<CoapExchanger> coapExchangerReference;
+
+    // the demultiplexer of the clients, each one with its own coapExchanger, null if there is a single client
+    protected ClientDemultiplexer clientDemultiplexer = null;
+
     public EdhocServer(String host, int port, String edhocResource, String appResource,
                        EdhocStackFactoryPersistent edhocStackFactoryPersistent,
                        CoapExchanger coapExchanger) {
+        this(host, port, edhocResource, appResource, edhocStackFactoryPersistent, coapExchanger, null);
+    }
+
+    public EdhocServer(String host, int port, String edhocResource, String appResource,
+                       EdhocStackFactoryPersistent edhocStackFactoryPersistent,
+                       ClientDemultiplexer clientDemultiplexer) {
+        this(host, port, edhocResource, appResource, edhocStackFactoryPersistent, null, clientDemultiplexer);
+    }
+
+    @SuppressWarnings("this-escape")
+    protected EdhocServer(String host, int port, String edhocResource, String appResource,
+                          EdhocStackFactoryPersistent edhocStackFactoryPersistent,
+                          CoapExchanger coapExchanger, ClientDemultiplexer clientDemultiplexer) {
+
+        coapExchangerReference = new AtomicReference<>(coapExchanger);
+        this.clientDemultiplexer = clientDemultiplexer;
 
         // add edhocResource
         addLeafResource(createInnerResourceTree(edhocResource),
-                new EdhocResource(extractLeafResourceString(edhocResource), coapExchanger));
+                new EdhocResource(extractLeafResourceString(edhocResource), this::getCoapExchanger));
 
         // add appResource
         addLeafResource(createInnerResourceTree(appResource),
-                new ApplicationResource(extractLeafResourceString(appResource), coapExchanger));
+                new ApplicationResource(extractLeafResourceString(appResource), this::getCoapExchanger));
 
         // add endpoint
         CoapEndpoint coapEndpoint = CoapEndpoint.builder()
@@ -35,6 +60,26 @@ public class EdhocServer extends CoapServer {
         addEndpoint(coapEndpoint);
     }
 
+    public void setCoapExchanger(CoapExchanger coapExchanger) {
+        coapExchangerReference.set(coapExchanger);
+    }
+
+    /** Returns the coapExchanger of the client of the given exchange, or null if there is none */
+    protected CoapExchanger getCoapExchanger(CoapExchange exchange) {
+        if (clientDemultiplexer == null) {
+            return coapExchangerReference.get();
+        }
+
+        return clientDemultiplexer.coapExchangerOf(exchange.advanced().getRequest().getSourceContext().getPeerAddress());
+    }
+
+    /** Clears the exchange store and the deduplicator of the endpoints, so that no state leaks to a new session */
+    public void clearEndpoints() {
+        for (Endpoint endpoint : getEndpoints()) {
+            endpoint.clear();
+        }
+    }
+
     protected String extractLeafResourceString(String resource) {
         String[] resources = resource.split("/", -1);
         return resources[resources.length - 1];
@@ -117,16 +162,16 @@ public class EdhocServer extends CoapServer {
     // The resource for edhoc protocol requests
     protected static class EdhocResource extends CoapResource {
         private static final Logger LOGGER = LogManager.getLogger();
-        protected CoapExchanger coapExchanger;
+        protected Function<CoapExchange, CoapExchanger> coapExchangerResolver;
 
-        public EdhocResource(String name, CoapExchanger coapExchanger) {
+        public EdhocResource(String name, Function<CoapExchange, CoapExchanger> coapExchangerResolver) {
             // set resource identifier
             super(name);
 
             // set display name
             getAttributes().setTitle(name + " - EDHOC Resource");
 
-            this.coapExchanger = coapExchanger;
+            this.coapExchangerResolver = coapExchangerResolver;
         }
 
         @Override
@@ -139,6 +184,7 @@ public class EdhocServer extends CoapServer {
         @Override
         public void handlePOST(CoapExchange exchange) {
             LOGGER.debug("Received POST request");
+            CoapExchanger coapExchanger = coapExchangerResolver.apply(exchange);
 
             if (coapExchanger == null) {
                 // respond to the request
@@ -152,16 +198,16 @@ public class EdhocServer extends CoapServer {
     // The Resource for application data requests
     protected static class ApplicationResource extends CoapResource {
         private static final Logger LOGGER = LogManager.getLogger();
-        protected CoapExchanger coapExchanger;
+        protected Function<CoapExchange, CoapExchanger> coapExchangerResolver;
 
-        public ApplicationResource(String name, CoapExchanger coapExchanger) {
+        public ApplicationResource(String name, Function<CoapExchange, CoapExchanger> coapExchangerResolver) {
             // set resource identifier
             super(name);
 
             // set display name
             getAttributes().setTitle(name + " - Application Resource");
 
-            this.coapExchanger = coapExchanger;
+            this.coapExchangerResolver = coapExchangerResolver;
         }
 
         @Override
@@ -177,6 +223,8 @@ public class EdhocServer extends CoapServer {
         }
 
         protected void handleExchange(CoapExchange exchange) {
+            CoapExchanger coapExchanger = coapExchangerResolver.apply(exchange);
+
             if (coapExchanger == null) {
                 // respond to the request
                 exchange.respond("Application response");
@@ -188,18 +236,12 @@ public class EdhocServer extends CoapServer {
 
     protected static void handleExchange(boolean fromEdhocResource, CoapExchange coapExchange,
                                          CoapExchanger coapExchanger) {
-        // edit coapExchange in draft queue
-        CoapExchangeInfo coapExchangeInfo;
+        // edit the draft coapExchangeInfo of the coapExchange
         int MID = coapExchange.advanced().getRequest().getMID();
-
-        do {
-            // if encountered a coapExchangeInfo not intended for the current coapExchange then
-            // drop it from draft queue and continue searching
-            coapExchangeInfo = coapExchanger.getDraftQueue().poll();
-        } while (coapExchangeInfo != null &&  coapExchangeInfo.getMID() != MID);
+        CoapExchangeInfo coapExchangeInfo = coapExchanger.removeDraft(MID);
 
         if (coapExchangeInfo == null) {
-            LOGGER.warn("Empty draft queue found");
+            coapExchanger.unmatched(MID);
             coapExchangeInfo = new CoapExchangeInfo(MID);
         }
 
@@ -218,11 +260,7 @@ public class EdhocServer extends CoapServer {
             }
         }
 
-        // save coapExchange to receivedQueue in order for some observer to respond
-        boolean ok = coapExchanger.getReceivedQueue().offer(coapExchangeInfo);
-
-        if (!ok) {
-            LOGGER.warn("Full receivedQueue found");
-        }
+        // save coapExchange to received exchanges in order for some observer to respond
+        coapExchanger.addReceived(coapExchangeInfo);
     }
 }
@@ -9,8 +9,6 @@ import org.eclipse.californium.core.coap.Request;
 import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.server.resources.CoapExchange;
 
-import java.util.concurrent.TimeUnit;
-
 /*
  * It is used when the Mapper should act as a server to connect
  * to a client SUL
@@ -24,6 +22,9 @@ public class ServerMapperConnector implements EdhocMapperConnector {
     // timeout in milliseconds
     protected Long timeout;
 
+    // the time in nanoseconds the last response waited for the next request of the client
+    protected long responseWaitTime = 0;
+
     // Possible Codes: 0 [Generic Error], 1 [Unsupported Message]
     protected int exceptionCodeOccurred = -1;
 
@@ -31,11 +32,38 @@ public class ServerMapperConnector implements EdhocMapperConnector {
     protected CoapExchanger coapExchanger;
     protected CoapExchangeInfo currentCoapExchangeInfo;
 
+    // keep the server bound across queries and swap only the session
+    protected boolean reuseServer;
+
+    // the stack factory with which the current server was created
+    protected EdhocStackFactoryPersistent serverStackFactory = null;
+
+    // the demultiplexer of the server shared with other connectors and the context
+    // of this connector in it, which are null if the server is not shared
+    protected ClientDemultiplexer clientDemultiplexer;
+    protected ClientDemultiplexer.ClientContext clientContext = null;
+
     public ServerMapperConnector(String coapHost, String edhocResource, String appResource, Long originalTimeout) {
+        this(coapHost, edhocResource, appResource, originalTimeout, false);
+    }
+
+    public ServerMapperConnector(String coapHost, String edhocResource, String appResource, Long originalTimeout,
+                                 boolean reuseServer) {
+        this(coapHost, edhocResource, appResource, originalTimeout, reuseServer, null);
+    }
+
+    public ServerMapperConnector(String coapHost, String edhocResource, String appResource, Long originalTimeout,
+                                 boolean reuseServer, ClientDemultiplexer clientDemultiplexer) {
         this.edhocResource = edhocResource;
         this.appResource = appResource;
         this.timeout = originalTimeout;
         this.coapHost = coapHost;
+        this.reuseServer = reuseServer;
+        this.clientDemultiplexer = clientDemultiplexer;
+
+        if (clientDemultiplexer != null) {
+            clientContext = new ClientDemultiplexer.ClientContext();
+        }
     }
 
     @Override
@@ -47,6 +75,22 @@ public class ServerMapperConnector implements EdhocMapperConnector {
         Integer port = Integer.parseInt(hostAndPort[1]);
 
         this.coapExchanger = coapExchanger;
+        currentCoapExchangeInfo = null;
+
+        if (clientDemultiplexer != null) {
+            // wait for a new client of the shared server
+            clientDemultiplexer.register(clientContext, host, port, edhocResource, appResource,
+                    edhocStackFactoryPersistent, coapExchanger);
+            return;
+        }
+
+        if (reuseServer && edhocServer != null) {
+            // keep the bound server and swap the session of the new query
+            serverStackFactory.rebind(edhocStackFactoryPersistent);
+            edhocServer.setCoapExchanger(coapExchanger);
+            edhocServer.clearEndpoints();
+            return;
+        }
 
         // destroy last server
         if (edhocServer != null) {
@@ -57,11 +101,19 @@ public class ServerMapperConnector implements EdhocMapperConnector {
         edhocServer = new EdhocServer(host, port, edhocResource, appResource, edhocStackFactoryPersistent,
                 coapExchanger);
 
+        serverStackFactory = edhocStackFactoryPersistent;
+
         // start server
         edhocServer.start();
     }
 
     public void shutdown() {
+        if (clientDemultiplexer != null) {
+            // the shared server is destroyed by the demultiplexer
+            clientDemultiplexer.unregister(clientContext);
+            return;
+        }
+
         if (edhocServer != null) {
             edhocServer.destroy();
         }
@@ -70,7 +122,22 @@ public class ServerMapperConnector implements EdhocMapperConnector {
     public void waitForClientMessage() {
         try {
             // blocks until an element is available
-            currentCoapExchangeInfo = coapExchanger.getReceivedQueue().take();
+            currentCoapExchangeInfo = coapExchanger.takeReceived();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Waits for a client message until the timeout expires
+     *
+     * @param timeout  the maximum time to wait in milliseconds
+     * @return         true if a client message was received before the timeout
+     */
+    public boolean waitForClientMessage(long timeout) {
+        try {
+            currentCoapExchangeInfo = coapExchanger.pollReceived(timeout);
+            return currentCoapExchangeInfo != null;
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
@@ -79,12 +146,13 @@ public class ServerMapperConnector implements EdhocMapperConnector {
     @Override
     public void send(byte[] payload, PayloadType payloadType, int messageCode, int contentFormat) {
         exceptionCodeOccurred = -1;
+        responseWaitTime = 0;
 
         if (currentCoapExchangeInfo == null || currentCoapExchangeInfo.getCoapExchange() == null) {
             // timeout has occurred on previous send, so poll the queue to get a
             // possible message that has arrived after the previous send
             // although the learner will not be aware of it
-            currentCoapExchangeInfo = coapExchanger.getReceivedQueue().poll();
+            currentCoapExchangeInfo = coapExchanger.pollReceived();
             if (currentCoapExchangeInfo == null || currentCoapExchangeInfo.getCoapExchange() == null) {
                 // impossible to send given message so is deemed unsupported
                 LOGGER.warn("Unable to reply with given message: No active CoAP exchange found");
@@ -140,11 +208,14 @@ public class ServerMapperConnector implements EdhocMapperConnector {
 
         currentExchange.respond(response);
 
+        long start = System.nanoTime();
         try {
-            currentCoapExchangeInfo = coapExchanger.getReceivedQueue().poll(timeout, TimeUnit.MILLISECONDS);
+            currentCoapExchangeInfo = coapExchanger.pollReceived(timeout);
         } catch (InterruptedException e) {
             exceptionCodeOccurred = 0;
             currentCoapExchangeInfo = null;
+        } finally {
+            responseWaitTime = System.nanoTime() - start;
         }
     }
 
@@ -177,6 +248,11 @@ public class ServerMapperConnector implements EdhocMapperConnector {
         this.timeout = timeout;
     }
 
+    @Override
+    public long getResponseWaitTime() {
+        return responseWaitTime;
+    }
+
     @Override
     public boolean receivedCoapErrorMessage() {
         return currentCoapExchangeInfo != null
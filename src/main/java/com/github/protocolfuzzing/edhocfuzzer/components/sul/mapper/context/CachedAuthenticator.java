@@ -0,0 +1,163 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context;
+
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EdhocEndpointInfoPersistent;
+import com.upokecenter.cbor.CBORObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.californium.cose.CoseException;
+import org.eclipse.californium.cose.OneKey;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/*
+ * Sets up the authentication credentials from the credential cache, if they are
+ * cached, or else through the given authenticator, storing them in the cache.
+ *
+ * The credentials are cached as a CBOR array of:
+ *  - the own key pairs, creds and id_creds, each as a map of key usage to a map of curve to value
+ *  - the own id_creds as an array
+ *  - the peer public keys and the peer credentials, each as an array of [id_cred, value] pairs
+ */
+public class CachedAuthenticator implements Authenticator {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    protected Authenticator authenticator;
+    protected CredentialCache credentialCache;
+    protected String cacheKey;
+
+    protected Map<Integer, HashMap<Integer, OneKey>> keyPairs;
+    protected Map<Integer, HashMap<Integer, CBORObject>> idCreds;
+    protected Map<Integer, HashMap<Integer, CBORObject>> creds;
+    protected Set<CBORObject> ownIdCreds;
+    protected Map<CBORObject, OneKey> peerPublicKeys;
+    protected Map<CBORObject, CBORObject> peerCredentials;
+
+    // true if all the credentials have been set up from the cache
+    protected boolean cached = false;
+
+    public CachedAuthenticator(Authenticator authenticator, CredentialCache credentialCache, String cacheKey,
+                               EdhocEndpointInfoPersistent edhocEndpointInfoPersistent, Set<CBORObject> ownIdCreds) {
+        this.authenticator = authenticator;
+        this.credentialCache = credentialCache;
+        this.cacheKey = cacheKey;
+        this.keyPairs = edhocEndpointInfoPersistent.getKeyPairs();
+        this.idCreds = edhocEndpointInfoPersistent.getIdCreds();
+        this.creds = edhocEndpointInfoPersistent.getCreds();
+        this.ownIdCreds = ownIdCreds;
+        this.peerPublicKeys = edhocEndpointInfoPersistent.getPeerPublicKeys();
+        this.peerCredentials = edhocEndpointInfoPersistent.getPeerCredentials();
+    }
+
+    @Override
+    public void setupOwnAuthenticationCredentials() {
+        CBORObject entry = credentialCache.load(cacheKey);
+        if (entry != null) {
+            try {
+                decodeCredentials(entry);
+                cached = true;
+                return;
+            } catch (CoseException | RuntimeException e) {
+                LOGGER.warn("Cannot use cached credentials {}: {}", cacheKey, e.getMessage());
+            }
+        }
+
+        authenticator.setupOwnAuthenticationCredentials();
+    }
+
+    @Override
+    public void setupPeerAuthenticationCredentials() {
+        if (cached) {
+            return;
+        }
+
+        authenticator.setupPeerAuthenticationCredentials();
+        credentialCache.store(cacheKey, encodeCredentials());
+    }
+
+    protected CBORObject encodeCredentials() {
+        CBORObject entry = CBORObject.NewArray();
+        entry.Add(encodeByUsageAndCurve(keyPairs, OneKey::AsCBOR));
+        entry.Add(encodeByUsageAndCurve(creds, value -> value));
+        entry.Add(encodeByUsageAndCurve(idCreds, value -> value));
+
+        CBORObject ownIdCredsArray = CBORObject.NewArray();
+        ownIdCreds.forEach(ownIdCredsArray::Add);
+        entry.Add(ownIdCredsArray);
+
+        entry.Add(encodeByIdCred(peerPublicKeys, OneKey::AsCBOR));
+        entry.Add(encodeByIdCred(peerCredentials, value -> value));
+        return entry;
+    }
+
+    // the credentials are first decoded and then added, so that none is added if any cannot be decoded
+    protected void decodeCredentials(CBORObject entry) throws CoseException {
+        Map<Integer, HashMap<Integer, OneKey>> cachedKeyPairs = new HashMap<>();
+        for (CBORObject keyUsage : entry.get(0).getKeys()) {
+            HashMap<Integer, OneKey> keyPairsByCurve = new HashMap<>();
+            for (CBORObject keyCurve : entry.get(0).get(keyUsage).getKeys()) {
+                keyPairsByCurve.put(keyCurve.AsInt32(), new OneKey(entry.get(0).get(keyUsage).get(keyCurve)));
+            }
+            cachedKeyPairs.put(keyUsage.AsInt32(), keyPairsByCurve);
+        }
+
+        Map<CBORObject, OneKey> cachedPeerPublicKeys = new HashMap<>();
+        for (int i = 0; i < entry.get(4).size(); i++) {
+            CBORObject pair = entry.get(4).get(i);
+            cachedPeerPublicKeys.put(pair.get(0), new OneKey(pair.get(1)));
+        }
+
+        Map<Integer, HashMap<Integer, CBORObject>> cachedCreds = decodeByUsageAndCurve(entry.get(1));
+        Map<Integer, HashMap<Integer, CBORObject>> cachedIdCreds = decodeByUsageAndCurve(entry.get(2));
+
+        Set<CBORObject> cachedOwnIdCreds = new HashSet<>();
+        for (int i = 0; i < entry.get(3).size(); i++) {
+            cachedOwnIdCreds.add(entry.get(3).get(i));
+        }
+
+        Map<CBORObject, CBORObject> cachedPeerCredentials = new HashMap<>();
+        for (int i = 0; i < entry.get(5).size(); i++) {
+            CBORObject pair = entry.get(5).get(i);
+            cachedPeerCredentials.put(pair.get(0), pair.get(1));
+        }
+
+        keyPairs.putAll(cachedKeyPairs);
+        creds.putAll(cachedCreds);
+        idCreds.putAll(cachedIdCreds);
+        ownIdCreds.addAll(cachedOwnIdCreds);
+        peerPublicKeys.putAll(cachedPeerPublicKeys);
+        peerCredentials.putAll(cachedPeerCredentials);
+    }
+
+    protected <T> CBORObject encodeByUsageAndCurve(Map<Integer, HashMap<Integer, T>> map, Function<T, CBORObject> encoder) {
+        CBORObject usageMap = CBORObject.NewMap();
+        map.forEach((keyUsage, valuesByCurve) -> {
+            CBORObject curveMap = CBORObject.NewMap();
+            valuesByCurve.forEach((keyCurve, value) -> curveMap.Add(keyCurve, encoder.apply(value)));
+            usageMap.Add(keyUsage, curveMap);
+        });
+        return usageMap;
+    }
+
+    protected <T> CBORObject encodeByIdCred(Map<CBORObject, T> map, Function<T, CBORObject> encoder) {
+        CBORObject pairs = CBORObject.NewArray();
+        map.forEach((idCred, value) -> pairs.Add(CBORObject.NewArray().Add(idCred).Add(encoder.apply(value))));
+        return pairs;
+    }
+
+    protected Map<Integer, HashMap<Integer, CBORObject>> decodeByUsageAndCurve(CBORObject usageMap) {
+        Map<Integer, HashMap<Integer, CBORObject>> map = new HashMap<>();
+        for (CBORObject keyUsage : usageMap.getKeys()) {
+            HashMap<Integer, CBORObject> valuesByCurve = new HashMap<>();
+            CBORObject curveMap = usageMap.get(keyUsage);
+            for (CBORObject keyCurve : curveMap.getKeys()) {
+                valuesByCurve.put(keyCurve.AsInt32(), curveMap.get(keyCurve));
+            }
+            map.put(keyUsage.AsInt32(), valuesByCurve);
+        }
+        return map;
+    }
+}
@@ -1,12 +1,18 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context;
 
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EphemeralKeyPool;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
 import com.github.protocolfuzzing.protocolstatefuzzer.utils.CleanupTasks;
 
 public class ClientMapperState extends EdhocMapperState {
 
     public ClientMapperState(EdhocMapperConfig edhocMapperConfig, CleanupTasks cleanupTasks) {
-        super(edhocMapperConfig, edhocMapperConfig.getEdhocCoapUri(), edhocMapperConfig.getEdhocCoapUri(), cleanupTasks);
+        this(edhocMapperConfig, cleanupTasks, null);
+    }
+
+    public ClientMapperState(EdhocMapperConfig edhocMapperConfig, CleanupTasks cleanupTasks, EphemeralKeyPool ephemeralKeyPool) {
+        super(edhocMapperConfig, edhocMapperConfig.getEdhocCoapUri(), edhocMapperConfig.getEdhocCoapUri(), cleanupTasks,
+                ephemeralKeyPool);
     }
 
     @Override
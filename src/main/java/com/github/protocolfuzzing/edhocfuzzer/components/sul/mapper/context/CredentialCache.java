@@ -0,0 +1,109 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context;
+
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.authentication.AuthenticationConfig;
+import com.upokecenter.cbor.CBORException;
+import com.upokecenter.cbor.CBORObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Stores the built authentication credentials as CBOR files in a directory, so
+ * that they can be reused across runs. An entry is keyed by the hash of the
+ * authentication parameters, the role of the mapper and the contents of the
+ * source files, so that a change in any of them leads to a new entry.
+ */
+public class CredentialCache {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // the entries used in this process, so that each file is read once per process
+    static final Map<String, CBORObject> sharedEntriesMap = new ConcurrentHashMap<>();
+
+    // the keys computed in this process, keyed by the parameters they are computed from,
+    // since the source files are also read once per process
+    static final Map<String, String> sharedKeysMap = new ConcurrentHashMap<>();
+
+    protected Path cacheDir;
+
+    public CredentialCache(String cacheDir) {
+        this.cacheDir = Paths.get(cacheDir);
+    }
+
+    public String getKey(AuthenticationConfig authenticationConfig, boolean isInitiator) {
+        StringWriter stringWriter = new StringWriter();
+        try (PrintWriter printWriter = new PrintWriter(stringWriter)) {
+            authenticationConfig.printCredentialDescription(printWriter);
+            printWriter.println("isInitiator: " + isInitiator);
+        }
+
+        return sharedKeysMap.computeIfAbsent(stringWriter.toString(),
+                parameters -> computeKey(parameters, authenticationConfig));
+    }
+
+    /** Returns the cached credentials of the given key, or null if they are not cached or cannot be read */
+    public CBORObject load(String key) {
+        CBORObject entry = sharedEntriesMap.get(key);
+        if (entry != null) {
+            return entry;
+        }
+
+        Path entryPath = cacheDir.resolve(key + ".cbor");
+        if (!Files.exists(entryPath)) {
+            return null;
+        }
+
+        try {
+            entry = CBORObject.DecodeFromBytes(Files.readAllBytes(entryPath));
+        } catch (IOException | CBORException e) {
+            LOGGER.warn("Cannot read cached credentials {}: {}", entryPath, e.getMessage());
+            return null;
+        }
+
+        sharedEntriesMap.put(key, entry);
+        return entry;
+    }
+
+    public void store(String key, CBORObject entry) {
+        sharedEntriesMap.put(key, entry);
+
+        // the entry is written to a temporary file first, so that a partially written entry is never read
+        Path entryPath = cacheDir.resolve(key + ".cbor");
+        try {
+            Files.createDirectories(cacheDir);
+            Path tempPath = Files.createTempFile(cacheDir, key, ".tmp");
+            Files.write(tempPath, entry.EncodeToBytes());
+            Files.move(tempPath, entryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write cached credentials {}: {}", entryPath, e.getMessage());
+        }
+    }
+
+    protected String computeKey(String parameters, AuthenticationConfig authenticationConfig) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(parameters.getBytes(StandardCharsets.UTF_8));
+
+            for (String filename : authenticationConfig.getSourceFilenames()) {
+                messageDigest.update(filename.getBytes(StandardCharsets.UTF_8));
+                messageDigest.update(Files.readAllBytes(Paths.get(filename)));
+            }
+
+            return HexFormat.of().formatHex(messageDigest.digest());
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context;
 
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.Concretizer;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EdhocEndpointInfoPersistent;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EdhocSessionPersistent;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EdhocStackFactoryPersistent;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EphemeralKeyPool;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.MessageProcessorPersistent;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.CombinedMessageVersion;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
@@ -27,6 +29,16 @@ import java.util.*;
 /** Adapted from test files EdhocClient / EdhocServer from edhoc repo */
 public abstract class EdhocMapperState {
 
+    // The security providers are inserted once, since they are global to the JVM
+    private static boolean providersInserted = false;
+    private static synchronized void insertSecurityProviders() {
+        if (!providersInserted) {
+            Security.insertProviderAt(new EdDSASecurityProvider(), 1);
+            Security.insertProviderAt(new BouncyCastleProvider(), 2);
+            providersInserted = true;
+        }
+    }
+
     // The authentication method to include in EDHOC message_1 (relevant only when Initiator)
     protected int authenticationMethod;
 
@@ -54,6 +66,11 @@ public abstract class EdhocMapperState {
     // The map value is a CBOR Byte String, with value the serialization of CRED_X
     protected HashMap<CBORObject, CBORObject> peerCredentials = new HashMap<>();
 
+    // Initial authentication credentials of the other peers, as set up by the authenticator
+    // They are used to restore the above maps on reset, since a learning trust model can modify them
+    protected HashMap<CBORObject, OneKey> initialPeerPublicKeys;
+    protected HashMap<CBORObject, CBORObject> initialPeerCredentials;
+
     // Existing EDHOC Sessions, including completed ones
     // The map label is C_X, i.e. the connection identifier offered to the other peer, as a CBOR integer or byte string
     protected HashMap<CBORObject, EdhocSessionPersistent> edhocSessionsPersistent = new HashMap<>();
@@ -85,21 +102,51 @@ public abstract class EdhocMapperState {
 
     protected EdhocMapperConfig edhocMapperConfig;
 
+    protected String edhocSessionUri;
+
     protected EdhocSessionPersistent edhocSessionPersistent;
 
     protected EdhocEndpointInfoPersistent edhocEndpointInfoPersistent;
 
     protected CleanupTasks cleanupTasks;
 
-    @SuppressWarnings("this-escape")
+    // The concretizers of sent and received messages, which are shared among queries
+    // They are null if concretization is disabled
+    protected Concretizer sendConcretizer = null;
+    protected Concretizer recvConcretizer = null;
+
     public EdhocMapperState(EdhocMapperConfig edhocMapperConfig, String edhocSessionUri, String oscoreUri, CleanupTasks cleanupTasks) {
+        this(edhocMapperConfig, edhocSessionUri, oscoreUri, cleanupTasks, null);
+    }
+
+    public EdhocMapperState(EdhocMapperConfig edhocMapperConfig, String edhocSessionUri, String oscoreUri,
+                            CleanupTasks cleanupTasks, EphemeralKeyPool ephemeralKeyPool) {
+        this(edhocMapperConfig, edhocSessionUri, oscoreUri, cleanupTasks, ephemeralKeyPool, null, null);
+    }
+
+    /**
+     * The given OSCORE context database and used connection ids, if not null, are shared
+     * with the mapper states of other SUL instances, instead of being owned by this one
+     */
+    @SuppressWarnings("this-escape")
+    public EdhocMapperState(EdhocMapperConfig edhocMapperConfig, String edhocSessionUri, String oscoreUri,
+                            CleanupTasks cleanupTasks, EphemeralKeyPool ephemeralKeyPool,
+                            HashMapCtxDB sharedDb, Set<CBORObject> sharedUsedConnectionIds) {
 
         this.edhocMapperConfig = edhocMapperConfig;
+        this.edhocSessionUri = edhocSessionUri;
         this.cleanupTasks = cleanupTasks;
 
+        if (sharedDb != null) {
+            this.db = sharedDb;
+        }
+
+        if (sharedUsedConnectionIds != null) {
+            this.usedConnectionIds = sharedUsedConnectionIds;
+        }
+
         // Insert security providers
-        Security.insertProviderAt(new EdDSASecurityProvider(), 1);
-        Security.insertProviderAt(new BouncyCastleProvider(), 2);
+        insertSecurityProviders();
 
         // Set authentication params
         AuthenticationConfig authenticationConfig = edhocMapperConfig.getAuthenticationConfig();
@@ -135,6 +182,7 @@ public abstract class EdhocMapperState {
                 usedConnectionIds, supportedCipherSuites, supportedEADs, null, trustModel, db, oscoreUri,
                 OSCORE_REPLAY_WINDOW, MAX_UNFRAGMENTED_SIZE, appProfiles
         );
+        edhocEndpointInfoPersistent.setEphemeralKeyPool(ephemeralKeyPool);
 
         // Set up the authentication credentials
         Authenticator authenticator;
@@ -144,11 +192,43 @@ public abstract class EdhocMapperState {
                 new TestVectorAuthenticator(authenticationConfig, edhocEndpointInfoPersistent, ownIdCreds,
                         edhocMapperConfig.isInitiator());
 
+        String credentialCacheDir = authenticationConfig.getCredentialCacheDir();
+        if (credentialCacheDir != null) {
+            CredentialCache credentialCache = new CredentialCache(credentialCacheDir);
+            authenticator = new CachedAuthenticator(authenticator, credentialCache,
+                    credentialCache.getKey(authenticationConfig, edhocMapperConfig.isInitiator()),
+                    edhocEndpointInfoPersistent, ownIdCreds);
+        }
+
         authenticator.setupOwnAuthenticationCredentials();
         authenticator.setupPeerAuthenticationCredentials();
 
-        // Prepare new session
+        initialPeerPublicKeys = new HashMap<>(peerPublicKeys);
+        initialPeerCredentials = new HashMap<>(peerCredentials);
+
+        prepareSession();
+    }
+
+    /**
+     * Resets this state to the one right after construction, keeping the
+     * immutable authentication material (key pairs, creds, id_creds, peer keys)
+     * and creating a new session, so that it can be reused for a new query
+     */
+    public EdhocMapperState resetToInitial() {
+        edhocSessionsPersistent.clear();
+        usedConnectionIds.clear();
+        db.purge();
+
+        peerPublicKeys.clear();
+        peerPublicKeys.putAll(initialPeerPublicKeys);
+        peerCredentials.clear();
+        peerCredentials.putAll(initialPeerCredentials);
+
+        prepareSession();
+        return this;
+    }
 
+    protected void prepareSession() {
         // add empty connection id to used ones so as not to be used
         // in case a new connection id is generated automatically
         usedConnectionIds.add(CBORObject.FromObject(new byte[0]));
@@ -164,7 +244,7 @@ public abstract class EdhocMapperState {
 
         edhocSessionPersistent = new EdhocSessionPersistent(edhocSessionUri, isInitiator, isClientInitiated,
                 authenticationMethod, connectionId, edhocEndpointInfoPersistent, null,
-                db, new CoapExchanger(), edhocMapperConfig.useSessionReset(),
+                db, new CoapExchanger(edhocMapperConfig.getExchangeMaxAge()), edhocMapperConfig.useSessionReset(),
                 edhocMapperConfig.getForceOscoreSenderId(), edhocMapperConfig.getForceOscoreRecipientId());
 
         // Update edhocSessions
@@ -188,6 +268,19 @@ public abstract class EdhocMapperState {
         return cleanupTasks;
     }
 
+    public void setConcretizers(Concretizer sendConcretizer, Concretizer recvConcretizer) {
+        this.sendConcretizer = sendConcretizer;
+        this.recvConcretizer = recvConcretizer;
+    }
+
+    public Concretizer getSendConcretizer() {
+        return sendConcretizer;
+    }
+
+    public Concretizer getRecvConcretizer() {
+        return recvConcretizer;
+    }
+
     public ProtocolVersion getProtocolVersion() {
         return edhocMapperConfig.getProtocolVersion();
     }
@@ -1,12 +1,27 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context;
 
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EphemeralKeyPool;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
 import com.github.protocolfuzzing.protocolstatefuzzer.utils.CleanupTasks;
+import com.upokecenter.cbor.CBORObject;
+import org.eclipse.californium.oscore.HashMapCtxDB;
+
+import java.util.Set;
 
 public class ServerMapperState extends EdhocMapperState {
 
     public ServerMapperState(EdhocMapperConfig edhocMapperConfig, CleanupTasks cleanupTasks) {
-        super(edhocMapperConfig, edhocMapperConfig.getEdhocCoapUri(), edhocMapperConfig.getHostCoapUri(), cleanupTasks);
+        this(edhocMapperConfig, cleanupTasks, null);
+    }
+
+    public ServerMapperState(EdhocMapperConfig edhocMapperConfig, CleanupTasks cleanupTasks, EphemeralKeyPool ephemeralKeyPool) {
+        this(edhocMapperConfig, cleanupTasks, ephemeralKeyPool, null, null);
+    }
+
+    public ServerMapperState(EdhocMapperConfig edhocMapperConfig, CleanupTasks cleanupTasks, EphemeralKeyPool ephemeralKeyPool,
+                             HashMapCtxDB sharedDb, Set<CBORObject> sharedUsedConnectionIds) {
+        super(edhocMapperConfig, edhocMapperConfig.getEdhocCoapUri(), edhocMapperConfig.getHostCoapUri(), cleanupTasks,
+                ephemeralKeyPool, sharedDb, sharedUsedConnectionIds);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.mappers;
 
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.metrics.MetricsRegistry;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.messages.EdhocProtocolMessage;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.EdhocMapperConnector;
@@ -13,6 +14,7 @@ import org.eclipse.californium.core.coap.MediaTypeRegistry;
 
 public class EdhocInputMapper extends InputMapper<EdhocInput, EdhocOutput, EdhocProtocolMessage, EdhocExecutionContext> {
     EdhocMapperConnector edhocMapperConnector;
+    MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
 
     public EdhocInputMapper(MapperConfig mapperConfig, EdhocOutputChecker outputChecker, EdhocMapperConnector edhocMapperConnector) {
         super(mapperConfig, outputChecker);
@@ -31,6 +33,8 @@ public class EdhocInputMapper extends InputMapper<EdhocInput, EdhocOutput, Edhoc
             message.getContentFormat(edhocMapperConfig.useOldContentFormat()) :
             MediaTypeRegistry.UNDEFINED;
 
+        long start = metricsRegistry.start();
         edhocMapperConnector.send(message.getPayload(), message.getPayloadType(), message.getMessageCode(), contentFormat);
+        metricsRegistry.record("mapper.send", message.getClass().getSimpleName(), start);
     }
 }
@@ -1,7 +1,9 @@
 package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.mappers;
 
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.metrics.MetricsRegistry;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EdhocUtil;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.MessageProcessorPersistent;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.ParsedEdhocMessage;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.messages.EdhocProtocolMessage;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
 import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors.EdhocMapperConnector;
@@ -27,6 +29,7 @@ public class EdhocOutputMapper extends OutputMapper<EdhocOutput, EdhocProtocolMe
     private static final Logger LOGGER = LogManager.getLogger();
 
     EdhocMapperConnector edhocMapperConnector;
+    MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
 
     public EdhocOutputMapper(MapperConfig mapperConfig, EdhocOutputBuilder edhocOutputBuilder,
         EdhocOutputChecker edhocOutputChecker, EdhocMapperConnector edhocMapperConnector) {
@@ -36,6 +39,13 @@ public class EdhocOutputMapper extends OutputMapper<EdhocOutput, EdhocProtocolMe
 
     @Override
     public EdhocOutput receiveOutput(EdhocExecutionContext context) {
+        long start = metricsRegistry.start();
+        EdhocOutput abstractOutput = receiveAndDecodeOutput(context);
+        metricsRegistry.record("mapper.receiveOutput", abstractOutput.getName(), start);
+        return abstractOutput;
+    }
+
+    protected EdhocOutput receiveAndDecodeOutput(EdhocExecutionContext context) {
         EdhocMapperState edhocMapperState = context.getState();
         byte[] responsePayload;
 
@@ -120,48 +130,61 @@ public class EdhocOutputMapper extends OutputMapper<EdhocOutput, EdhocProtocolMe
         MessageProcessorPersistent messageProcessorPersistent = new MessageProcessorPersistent(edhocMapperState);
         boolean ok;
 
-        switch(messageProcessorPersistent.messageTypeFromStructure(responsePayload)) {
+        // decode the payload once for the classification and all the candidate readers
+        ParsedEdhocMessage parsedMessage = new ParsedEdhocMessage(responsePayload);
+
+        switch(messageProcessorPersistent.messageTypeFromStructure(parsedMessage)) {
             case EDHOC_ERROR_MESSAGE -> {
-                ok = messageProcessorPersistent.readErrorMessage(responsePayload);
+                ok = messageProcessorPersistent.readErrorMessage(parsedMessage);
                 return edhocOutputAfterCheck(ok, MessageOutputType.EDHOC_ERROR_MESSAGE);
             }
 
             case EDHOC_MESSAGE_1 -> {
-                ok = messageProcessorPersistent.readMessage1(responsePayload);
+                ok = messageProcessorPersistent.readMessage1(parsedMessage);
                 return edhocOutputAfterCheck(ok, MessageOutputType.EDHOC_MESSAGE_1);
             }
 
             case EDHOC_MESSAGE_2 -> {
-                ok = messageProcessorPersistent.readMessage2(responsePayload);
+                ok = messageProcessorPersistent.readMessage2(parsedMessage);
                 return edhocOutputAfterCheck(ok, MessageOutputType.EDHOC_MESSAGE_2);
             }
 
             case EDHOC_MESSAGE_3_OR_4 -> {
                 // message may be 3 or 4
                 LOGGER.info("Reading as EDHOC Message 3 or 4");
-                ok = messageProcessorPersistent.readMessage3(responsePayload);
+                if (!messageProcessorPersistent.mayBeMessage2Or3Or4(parsedMessage)) {
+                    return null;
+                }
+
+                ok = messageProcessorPersistent.readMessage3(parsedMessage);
                 if (ok) {
                     return edhocOutput(MessageOutputType.EDHOC_MESSAGE_3);
                 }
 
-                ok = messageProcessorPersistent.readMessage4(responsePayload);
+                ok = messageProcessorPersistent.readMessage4(parsedMessage);
                 return edhocOutputAfterCheck(ok, MessageOutputType.EDHOC_MESSAGE_4);
             }
 
             case EDHOC_MESSAGE_2_OR_3_OR_4 -> {
                 // message may be 2 or 3 or 4
                 LOGGER.info("Reading as EDHOC Message 2 or 3 or 4");
-                ok = messageProcessorPersistent.readMessage2(responsePayload);
-                if (ok) {
-                    return edhocOutput(MessageOutputType.EDHOC_MESSAGE_2);
+                if (!messageProcessorPersistent.mayBeMessage2Or3Or4(parsedMessage)) {
+                    return null;
+                }
+
+                if (messageProcessorPersistent.mayBeMessage2(parsedMessage)) {
+                    ok = messageProcessorPersistent.readMessage2(parsedMessage);
+                    if (ok) {
+                        return edhocOutput(MessageOutputType.EDHOC_MESSAGE_2);
+                    }
                 }
 
-                ok = messageProcessorPersistent.readMessage3(responsePayload);
+                ok = messageProcessorPersistent.readMessage3(parsedMessage);
                 if (ok) {
                     return edhocOutput(MessageOutputType.EDHOC_MESSAGE_3);
                 }
 
-                ok = messageProcessorPersistent.readMessage4(responsePayload);
+                ok = messageProcessorPersistent.readMessage4(parsedMessage);
                 return edhocOutputAfterCheck(ok, MessageOutputType.EDHOC_MESSAGE_4);
             }
 
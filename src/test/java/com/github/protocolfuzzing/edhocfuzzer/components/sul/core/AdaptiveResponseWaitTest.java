@@ -0,0 +1,127 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class AdaptiveResponseWaitTest {
+    protected static final long CEILING_WAIT = 1000;
+    protected static final long MIN_WAIT = 50;
+    protected static final double WAIT_FACTOR = 2.0;
+    protected static final int MIN_SAMPLES = 3;
+
+    @Test
+    public void pairsFollowPrefixes() {
+        AdaptiveResponseWait adaptiveResponseWait = newAdaptiveResponseWait(false);
+        int pairA = adaptiveResponseWait.pairOf(QueryTrie.ROOT, "A");
+        int pairAB = adaptiveResponseWait.pairOf(pairA, "B");
+
+        assertEquals(pairA, adaptiveResponseWait.pairOf(QueryTrie.ROOT, "A"));
+        assertEquals(pairAB, adaptiveResponseWait.pairOf(pairA, "B"));
+        assertNotEquals(pairAB, adaptiveResponseWait.pairOf(QueryTrie.ROOT, "B"));
+        assertEquals(QueryTrie.NONE, adaptiveResponseWait.pairOf(QueryTrie.NONE, "A"));
+    }
+
+    @Test
+    public void ceilingWaitBelowMinSamples() {
+        AdaptiveResponseWait adaptiveResponseWait = newAdaptiveResponseWait(false);
+        int pair = adaptiveResponseWait.pairOf(QueryTrie.ROOT, "A");
+
+        for (int i = 0; i < MIN_SAMPLES - 1; i++) {
+            assertEquals(CEILING_WAIT, adaptiveResponseWait.getWait(pair));
+            adaptiveResponseWait.record(pair, CEILING_WAIT, 100, false);
+        }
+        assertEquals(CEILING_WAIT, adaptiveResponseWait.getWait(pair));
+        assertEquals(CEILING_WAIT, adaptiveResponseWait.getWait(QueryTrie.NONE));
+    }
+
+    @Test
+    public void answeredPairIsShortened() {
+        AdaptiveResponseWait adaptiveResponseWait = newAdaptiveResponseWait(false);
+        int pair = adaptiveResponseWait.pairOf(QueryTrie.ROOT, "A");
+
+        recordResponses(adaptiveResponseWait, pair, 100, 200, 150);
+        assertEquals(400, adaptiveResponseWait.getWait(pair));
+    }
+
+    @Test
+    public void shortenedWaitIsBounded() {
+        AdaptiveResponseWait adaptiveResponseWait = newAdaptiveResponseWait(false);
+        int fastPair = adaptiveResponseWait.pairOf(QueryTrie.ROOT, "A");
+        int slowPair = adaptiveResponseWait.pairOf(QueryTrie.ROOT, "B");
+
+        recordResponses(adaptiveResponseWait, fastPair, 1, 2, 3);
+        recordResponses(adaptiveResponseWait, slowPair, 600, 700, 800);
+        assertEquals(MIN_WAIT, adaptiveResponseWait.getWait(fastPair));
+        assertEquals(CEILING_WAIT, adaptiveResponseWait.getWait(slowPair));
+    }
+
+    @Test
+    public void unansweredPairKeepsCeilingWait() {
+        AdaptiveResponseWait adaptiveResponseWait = newAdaptiveResponseWait(false);
+        int answeredPair = adaptiveResponseWait.pairOf(QueryTrie.ROOT, "A");
+        int unansweredPair = adaptiveResponseWait.pairOf(QueryTrie.ROOT, "B");
+
+        recordResponses(adaptiveResponseWait, answeredPair, 100, 100, 100);
+        recordTimeouts(adaptiveResponseWait, unansweredPair, MIN_SAMPLES);
+        assertEquals(CEILING_WAIT, adaptiveResponseWait.getWait(unansweredPair));
+    }
+
+    @Test
+    public void unansweredPairIsShortenedIfEnabled() {
+        AdaptiveResponseWait adaptiveResponseWait = newAdaptiveResponseWait(true);
+        int answeredPair = adaptiveResponseWait.pairOf(QueryTrie.ROOT, "A");
+        int unansweredPair = adaptiveResponseWait.pairOf(QueryTrie.ROOT, "B");
+
+        // without any response there is no latency to shorten to
+        recordTimeouts(adaptiveResponseWait, unansweredPair, MIN_SAMPLES);
+        assertEquals(CEILING_WAIT, adaptiveResponseWait.getWait(unansweredPair));
+
+        recordResponses(adaptiveResponseWait, answeredPair, 100, 250, 100);
+        assertEquals(500, adaptiveResponseWait.getWait(unansweredPair));
+    }
+
+    @Test
+    public void nondeterministicPairKeepsCeilingWait() {
+        AdaptiveResponseWait adaptiveResponseWait = newAdaptiveResponseWait(true);
+        int pair = adaptiveResponseWait.pairOf(QueryTrie.ROOT, "A");
+
+        recordResponses(adaptiveResponseWait, pair, 100, 100, 100);
+        adaptiveResponseWait.record(pair, adaptiveResponseWait.getWait(pair), 0, true);
+        assertEquals(CEILING_WAIT, adaptiveResponseWait.getWait(pair));
+
+        // further responses do not make the pair deterministic again
+        recordResponses(adaptiveResponseWait, pair, 100, 100, 100);
+        assertEquals(CEILING_WAIT, adaptiveResponseWait.getWait(pair));
+    }
+
+    @Test
+    public void pairsBeyondCapacityAreLearned() {
+        AdaptiveResponseWait adaptiveResponseWait = newAdaptiveResponseWait(false);
+
+        int pair = QueryTrie.ROOT;
+        for (int i = 0; i < 2 * AdaptiveResponseWait.INITIAL_CAPACITY; i++) {
+            pair = adaptiveResponseWait.pairOf(pair, "A");
+        }
+
+        recordResponses(adaptiveResponseWait, pair, 100, 100, 100);
+        assertEquals(200, adaptiveResponseWait.getWait(pair));
+    }
+
+    protected static AdaptiveResponseWait newAdaptiveResponseWait(boolean shortenUnanswered) {
+        return new AdaptiveResponseWait(CEILING_WAIT, MIN_WAIT, WAIT_FACTOR, MIN_SAMPLES, shortenUnanswered);
+    }
+
+    protected static void recordResponses(AdaptiveResponseWait adaptiveResponseWait, int pair, long... latencies) {
+        for (long latency : latencies) {
+            adaptiveResponseWait.record(pair, adaptiveResponseWait.getWait(pair), latency, false);
+        }
+    }
+
+    protected static void recordTimeouts(AdaptiveResponseWait adaptiveResponseWait, int pair, int count) {
+        for (int i = 0; i < count; i++) {
+            adaptiveResponseWait.record(pair, adaptiveResponseWait.getWait(pair), 0, true);
+        }
+    }
+}
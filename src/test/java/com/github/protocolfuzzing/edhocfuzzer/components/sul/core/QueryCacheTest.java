@@ -0,0 +1,177 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import com.beust.jcommander.JCommander;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.symbols.outputs.EdhocOutput;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class QueryCacheTest {
+    protected static final String FINGERPRINT = "fingerprint";
+
+    protected static final String[] BASE_ARGS = {
+            "-protocolVersion", "v23", "-edhocRole", "Initiator", "-mapCredType", "X509", "-mapIdCredType", "X5T"
+    };
+
+    @TempDir
+    protected Path cacheDir;
+
+    @Test
+    public void lineRoundTrip() {
+        String line = QueryCache.toLine(List.of("A", "B"), List.of("X", "Y"));
+
+        assertEquals(List.of(List.of("A", "B"), List.of("X", "Y")), QueryCache.fromLine(line));
+    }
+
+    @Test
+    public void invalidLinesAreRejected() {
+        String line = QueryCache.toLine(List.of("A", "B"), List.of("X", "Y"));
+
+        assertNull(QueryCache.fromLine(line.substring(0, line.length() - 1)));
+        assertNull(QueryCache.fromLine(line.replace("Y", "Z")));
+        assertNull(QueryCache.fromLine("not a query"));
+        assertNull(QueryCache.fromLine(""));
+    }
+
+    @Test
+    public void recordedQueryIsLookedUp() {
+        QueryCache queryCache = new QueryCache(false);
+        queryCache.record(List.of("A", "B"), outputs("X", "Y"));
+
+        int nodeA = queryCache.lookup(QueryTrie.ROOT, "A");
+        int nodeB = queryCache.lookup(nodeA, "B");
+        assertEquals("X", queryCache.getOutput(nodeA).getName());
+        assertEquals("Y", queryCache.getOutput(nodeB).getName());
+        assertEquals(QueryTrie.NONE, queryCache.lookup(nodeA, "C"));
+        assertEquals(QueryTrie.NONE, queryCache.lookup(QueryTrie.ROOT, "B"));
+        assertEquals(2, queryCache.size());
+    }
+
+    @Test
+    public void laterQueryOverridesOutput() {
+        QueryCache queryCache = new QueryCache(false);
+        queryCache.record(List.of("A"), outputs("X"));
+        queryCache.record(List.of("A", "B"), outputs("Z", "Y"));
+
+        assertEquals("Z", queryCache.getOutput(queryCache.lookup(QueryTrie.ROOT, "A")).getName());
+        assertEquals(2, queryCache.size());
+    }
+
+    @Test
+    public void resumedCacheAnswersStoredQueries() throws IOException {
+        QueryCache queryCache = new QueryCache(false, cacheDir.toString(), FINGERPRINT);
+        queryCache.record(List.of("A", "B"), outputs("X", "Y"));
+        queryCache.record(List.of("C"), outputs("Z"));
+        queryCache.close();
+
+        assertEquals(List.of(QueryCache.toLine(List.of("A", "B"), List.of("X", "Y")),
+                QueryCache.toLine(List.of("C"), List.of("Z"))), readCacheFile());
+
+        QueryCache resumedCache = new QueryCache(false, cacheDir.toString(), FINGERPRINT);
+        int nodeA = resumedCache.lookup(QueryTrie.ROOT, "A");
+        assertEquals("Y", resumedCache.getOutput(resumedCache.lookup(nodeA, "B")).getName());
+        assertEquals("Z", resumedCache.getOutput(resumedCache.lookup(QueryTrie.ROOT, "C")).getName());
+        resumedCache.close();
+    }
+
+    @Test
+    public void resumedCacheSkipsPartiallyWrittenLine() throws IOException {
+        String validLine = QueryCache.toLine(List.of("A"), List.of("X"));
+        String partialLine = QueryCache.toLine(List.of("B", "C"), List.of("Y", "Z"));
+        Files.writeString(cacheFile(), validLine + System.lineSeparator()
+                + partialLine.substring(0, partialLine.length() / 2), StandardCharsets.UTF_8);
+
+        QueryCache resumedCache = new QueryCache(false, cacheDir.toString(), FINGERPRINT);
+        assertEquals(1, resumedCache.size());
+        assertEquals(QueryTrie.NONE, resumedCache.lookup(QueryTrie.ROOT, "B"));
+
+        // the next query is appended on its own line after the partial one
+        resumedCache.record(List.of("D"), outputs("W"));
+        resumedCache.close();
+
+        QueryCache reloadedCache = new QueryCache(false, cacheDir.toString(), FINGERPRINT);
+        assertEquals(2, reloadedCache.size());
+        assertEquals("W", reloadedCache.getOutput(reloadedCache.lookup(QueryTrie.ROOT, "D")).getName());
+        reloadedCache.close();
+    }
+
+    @Test
+    public void compactionKeepsOnlyLongestQueries() throws IOException {
+        Files.write(cacheFile(), List.of(
+                QueryCache.toLine(List.of("A"), List.of("X")),
+                QueryCache.toLine(List.of("A", "B"), List.of("X", "Y")),
+                QueryCache.toLine(List.of("A", "B"), List.of("X", "Z"))), StandardCharsets.UTF_8);
+
+        QueryCache.compact(cacheFile());
+
+        assertEquals(List.of(QueryCache.toLine(List.of("A", "B"), List.of("X", "Z"))), readCacheFile());
+    }
+
+    @Test
+    public void fingerprintIgnoresOptionsNotAffectingOutputs() {
+        String fingerprint = outputFingerprint();
+
+        assertEquals(fingerprint, outputFingerprint("-metricsDir", "metrics", "-metricsInterval", "5"));
+        assertEquals(fingerprint, outputFingerprint("-queryCacheDir", "cache", "-credentialCacheDir", "credentials"));
+        assertEquals(fingerprint, outputFingerprint("-sulInstances", "4", "-exchangeMaxAge", "1000"));
+        assertEquals(fingerprint, outputFingerprint("-adaptiveResponseWait", "-readinessProbe", "-connectedSocket"));
+        assertEquals(fingerprint, outputFingerprint("-softReset", "-standbySulPort", "6000"));
+    }
+
+    @Test
+    public void fingerprintChangesWithOptionsAffectingOutputs() {
+        String fingerprint = outputFingerprint();
+
+        assertNotEquals(fingerprint, outputFingerprint("-coapErrorAsEdhocError"));
+        assertNotEquals(fingerprint, outputFingerprint("-disableContentFormat"));
+        assertNotEquals(fingerprint, outputFingerprint("-ownConnectionId", "01"));
+        assertNotEquals(fingerprint, outputFingerprint("-sulCredType", "CCS"));
+        assertNotEquals(fingerprint, outputFingerprint("-standbySulCmd", "sul {port}", "-softReset"));
+        assertNotEquals(outputFingerprint("-standbySulCmd", "sul {port}"),
+                outputFingerprint("-standbySulCmd", "sul {port}", "-standbySulDir", "other"));
+    }
+
+    protected Path cacheFile() {
+        return cacheDir.resolve(FINGERPRINT + ".queries");
+    }
+
+    protected List<String> readCacheFile() throws IOException {
+        return Files.readAllLines(cacheFile(), StandardCharsets.UTF_8);
+    }
+
+    protected static List<EdhocOutput> outputs(String... names) {
+        List<EdhocOutput> outputs = new ArrayList<>(names.length);
+        for (String name : names) {
+            outputs.add(new EdhocOutput(name));
+        }
+        return outputs;
+    }
+
+    // the fingerprint of the outputs of a mapper configured with the base arguments followed by the given ones
+    protected static String outputFingerprint(String... args) {
+        List<String> allArgs = new ArrayList<>(List.of(BASE_ARGS));
+        allArgs.addAll(List.of(args));
+
+        EdhocMapperConfig edhocMapperConfig = new EdhocMapperConfig();
+        JCommander.newBuilder().addObject(edhocMapperConfig).build().parse(allArgs.toArray(new String[0]));
+
+        StringWriter stringWriter = new StringWriter();
+        try (PrintWriter printWriter = new PrintWriter(stringWriter)) {
+            edhocMapperConfig.printOutputDescription(printWriter);
+        }
+        return QueryCache.fingerprint(stringWriter.toString());
+    }
+}
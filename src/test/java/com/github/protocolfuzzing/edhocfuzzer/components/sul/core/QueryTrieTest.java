@@ -0,0 +1,94 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryTrieTest {
+
+    @Test
+    public void emptyTrieHasNoChildren() {
+        QueryTrie queryTrie = new QueryTrie(false);
+
+        assertEquals(0, queryTrie.size());
+        assertEquals(QueryTrie.NONE, queryTrie.firstChild(QueryTrie.ROOT));
+        assertEquals(QueryTrie.NONE, queryTrie.child(QueryTrie.ROOT, "A"));
+    }
+
+    @Test
+    public void putAddsPrefixesAndOverridesOutputs() {
+        QueryTrie queryTrie = new QueryTrie(false);
+        int nodeA = queryTrie.put(QueryTrie.ROOT, "A", "X", null);
+        int nodeB = queryTrie.put(nodeA, "B", "Y", null);
+
+        assertEquals(nodeA, queryTrie.child(QueryTrie.ROOT, "A"));
+        assertEquals(nodeB, queryTrie.child(nodeA, "B"));
+        assertEquals("A", queryTrie.getInput(nodeA));
+        assertEquals("Y", queryTrie.getOutput(nodeB));
+        assertNull(queryTrie.getMessages(nodeB));
+
+        assertEquals(nodeA, queryTrie.put(QueryTrie.ROOT, "A", "Z", null));
+        assertEquals("Z", queryTrie.getOutput(nodeA));
+        assertEquals(2, queryTrie.size());
+    }
+
+    @Test
+    public void addKeepsExistingNodes() {
+        QueryTrie queryTrie = new QueryTrie(false);
+        int nodeA = queryTrie.put(QueryTrie.ROOT, "A", "X", null);
+
+        assertEquals(nodeA, queryTrie.add(QueryTrie.ROOT, "A"));
+        assertEquals("X", queryTrie.getOutput(nodeA));
+
+        int nodeB = queryTrie.add(nodeA, "B");
+        assertNotEquals(QueryTrie.NONE, nodeB);
+        assertEquals(nodeB, queryTrie.child(nodeA, "B"));
+        assertEquals(2, queryTrie.size());
+    }
+
+    @Test
+    public void siblingsAreDistinguishedByInput() {
+        QueryTrie queryTrie = new QueryTrie(false);
+        int nodeA = queryTrie.put(QueryTrie.ROOT, "A", "X", null);
+        int nodeB = queryTrie.put(QueryTrie.ROOT, "B", "X", null);
+        int nodeAB = queryTrie.put(nodeA, "B", "Y", null);
+
+        assertNotEquals(nodeB, nodeAB);
+        assertEquals(QueryTrie.NONE, queryTrie.child(nodeB, "B"));
+
+        Set<String> inputs = new HashSet<>();
+        for (int child = queryTrie.firstChild(QueryTrie.ROOT); child != QueryTrie.NONE;
+             child = queryTrie.nextSibling(child)) {
+            inputs.add(queryTrie.getInput(child));
+        }
+        assertEquals(Set.of("A", "B"), inputs);
+    }
+
+    @Test
+    public void trieGrowsBeyondInitialCapacity() {
+        QueryTrie queryTrie = new QueryTrie(false);
+        long initialFootprint = queryTrie.footprint();
+
+        int node = QueryTrie.ROOT;
+        int depth = 4 * QueryTrie.INITIAL_CAPACITY;
+        for (int i = 0; i < depth; i++) {
+            node = queryTrie.put(node, i % 2 == 0 ? "A" : "B", "X", null);
+        }
+
+        assertEquals(depth, queryTrie.size());
+        assertTrue(queryTrie.footprint() > initialFootprint);
+
+        node = QueryTrie.ROOT;
+        for (int i = 0; i < depth; i++) {
+            node = queryTrie.child(node, i % 2 == 0 ? "A" : "B");
+            assertNotEquals(QueryTrie.NONE, node);
+        }
+        assertEquals("X", queryTrie.getOutput(node));
+    }
+}
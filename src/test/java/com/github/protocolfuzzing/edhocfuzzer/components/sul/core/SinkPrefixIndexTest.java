@@ -0,0 +1,80 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SinkPrefixIndexTest {
+
+    @Test
+    public void onlyExtensionsOfSocketClosedPrefixReachSink() {
+        SinkPrefixIndex sinkPrefixIndex = new SinkPrefixIndex();
+        sinkPrefixIndex.addSinkPrefix(List.of("A", "B"), List.of("X", "SOCKET_CLOSED"));
+
+        assertEquals(-1, sinkDepth(sinkPrefixIndex, List.of("A")));
+        assertEquals(-1, sinkDepth(sinkPrefixIndex, List.of("B", "A", "C")));
+        assertEquals(-1, sinkDepth(sinkPrefixIndex, List.of("A", "C", "B")));
+        assertEquals(2, sinkDepth(sinkPrefixIndex, List.of("A", "B", "C")));
+        assertEquals(2, sinkDepth(sinkPrefixIndex, List.of("A", "B", "A", "B")));
+    }
+
+    @Test
+    public void onlyExtensionsOfDisabledPrefixReachSink() {
+        SinkPrefixIndex sinkPrefixIndex = new SinkPrefixIndex();
+        sinkPrefixIndex.addSinkPrefix(List.of("A"), List.of("DISABLED"));
+
+        assertEquals(-1, sinkDepth(sinkPrefixIndex, List.of("B")));
+        assertEquals(-1, sinkDepth(sinkPrefixIndex, List.of("B", "A")));
+        assertEquals(1, sinkDepth(sinkPrefixIndex, List.of("A", "B")));
+    }
+
+    @Test
+    public void prefixOutputsAreIndexed() {
+        SinkPrefixIndex sinkPrefixIndex = new SinkPrefixIndex();
+        sinkPrefixIndex.addSinkPrefix(List.of("A", "B"), List.of("X", "SOCKET_CLOSED"));
+
+        int nodeA = sinkPrefixIndex.lookup(QueryTrie.ROOT, "A");
+        int nodeB = sinkPrefixIndex.lookup(nodeA, "B");
+        assertEquals("X", sinkPrefixIndex.getOutput(nodeA));
+        assertEquals("SOCKET_CLOSED", sinkPrefixIndex.getOutput(nodeB));
+        assertFalse(sinkPrefixIndex.isSink(nodeA));
+        assertTrue(sinkPrefixIndex.isSink(nodeB));
+
+        // the inputs after the sink are not indexed, since they are all answered as DISABLED
+        assertEquals(QueryTrie.NONE, sinkPrefixIndex.lookup(nodeB, "C"));
+    }
+
+    @Test
+    public void absorbedQueriesAreCounted() {
+        SinkPrefixIndex sinkPrefixIndex = new SinkPrefixIndex();
+        sinkPrefixIndex.absorbed(2);
+        sinkPrefixIndex.absorbed(3);
+
+        assertEquals(2, sinkPrefixIndex.getAbsorbedQueries());
+        assertEquals(5, sinkPrefixIndex.getAbsorbedInputs());
+    }
+
+    /*
+     * Walks the query through the index as the SUL does and returns the number of inputs of its prefix
+     * that leads to a sink state, if the query properly extends it, so that its remaining inputs are
+     * answered as DISABLED, or -1 if the query is not answered by the index
+     */
+    protected static int sinkDepth(SinkPrefixIndex sinkPrefixIndex, List<String> inputs) {
+        int node = QueryTrie.ROOT;
+        for (int i = 0; i < inputs.size() - 1; i++) {
+            node = sinkPrefixIndex.lookup(node, inputs.get(i));
+            if (node == QueryTrie.NONE) {
+                return -1;
+            }
+
+            if (sinkPrefixIndex.isSink(node)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core;
+
+import com.beust.jcommander.JCommander;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SoftResetTest {
+
+    @Test
+    public void rotationSuffixIsWholeBytes() {
+        assertEquals("01", SoftReset.rotationSuffix(1));
+        assertEquals("0f", SoftReset.rotationSuffix(15));
+        assertEquals("10", SoftReset.rotationSuffix(16));
+        assertEquals("ff", SoftReset.rotationSuffix(255));
+        assertEquals("0100", SoftReset.rotationSuffix(256));
+        assertEquals("ffff", SoftReset.rotationSuffix(65535));
+        assertEquals("010000", SoftReset.rotationSuffix(65536));
+        assertEquals("7fffffffffffffff", SoftReset.rotationSuffix(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void rotationSuffixesAreDistinct() {
+        Set<String> suffixes = new HashSet<>();
+        for (long rotation = 1; rotation <= 70000; rotation++) {
+            String suffix = SoftReset.rotationSuffix(rotation);
+            assertEquals(0, suffix.length() % 2);
+            assertTrue(suffixes.add(suffix), "Repeated suffix " + suffix);
+        }
+    }
+
+    @Test
+    public void rotatedConnectionIdsExtendBaseConnectionId() {
+        EdhocMapperConfig edhocMapperConfig = new EdhocMapperConfig();
+        JCommander.newBuilder().addObject(edhocMapperConfig).build().parse("-ownConnectionId", "37");
+        SoftReset softReset = new SoftReset(edhocMapperConfig, null, null, null, 0, 0);
+
+        EdhocMapperConfig rotatedConfig = softReset.rotate(edhocMapperConfig);
+        assertEquals("3701", HexFormat.of().formatHex(rotatedConfig.getOwnConnectionId()));
+
+        // the base connection id is kept, whichever config is rotated
+        rotatedConfig = softReset.rotate(rotatedConfig);
+        assertEquals("3702", HexFormat.of().formatHex(rotatedConfig.getOwnConnectionId()));
+        assertEquals("37", HexFormat.of().formatHex(edhocMapperConfig.getOwnConnectionId()));
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+        assertEquals(0, latencyHistogram.getCount());
+        assertEquals(0, latencyHistogram.getMean());
+        assertEquals(0, latencyHistogram.getMax());
+        assertEquals(0, latencyHistogram.getPercentile(50));
+    }
+
+    @Test
+    public void countMeanAndMaxAreExact() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        latencyHistogram.record(100);
+        latencyHistogram.record(200);
+        latencyHistogram.record(600);
+
+        assertEquals(3, latencyHistogram.getCount());
+        assertEquals(300, latencyHistogram.getMean());
+        assertEquals(600, latencyHistogram.getMax());
+    }
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            latencyHistogram.record(100);
+        }
+        for (int i = 0; i < 10; i++) {
+            latencyHistogram.record(1000);
+        }
+
+        // 100 falls in [64, 128) and 1000 in [512, 1024), whose bound is capped by the maximum
+        assertEquals(127, latencyHistogram.getPercentile(50));
+        assertEquals(127, latencyHistogram.getPercentile(90));
+        assertEquals(1000, latencyHistogram.getPercentile(95));
+        assertEquals(1000, latencyHistogram.getPercentile(100));
+    }
+
+    @Test
+    public void extremeValuesAreRecorded() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        latencyHistogram.record(-5);
+        latencyHistogram.record(0);
+
+        assertEquals(0, latencyHistogram.getMax());
+        assertEquals(0, latencyHistogram.getPercentile(100));
+
+        latencyHistogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, latencyHistogram.getMax());
+        assertEquals(Long.MAX_VALUE, latencyHistogram.getPercentile(100));
+    }
+}
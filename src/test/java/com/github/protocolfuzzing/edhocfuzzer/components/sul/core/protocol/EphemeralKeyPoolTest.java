@@ -0,0 +1,111 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
+
+import org.eclipse.californium.cose.KeyKeys;
+import org.eclipse.californium.cose.OneKey;
+import org.eclipse.californium.edhoc.Constants;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class EphemeralKeyPoolTest {
+    protected static final int CAPACITY = 4;
+    protected static final long FILL_TIMEOUT = 10000;
+
+    protected static final int P256 = KeyKeys.EC2_P256.AsInt32();
+
+    @Test
+    public void poolIsFilledOnFirstRequest() throws InterruptedException {
+        EphemeralKeyPool ephemeralKeyPool = new EphemeralKeyPool(CAPACITY);
+        try {
+            assertNull(ephemeralKeyPool.take(Constants.EDHOC_CIPHER_SUITE_2));
+            awaitFilled(ephemeralKeyPool, P256, CAPACITY);
+
+            assertNotNull(ephemeralKeyPool.take(Constants.EDHOC_CIPHER_SUITE_3));
+            assertEquals(1, ephemeralKeyPool.getHits());
+            assertEquals(1, ephemeralKeyPool.getMisses());
+
+            // the taken key is replaced
+            awaitFilled(ephemeralKeyPool, P256, CAPACITY);
+        } finally {
+            ephemeralKeyPool.shutdown();
+        }
+    }
+
+    @Test
+    public void failedGenerationIsRetried() throws InterruptedException {
+        FailingEphemeralKeyPool ephemeralKeyPool = new FailingEphemeralKeyPool(CAPACITY, 2);
+        try {
+            ephemeralKeyPool.take(Constants.EDHOC_CIPHER_SUITE_2);
+            awaitFilled(ephemeralKeyPool, P256, CAPACITY);
+
+            assertEquals(2, ephemeralKeyPool.getFailures());
+        } finally {
+            ephemeralKeyPool.shutdown();
+        }
+    }
+
+    @Test
+    public void curveFailingRepeatedlyIsNotRetriedForever() throws InterruptedException {
+        FailingEphemeralKeyPool ephemeralKeyPool = new FailingEphemeralKeyPool(1, Integer.MAX_VALUE);
+        try {
+            ephemeralKeyPool.take(Constants.EDHOC_CIPHER_SUITE_2);
+
+            long deadline = System.currentTimeMillis() + FILL_TIMEOUT;
+            while (ephemeralKeyPool.getFailures() < EphemeralKeyPool.MAX_CONSECUTIVE_FAILURES
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            Thread.sleep(100);
+            assertEquals(EphemeralKeyPool.MAX_CONSECUTIVE_FAILURES, ephemeralKeyPool.getFailures());
+            assertNull(ephemeralKeyPool.take(Constants.EDHOC_CIPHER_SUITE_2));
+        } finally {
+            ephemeralKeyPool.shutdown();
+        }
+    }
+
+    @Test
+    public void unpooledCipherSuiteIsNotTaken() {
+        EphemeralKeyPool ephemeralKeyPool = new EphemeralKeyPool(CAPACITY);
+        try {
+            assertNull(EphemeralKeyPool.curveOf(-1));
+            assertNull(ephemeralKeyPool.take(-1));
+            assertEquals(0, ephemeralKeyPool.getMisses());
+        } finally {
+            ephemeralKeyPool.shutdown();
+        }
+    }
+
+    protected static void awaitFilled(EphemeralKeyPool ephemeralKeyPool, int curve, int size)
+            throws InterruptedException {
+        BlockingQueue<OneKey> keys = ephemeralKeyPool.getKeys(curve);
+        long deadline = System.currentTimeMillis() + FILL_TIMEOUT;
+        while (keys.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, keys.size());
+    }
+
+    /** Fails the given number of generations before generating the keys */
+    protected static class FailingEphemeralKeyPool extends EphemeralKeyPool {
+        protected AtomicInteger remainingFailures;
+
+        protected FailingEphemeralKeyPool(int capacity, int failures) {
+            super(capacity);
+            this.remainingFailures = new AtomicInteger(failures);
+        }
+
+        @Override
+        protected OneKey generateKeyPair(int curve) {
+            if (remainingFailures.getAndDecrement() > 0) {
+                return null;
+            }
+            return super.generateKeyPair(curve);
+        }
+    }
+}
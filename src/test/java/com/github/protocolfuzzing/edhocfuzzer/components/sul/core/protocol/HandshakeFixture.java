@@ -0,0 +1,146 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
+
+import com.beust.jcommander.JCommander;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.EdhocMapperConfig;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.ClientMapperState;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.EdhocMapperState;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.ServerMapperState;
+import com.github.protocolfuzzing.protocolstatefuzzer.utils.CleanupTasks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * An Initiator and a Responder mapper state, whose handshake is run in-process,
+ * set up as in MessageProcessorBenchmark from the test vectors in
+ * experiments/authentication/test_vectors, which cover the authentication methods
+ * 0 (SIG-SIG) and 3 (STAT-STAT) for the curves of cipher suites 0, 1 and 2, 3.
+ */
+public class HandshakeFixture {
+    public static final String TEST_VECTOR_DIR = "experiments/authentication/test_vectors";
+    public static final String INITIATOR_CONNECTION_ID = "36";
+    public static final String RESPONDER_CONNECTION_ID = "37";
+
+    protected int cipherSuite;
+    protected CleanupTasks cleanupTasks = new CleanupTasks();
+    protected EdhocMapperState initiatorState;
+    protected EdhocMapperState responderState;
+    protected MessageProcessorPersistent initiator;
+    protected MessageProcessorPersistent responder;
+
+    public HandshakeFixture(int cipherSuite, int authMethod) {
+        this.cipherSuite = cipherSuite;
+        this.initiatorState = new ClientMapperState(
+                buildConfig(cipherSuite, authMethod, "Initiator", INITIATOR_CONNECTION_ID), cleanupTasks);
+        this.responderState = new ServerMapperState(
+                buildConfig(cipherSuite, authMethod, "Responder", RESPONDER_CONNECTION_ID), cleanupTasks);
+        this.initiator = new MessageProcessorPersistent(initiatorState);
+        this.responder = new MessageProcessorPersistent(responderState);
+        reset();
+    }
+
+    public EdhocMapperState getInitiatorState() {
+        return initiatorState;
+    }
+
+    public EdhocMapperState getResponderState() {
+        return responderState;
+    }
+
+    public MessageProcessorPersistent getInitiator() {
+        return initiator;
+    }
+
+    public MessageProcessorPersistent getResponder() {
+        return responder;
+    }
+
+    /** Resets both states for a new handshake of the cipher suite of this fixture */
+    public void reset() {
+        useCipherSuite(initiatorState, cipherSuite);
+        useCipherSuite(responderState, cipherSuite);
+    }
+
+    /** Runs the whole handshake and returns the messages 1 to 4 in order, failing if any of them is not read */
+    public List<byte[]> runHandshake() {
+        List<byte[]> messages = new ArrayList<>(4);
+        messages.add(read(initiator.writeMessage1(), responder::readMessage1, 1));
+        messages.add(read(responder.writeMessage2(), initiator::readMessage2, 2));
+        messages.add(read(initiator.writeMessage3(), responder::readMessage3, 3));
+        messages.add(read(responder.writeMessage4(), initiator::readMessage4, 4));
+        return messages;
+    }
+
+    public void close() {
+        cleanupTasks.execute();
+    }
+
+    /**
+     * Returns the config of a mapper of the given role and own connection id, authenticated by the test vector
+     * of the given cipher suite and authentication method, followed by the given arguments
+     */
+    public static EdhocMapperConfig buildConfig(int cipherSuite, int authMethod, String edhocRole,
+                                                String ownConnectionId, String... args) {
+        List<String> allArgs = new ArrayList<>(List.of(
+                "-protocolVersion", "v23",
+                "-edhocRole", edhocRole,
+                "-ownConnectionId", ownConnectionId,
+                "-disableOwnConnectionIdGeneration"));
+        allArgs.addAll(testVectorArgs(cipherSuite, authMethod));
+        allArgs.addAll(List.of(args));
+
+        EdhocMapperConfig edhocMapperConfig = new EdhocMapperConfig();
+        JCommander.newBuilder().addObject(edhocMapperConfig).build().parse(allArgs.toArray(new String[0]));
+        edhocMapperConfig.initializeHost("localhost:5683");
+        return edhocMapperConfig;
+    }
+
+    /** Resets the given state for a new handshake, supporting only the given cipher suite */
+    public static void useCipherSuite(EdhocMapperState edhocMapperState, int cipherSuite) {
+        // the test vectors list the even cipher suites only, so the odd ones,
+        // which use the same curves, are set here
+        List<Integer> supportedCipherSuites = edhocMapperState.getEdhocEndpointInfoPersistent().getSupportedCipherSuites();
+        supportedCipherSuites.clear();
+        supportedCipherSuites.add(cipherSuite);
+
+        edhocMapperState.resetToInitial();
+    }
+
+    protected static List<String> testVectorArgs(int cipherSuite, int authMethod) {
+        boolean isP256 = cipherSuite == 2 || cipherSuite == 3;
+        boolean isStat = authMethod == 3;
+
+        if (!isP256) {
+            return List.of(
+                    "-mapCredType", "X509", "-mapIdCredType", "X5T",
+                    "-testVectorJson", TEST_VECTOR_DIR + "/test_vectors_rise.json",
+                    "-testVectorJsonKey", isStat ? "test_vector_x25519" : "test_vector_ed25519",
+                    "-testVectorPeerKeyCurve", isStat ? "X25519" : "Ed25519");
+        }
+
+        if (!isStat) {
+            return List.of(
+                    "-mapCredType", "X509", "-mapIdCredType", "X5T",
+                    "-testVectorJson", TEST_VECTOR_DIR + "/test_vectors_v16_p256.json",
+                    "-testVectorJsonKey", "test_vector_1",
+                    "-testVectorPeerKeyCurve", "P256");
+        }
+
+        return List.of(
+                "-mapCredType", "CCS", "-mapIdCredType", "KID",
+                "-testVectorJson", TEST_VECTOR_DIR + "/test_vectors_lakers.json",
+                "-testVectorJsonKey", "test_vector_p256",
+                "-testVectorPeerKeyCurve", "P256");
+    }
+
+    protected byte[] read(byte[] message, MessageReader messageReader, int number) {
+        if (message == null || !messageReader.read(message)) {
+            throw new IllegalStateException("Handshake failed at message_" + number + " for cipher suite " + cipherSuite);
+        }
+        return message;
+    }
+
+    protected interface MessageReader {
+        boolean read(byte[] message);
+    }
+}
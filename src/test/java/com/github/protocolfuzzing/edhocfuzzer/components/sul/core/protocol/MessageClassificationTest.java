@@ -0,0 +1,108 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol;
+
+import com.upokecenter.cbor.CBORObject;
+import org.eclipse.californium.edhoc.Constants;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MessageClassificationTest {
+    protected static final int[] CIPHER_SUITES = {0, 1, 2, 3};
+    protected static final int[] AUTH_METHODS = {0, 3};
+
+    @Test
+    public void handshakeMessagesAreNotRuledOut() {
+        for (int cipherSuite : CIPHER_SUITES) {
+            for (int authMethod : AUTH_METHODS) {
+                assertHandshakeMessagesAreNotRuledOut(cipherSuite, authMethod);
+            }
+        }
+    }
+
+    @Test
+    public void nonByteStringLastElementIsRuledOut() {
+        for (int cipherSuite : CIPHER_SUITES) {
+            assertNonByteStringLastElementIsRuledOut(cipherSuite, 0);
+        }
+    }
+
+    @Test
+    public void elementsAreNotModifiable() {
+        for (int authMethod : AUTH_METHODS) {
+            assertElementsAreNotModifiable(0, authMethod);
+        }
+    }
+
+    protected void assertHandshakeMessagesAreNotRuledOut(int cipherSuite, int authMethod) {
+        HandshakeFixture handshakeFixture = new HandshakeFixture(cipherSuite, authMethod);
+        try {
+            List<byte[]> messages = handshakeFixture.runHandshake();
+            MessageProcessorPersistent initiator = handshakeFixture.getInitiator();
+            MessageProcessorPersistent responder = handshakeFixture.getResponder();
+
+            ParsedEdhocMessage message2 = new ParsedEdhocMessage(messages.get(1));
+            ParsedEdhocMessage message3 = new ParsedEdhocMessage(messages.get(2));
+            ParsedEdhocMessage message4 = new ParsedEdhocMessage(messages.get(3));
+
+            assertEquals(MessageProcessorPersistent.StructureCodes.EDHOC_MESSAGE_2_OR_3_OR_4,
+                    initiator.messageTypeFromStructure(message2));
+            assertEquals(MessageProcessorPersistent.StructureCodes.EDHOC_MESSAGE_2_OR_3_OR_4,
+                    initiator.messageTypeFromStructure(message4));
+
+            // the messages received by each peer are never ruled out as such
+            assertTrue(initiator.mayBeMessage2Or3Or4(message2));
+            assertTrue(initiator.mayBeMessage2(message2), "Message 2 ruled out for cipher suite " + cipherSuite);
+            assertTrue(responder.mayBeMessage2Or3Or4(message3));
+            assertTrue(initiator.mayBeMessage2Or3Or4(message4));
+
+            // CIPHERTEXT_4 of an empty plaintext is not longer than G_Y
+            assertFalse(initiator.mayBeMessage2(message4), "Message 4 not ruled out for cipher suite " + cipherSuite);
+        } finally {
+            handshakeFixture.close();
+        }
+    }
+
+    protected void assertNonByteStringLastElementIsRuledOut(int cipherSuite, int authMethod) {
+        HandshakeFixture handshakeFixture = new HandshakeFixture(cipherSuite, authMethod);
+        try {
+            MessageProcessorPersistent initiator = handshakeFixture.getInitiator();
+
+            ParsedEdhocMessage errorMessage = new ParsedEdhocMessage(
+                    handshakeFixture.getResponder().writeErrorMessage(Constants.ERR_CODE_UNSPECIFIED_ERROR, "error"));
+            assertEquals(MessageProcessorPersistent.StructureCodes.EDHOC_ERROR_MESSAGE,
+                    initiator.messageTypeFromStructure(errorMessage));
+
+            ParsedEdhocMessage integerMessage = new ParsedEdhocMessage(CBORObject.FromObject(7).EncodeToBytes());
+            assertFalse(initiator.mayBeMessage2Or3Or4(integerMessage));
+            assertFalse(initiator.mayBeMessage2(integerMessage));
+
+            ParsedEdhocMessage undecodedMessage = new ParsedEdhocMessage(new byte[]{(byte) 0xff});
+            assertFalse(undecodedMessage.isDecoded());
+            assertFalse(initiator.mayBeMessage2Or3Or4(undecodedMessage));
+        } finally {
+            handshakeFixture.close();
+        }
+    }
+
+    protected void assertElementsAreNotModifiable(int cipherSuite, int authMethod) {
+        HandshakeFixture handshakeFixture = new HandshakeFixture(cipherSuite, authMethod);
+        try {
+            ParsedEdhocMessage message1 = new ParsedEdhocMessage(handshakeFixture.runHandshake().get(0));
+            List<CBORObject> elements = message1.getElements();
+
+            assertEquals(elements.size(), message1.getElementsLength());
+            assertThrows(UnsupportedOperationException.class, () -> elements.set(0, CBORObject.Null));
+
+            // the same message is read by every candidate reader
+            handshakeFixture.reset();
+            assertTrue(handshakeFixture.getResponder().readMessage1(message1));
+        } finally {
+            handshakeFixture.close();
+        }
+    }
+}
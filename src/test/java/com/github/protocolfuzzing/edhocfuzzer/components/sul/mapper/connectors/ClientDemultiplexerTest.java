@@ -0,0 +1,137 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors;
+
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.HandshakeFixture;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.MessageProcessorPersistent;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context.ServerMapperState;
+import com.github.protocolfuzzing.protocolstatefuzzer.utils.CleanupTasks;
+import com.upokecenter.cbor.CBORObject;
+import org.eclipse.californium.oscore.OSCoreCtx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClientDemultiplexerTest {
+    protected static final InetSocketAddress CLIENT = new InetSocketAddress("127.0.0.1", 50001);
+    protected static final InetSocketAddress MOVED_CLIENT = new InetSocketAddress("127.0.0.1", 50002);
+    protected static final InetSocketAddress OTHER_CLIENT = new InetSocketAddress("127.0.0.1", 50003);
+
+    // the own connection ids of the first and the second instance
+    protected static final String FIRST_CONNECTION_ID = "37";
+    protected static final String SECOND_CONNECTION_ID = "3701";
+
+    protected CleanupTasks cleanupTasks = new CleanupTasks();
+    protected ClientDemultiplexer clientDemultiplexer = new ClientDemultiplexer();
+
+    @AfterEach
+    public void cleanup() {
+        cleanupTasks.execute();
+    }
+
+    @Test
+    public void clientIsAssignedOnlyOnInitialRequest() {
+        ClientDemultiplexer.ClientContext first = waitingContext(FIRST_CONNECTION_ID);
+        ClientDemultiplexer.ClientContext second = waitingContext(SECOND_CONNECTION_ID);
+
+        assertNull(clientDemultiplexer.route(CLIENT, 1, null, false));
+        assertSame(first, clientDemultiplexer.route(CLIENT, 2, null, true));
+        assertSame(first, clientDemultiplexer.route(CLIENT, 3, null, false));
+        assertSame(first, clientDemultiplexer.route(CLIENT, 4, null, true));
+
+        assertSame(second, clientDemultiplexer.route(OTHER_CLIENT, 1, null, true));
+        assertNull(clientDemultiplexer.route(MOVED_CLIENT, 1, null, true));
+    }
+
+    @Test
+    public void movedClientIsRoutedByConnectionId() {
+        ClientDemultiplexer.ClientContext first = waitingContext(FIRST_CONNECTION_ID);
+        ClientDemultiplexer.ClientContext second = waitingContext(SECOND_CONNECTION_ID);
+        clientDemultiplexer.route(CLIENT, 1, null, true);
+        clientDemultiplexer.route(OTHER_CLIENT, 1, null, true);
+
+        assertNull(clientDemultiplexer.route(MOVED_CLIENT, 2, connectionId("99"), false));
+        assertSame(second, clientDemultiplexer.route(MOVED_CLIENT, 2, connectionId(SECOND_CONNECTION_ID), false));
+
+        // the new address of the client is remembered
+        assertSame(second, clientDemultiplexer.route(MOVED_CLIENT, 3, null, false));
+        assertSame(first, clientDemultiplexer.route(CLIENT, 2, null, false));
+    }
+
+    @Test
+    public void retransmissionOfReleasedExchangeIsDropped() {
+        ClientDemultiplexer.ClientContext first = waitingContext(FIRST_CONNECTION_ID);
+        assertSame(first, clientDemultiplexer.route(CLIENT, 1, null, true));
+        clientDemultiplexer.unregister(first);
+
+        ClientDemultiplexer.ClientContext second = waitingContext(SECOND_CONNECTION_ID);
+        assertNull(clientDemultiplexer.route(CLIENT, 1, null, true));
+        assertNull(clientDemultiplexer.route(CLIENT, 2, null, false));
+        assertSame(second, clientDemultiplexer.route(CLIENT, 3, null, true));
+    }
+
+    @Test
+    public void unregisterReleasesOscoreContextsAndConnectionIds() throws Exception {
+        ClientDemultiplexer.ClientContext first = waitingContext(FIRST_CONNECTION_ID);
+        ClientDemultiplexer.ClientContext second = waitingContext(SECOND_CONNECTION_ID);
+        clientDemultiplexer.route(CLIENT, 1, null, true);
+
+        byte[] firstRecipientId = HexFormat.of().parseHex(FIRST_CONNECTION_ID);
+        OSCoreCtx firstOscoreCtx = first.getMessageProcessorPersistent().getEdhocMapperState()
+                .getEdhocSessionPersistent().getOscoreCtx();
+        assertNotNull(firstOscoreCtx);
+        assertSame(firstOscoreCtx, clientDemultiplexer.getOscoreDb().getContext(firstRecipientId));
+        assertTrue(clientDemultiplexer.getUsedConnectionIds().contains(connectionId(FIRST_CONNECTION_ID)));
+
+        clientDemultiplexer.unregister(first);
+
+        assertNull(first.getMessageProcessorPersistent());
+        assertNull(clientDemultiplexer.lookup(CLIENT));
+        assertNull(clientDemultiplexer.getOscoreDb().getContext(firstRecipientId));
+        assertFalse(clientDemultiplexer.getUsedConnectionIds().contains(connectionId(FIRST_CONNECTION_ID)));
+
+        // the sessions of the other instances are kept
+        assertTrue(clientDemultiplexer.getUsedConnectionIds().contains(connectionId(SECOND_CONNECTION_ID)));
+        assertNotNull(clientDemultiplexer.getOscoreDb().getContext(HexFormat.of().parseHex(SECOND_CONNECTION_ID)));
+        assertSame(second.getMessageProcessorPersistent(), clientDemultiplexer.processorFor(OTHER_CLIENT));
+    }
+
+    @Test
+    public void requestsAreParsedWithProcessorOfCurrentQuery() {
+        assertNull(clientDemultiplexer.processorFor(CLIENT));
+
+        ClientDemultiplexer.ClientContext first = waitingContext(FIRST_CONNECTION_ID);
+        ClientDemultiplexer.ClientContext second = waitingContext(SECOND_CONNECTION_ID);
+        assertSame(first.getMessageProcessorPersistent(), clientDemultiplexer.processorFor(CLIENT));
+
+        clientDemultiplexer.route(CLIENT, 1, null, true);
+        assertSame(first.getMessageProcessorPersistent(), clientDemultiplexer.processorFor(CLIENT));
+        assertSame(second.getMessageProcessorPersistent(), clientDemultiplexer.processorFor(OTHER_CLIENT));
+
+        // a moved client is parsed with any current processor, since they parse requests alike
+        clientDemultiplexer.route(OTHER_CLIENT, 1, null, true);
+        assertNotNull(clientDemultiplexer.processorFor(MOVED_CLIENT));
+    }
+
+    // registers the context of a new query of an instance with the given own connection id, without the server
+    protected ClientDemultiplexer.ClientContext waitingContext(String ownConnectionId) {
+        ServerMapperState serverMapperState = new ServerMapperState(
+                HandshakeFixture.buildConfig(0, 0, "Responder", ownConnectionId), cleanupTasks, null,
+                clientDemultiplexer.getOscoreDb(), clientDemultiplexer.getUsedConnectionIds());
+
+        ClientDemultiplexer.ClientContext clientContext = new ClientDemultiplexer.ClientContext();
+        clientContext.messageProcessorPersistent = new MessageProcessorPersistent(serverMapperState);
+        clientDemultiplexer.waitingContexts.add(clientContext);
+        return clientContext;
+    }
+
+    protected static CBORObject connectionId(String hexConnectionId) {
+        return CBORObject.FromObject(HexFormat.of().parseHex(hexConnectionId));
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.connectors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class CoapExchangerTest {
+    protected static final long SHORT_MAX_AGE = 50;
+
+    @Test
+    public void draftsAreCorrelatedByMID() {
+        CoapExchanger coapExchanger = new CoapExchanger();
+        CoapExchangeInfo first = new CoapExchangeInfo(1);
+        CoapExchangeInfo second = new CoapExchangeInfo(2);
+        coapExchanger.addDraft(first);
+        coapExchanger.addDraft(second);
+
+        assertSame(second, coapExchanger.removeDraft(2));
+        assertSame(first, coapExchanger.removeDraft(1));
+        assertNull(coapExchanger.removeDraft(1));
+        assertNull(coapExchanger.removeDraft(3));
+    }
+
+    @Test
+    public void draftOfSameMIDIsReplaced() {
+        CoapExchanger coapExchanger = new CoapExchanger();
+        CoapExchangeInfo replacement = new CoapExchangeInfo(1);
+        coapExchanger.addDraft(new CoapExchangeInfo(1));
+        coapExchanger.addDraft(replacement);
+
+        assertSame(replacement, coapExchanger.removeDraft(1));
+        assertNull(coapExchanger.removeDraft(1));
+    }
+
+    @Test
+    public void receivedExchangesArePolledInOrder() throws InterruptedException {
+        CoapExchanger coapExchanger = new CoapExchanger();
+        CoapExchangeInfo first = new CoapExchangeInfo(1);
+        CoapExchangeInfo second = new CoapExchangeInfo(2);
+        coapExchanger.addReceived(first);
+        coapExchanger.addReceived(second);
+
+        assertSame(first, coapExchanger.pollReceived());
+        assertSame(second, coapExchanger.takeReceived());
+        assertNull(coapExchanger.pollReceived());
+        assertNull(coapExchanger.pollReceived(10));
+    }
+
+    @Test
+    public void staleDraftsAreEvicted() throws InterruptedException {
+        CoapExchanger coapExchanger = new CoapExchanger(SHORT_MAX_AGE);
+        coapExchanger.addDraft(new CoapExchangeInfo(1));
+        Thread.sleep(2 * SHORT_MAX_AGE);
+
+        CoapExchangeInfo fresh = new CoapExchangeInfo(2);
+        coapExchanger.addDraft(fresh);
+
+        assertNull(coapExchanger.removeDraft(1));
+        assertSame(fresh, coapExchanger.removeDraft(2));
+    }
+
+    @Test
+    public void lateReceivedExchangesAreDropped() throws InterruptedException {
+        CoapExchanger coapExchanger = new CoapExchanger(SHORT_MAX_AGE);
+        coapExchanger.addReceived(new CoapExchangeInfo(1));
+        coapExchanger.addReceived(new CoapExchangeInfo(2));
+        Thread.sleep(2 * SHORT_MAX_AGE);
+
+        CoapExchangeInfo fresh = new CoapExchangeInfo(3);
+        coapExchanger.addReceived(fresh);
+
+        assertEquals(3, coapExchanger.pollReceived(SHORT_MAX_AGE).getMID());
+        assertNull(coapExchanger.pollReceived());
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context;
+
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.HandshakeFixture;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.config.authentication.AuthenticationConfig;
+import com.upokecenter.cbor.CBORObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CredentialCacheTest {
+    protected static final String KEY = "0123456789abcdef";
+
+    @TempDir
+    protected Path cacheDir;
+
+    @AfterEach
+    public void clearSharedEntries() {
+        CredentialCache.sharedEntriesMap.clear();
+    }
+
+    @Test
+    public void missingEntryIsNotLoaded() {
+        assertNull(new CredentialCache(cacheDir.toString()).load(KEY));
+    }
+
+    @Test
+    public void storedEntryIsLoaded() {
+        CBORObject entry = newEntry();
+        new CredentialCache(cacheDir.toString()).store(KEY, entry);
+
+        assertTrue(Files.exists(cacheDir.resolve(KEY + ".cbor")));
+        assertEquals(entry, new CredentialCache(cacheDir.toString()).load(KEY));
+    }
+
+    @Test
+    public void storedEntryIsLoadedInNextProcess() {
+        CBORObject entry = newEntry();
+        new CredentialCache(cacheDir.toString()).store(KEY, entry);
+
+        // a next process has no shared entries and reads the file
+        CredentialCache.sharedEntriesMap.clear();
+        CBORObject loadedEntry = new CredentialCache(cacheDir.toString()).load(KEY);
+        assertArrayEquals(entry.EncodeToBytes(), loadedEntry.EncodeToBytes());
+    }
+
+    @Test
+    public void corruptedEntryIsNotLoaded() throws IOException {
+        Files.write(cacheDir.resolve(KEY + ".cbor"), new byte[]{(byte) 0xff, 0x00});
+
+        assertNull(new CredentialCache(cacheDir.toString()).load(KEY));
+    }
+
+    @Test
+    public void keyDoesNotDependOnCacheDir() {
+        CredentialCache credentialCache = new CredentialCache(cacheDir.toString());
+        String key = credentialCache.getKey(authenticationConfig("-credentialCacheDir", "first"), true);
+
+        assertEquals(key, credentialCache.getKey(authenticationConfig("-credentialCacheDir", "second"), true));
+        assertNotEquals(key, credentialCache.getKey(authenticationConfig("-credentialCacheDir", "first"), false));
+    }
+
+    protected static AuthenticationConfig authenticationConfig(String... args) {
+        return HandshakeFixture.buildConfig(0, 0, "Initiator", HandshakeFixture.INITIATOR_CONNECTION_ID, args)
+                .getAuthenticationConfig();
+    }
+
+    protected static CBORObject newEntry() {
+        CBORObject entry = CBORObject.NewMap();
+        entry.Add("credential", new byte[]{1, 2, 3});
+        entry.Add("keyId", 7);
+        return entry;
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.protocolfuzzing.edhocfuzzer.components.sul.mapper.context;
+
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EdhocEndpointInfoPersistent;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.EdhocSessionPersistent;
+import com.github.protocolfuzzing.edhocfuzzer.components.sul.core.protocol.HandshakeFixture;
+import com.upokecenter.cbor.CBORObject;
+import org.eclipse.californium.cose.OneKey;
+import org.eclipse.californium.oscore.OSCoreCtx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EdhocMapperStateTest {
+    protected static final CBORObject OTHER_CONNECTION_ID = CBORObject.FromObject(new byte[]{0x42});
+
+    protected HandshakeFixture handshakeFixture = new HandshakeFixture(0, 0);
+
+    @AfterEach
+    public void close() {
+        handshakeFixture.close();
+    }
+
+    @Test
+    public void resetKeepsCredentials() {
+        EdhocMapperState edhocMapperState = handshakeFixture.getInitiatorState();
+        EdhocEndpointInfoPersistent endpointInfo = edhocMapperState.getEdhocEndpointInfoPersistent();
+        handshakeFixture.runHandshake();
+
+        HashMap<Integer, HashMap<Integer, OneKey>> keyPairs = endpointInfo.getKeyPairs();
+        HashMap<Integer, HashMap<Integer, CBORObject>> creds = endpointInfo.getCreds();
+        HashMap<Integer, HashMap<Integer, CBORObject>> idCreds = endpointInfo.getIdCreds();
+        Map<Integer, HashMap<Integer, CBORObject>> credsCopy = new HashMap<>(creds);
+
+        edhocMapperState.resetToInitial();
+
+        assertSame(keyPairs, endpointInfo.getKeyPairs());
+        assertSame(creds, endpointInfo.getCreds());
+        assertSame(idCreds, endpointInfo.getIdCreds());
+        assertEquals(credsCopy, endpointInfo.getCreds());
+        assertFalse(keyPairs.isEmpty());
+    }
+
+    @Test
+    public void resetClearsSessionsOscoreContextsAndUsedConnectionIds() {
+        EdhocMapperState edhocMapperState = handshakeFixture.getInitiatorState();
+        EdhocEndpointInfoPersistent endpointInfo = edhocMapperState.getEdhocEndpointInfoPersistent();
+        handshakeFixture.runHandshake();
+
+        byte[] ownConnectionId = HexFormat.of().parseHex(HandshakeFixture.INITIATOR_CONNECTION_ID);
+        EdhocSessionPersistent previousSession = edhocMapperState.getEdhocSessionPersistent();
+        OSCoreCtx previousOscoreCtx = endpointInfo.getOscoreDb().getContext(ownConnectionId);
+        assertNotNull(previousOscoreCtx);
+
+        // a session and a connection id of a previous query, such as a generated one
+        endpointInfo.getEdhocSessionsPersistent().put(OTHER_CONNECTION_ID, previousSession);
+        endpointInfo.getUsedConnectionIds().add(OTHER_CONNECTION_ID);
+
+        edhocMapperState.resetToInitial();
+
+        EdhocSessionPersistent session = edhocMapperState.getEdhocSessionPersistent();
+        assertNotSame(previousSession, session);
+        assertEquals(Map.of(CBORObject.FromObject(ownConnectionId), session), endpointInfo.getEdhocSessionsPersistent());
+
+        assertFalse(endpointInfo.getUsedConnectionIds().contains(OTHER_CONNECTION_ID));
+        assertTrue(endpointInfo.getUsedConnectionIds().contains(CBORObject.FromObject(ownConnectionId)));
+        assertTrue(endpointInfo.getUsedConnectionIds().contains(CBORObject.FromObject(new byte[0])));
+        assertEquals(2, endpointInfo.getUsedConnectionIds().size());
+
+        // the OSCORE context derived in the handshake is replaced by the one of the new session
+        assertNotSame(previousOscoreCtx, endpointInfo.getOscoreDb().getContext(ownConnectionId));
+    }
+
+    @Test
+    public void resetRestoresPeerCredentials() {
+        EdhocMapperState edhocMapperState = handshakeFixture.getResponderState();
+        EdhocEndpointInfoPersistent endpointInfo = edhocMapperState.getEdhocEndpointInfoPersistent();
+        Map<CBORObject, OneKey> peerPublicKeys = new HashMap<>(endpointInfo.getPeerPublicKeys());
+        Map<CBORObject, CBORObject> peerCredentials = new HashMap<>(endpointInfo.getPeerCredentials());
+        assertFalse(peerCredentials.isEmpty());
+
+        // a learning trust model adds the credentials of new peers and may drop others
+        endpointInfo.getPeerPublicKeys().clear();
+        endpointInfo.getPeerCredentials().clear();
+        endpointInfo.getPeerCredentials().put(OTHER_CONNECTION_ID, OTHER_CONNECTION_ID);
+
+        edhocMapperState.resetToInitial();
+
+        assertEquals(peerPublicKeys, endpointInfo.getPeerPublicKeys());
+        assertEquals(peerCredentials, endpointInfo.getPeerCredentials());
+    }
+
+    @Test
+    public void handshakeSucceedsAfterReset() {
+        handshakeFixture.runHandshake();
+        handshakeFixture.reset();
+
+        assertEquals(4, handshakeFixture.runHandshake().size());
+    }
+}